@@ -0,0 +1,54 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionContext;
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.benchmark.fixture.Service;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 组装一条扩展链：逐个扩展名调用<code>getExtension</code>，对比一次<code>getExtensions</code>。
+ * <code>cached</code>是单例扩展的链，<code>prototype</code>是每次创建、注入同一个依赖的prototype扩展的链。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChainBenchmark {
+
+    @Param({"cached", "prototype"})
+    private String chain;
+
+    private ExtensionLoader<Service> loader;
+
+    private List<String> names;
+
+    @Setup
+    public void setup() {
+        loader = ExtensionLoader.getExtensionLoader(Service.class);
+        names = "cached".equals(chain) ? Arrays.asList("plain", "contextual", "plain")
+                : Arrays.asList("injected1", "injected4", "injected8");
+        loader.getExtensions(names);
+    }
+
+    @Benchmark
+    public List<Service> perName() {
+        List<Service> services = new ArrayList<>(names.size());
+        for (String name : names) {
+            services.add(loader.getExtension(name, ExtensionContext.EMPTY, Collections.<String>emptyList()));
+        }
+        return services;
+    }
+
+    @Benchmark
+    public List<Service> batch() {
+        return loader.getExtensions(names);
+    }
+}
@@ -0,0 +1,122 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.benchmark.fixture.ColdService;
+import com.laibao.micro.container.benchmark.fixture.ColdServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_CONF_DIRECTORY;
+
+/**
+ * 冷加载扩展点：查找并解析有10/100/1000行的配置文件，加载实现类。
+ * <p/>
+ * 每次测量都在新的ClassLoader中重新定义{@link ColdService}，让{@link ExtensionLoader}从头加载扩展点。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 50)
+@Fork(1)
+public class ColdLoadBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int lines;
+
+    private URL descriptor;
+
+    private Map<String, byte[]> classes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Path file = Files.createTempFile("cold-service", ".conf");
+        file.toFile().deleteOnExit();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# generated by " + ColdLoadBenchmark.class.getName() + "\n");
+            for (int i = 0; i < lines; i++) {
+                writer.write("cold" + i + "=" + ColdServiceImpl.class.getName() + "(order=" + i + ",group=cold)\n");
+            }
+        }
+        descriptor = file.toUri().toURL();
+
+        classes = new HashMap<>();
+        for (Class<?> clazz : new Class<?>[]{ColdService.class, ColdServiceImpl.class}) {
+            classes.put(clazz.getName(), readClass(clazz));
+        }
+    }
+
+    @Benchmark
+    public Set<String> loadExtensionClasses() {
+        IsolatingClassLoader classLoader = new IsolatingClassLoader(getClass().getClassLoader());
+        try {
+            Class<?> type = classLoader.loadClass(ColdService.class.getName());
+            return ExtensionLoader.getExtensionLoader(type, classLoader).getSupportedExtensions();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            // 释放ClassLoader，避免每次测量的扩展点留在注册表中
+            ExtensionLoader.dispose(classLoader);
+        }
+    }
+
+    private static byte[] readClass(Class<?> clazz) throws IOException {
+        String resource = clazz.getName().replace('.', '/') + ".class";
+        try (InputStream in = clazz.getClassLoader().getResourceAsStream(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * 重新定义冷加载用的扩展点和实现类，并只提供生成的配置文件。
+     */
+    private class IsolatingClassLoader extends ClassLoader {
+
+        IsolatingClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    clazz = defineClass(name, bytes, 0, bytes.length);
+                }
+                return clazz;
+            }
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            if (name.equals(EXTENSION_CONF_DIRECTORY + ColdService.class.getName())) {
+                return Collections.enumeration(Collections.singletonList(descriptor));
+            }
+            return super.getResources(name);
+        }
+    }
+}
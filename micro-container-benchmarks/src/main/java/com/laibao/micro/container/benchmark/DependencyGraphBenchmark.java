@@ -0,0 +1,34 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.benchmark.fixture.Layers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析一个五层的prototype依赖图，每层通过两个setter注入下一层。
+ * <p/>
+ * 同一次解析中同一个依赖只创建一次，每次创建5个实例；不共用时每层实例数翻倍，要创建31个。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DependencyGraphBenchmark {
+
+    private ExtensionLoader<Layers.Layer1> loader;
+
+    @Setup
+    public void setup() {
+        loader = ExtensionLoader.getExtensionLoader(Layers.Layer1.class);
+        loader.getDefaultExtension();
+    }
+
+    @Benchmark
+    public Layers.Layer1 resolveGraph() {
+        return loader.getDefaultExtension();
+    }
+}
@@ -0,0 +1,88 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionAttributes;
+import com.laibao.micro.container.index.DescriptorEntry;
+import com.laibao.micro.container.index.DescriptorParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析生成的大配置文件：{@link DescriptorParser}对比逐行解析的旧实现。
+ * 两边做同样的事：切分配置行、切分并校验扩展名、解析属性。
+ * 配置文件中有注释行、空行、多个名字的扩展、Wrapper和带属性的扩展。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorParseBenchmark {
+
+    private static final String SOURCE = "META-INF/extensions/com.example.Generated";
+
+    @Param({"1000", "10000"})
+    public int lines;
+
+    private byte[] descriptor;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            switch (i % 8) {
+                case 0:
+                    sb.append("# generated extension group ").append(i / 8);
+                    break;
+                case 1:
+                    sb.append("");
+                    break;
+                case 2:
+                    sb.append("+wrapper_").append(i).append("=com.example.wrapper.Wrapper").append(i);
+                    break;
+                case 3:
+                    sb.append("ext_").append(i).append(", alias_").append(i)
+                            .append(" = com.example.ext.Extension").append(i).append("  # with alias");
+                    break;
+                default:
+                    sb.append("ext_").append(i).append("=com.example.ext.Extension").append(i)
+                            .append("(scope=prototype, order=").append(i % 100).append(", group=filter|router, isProvider)");
+                    break;
+            }
+            sb.append('\n');
+        }
+        descriptor = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int streaming() throws IOException {
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        List<DescriptorEntry> entries = DescriptorParser.parse(new ByteArrayInputStream(descriptor), SOURCE, failures);
+        int count = failures.size();
+        for (DescriptorEntry entry : entries) {
+            count += DescriptorParser.splitNames(entry.getName().startsWith("+")
+                    ? entry.getName().substring(1) : entry.getName()).length;
+            count += ExtensionAttributes.parse(entry.getAttribute()).size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int legacy() throws IOException {
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        List<DescriptorEntry> entries = LegacyDescriptorParser.parse(new ByteArrayInputStream(descriptor), SOURCE, failures);
+        int count = failures.size();
+        for (DescriptorEntry entry : entries) {
+            count += LegacyDescriptorParser.splitNames(entry.getName()).length;
+            count += LegacyDescriptorParser.parseAttributes(entry.getAttribute()).size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,85 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionContext;
+import com.laibao.micro.container.ExtensionHandle;
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.benchmark.fixture.Service;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已加载扩展点上的查找：{@link ExtensionLoader#getExtensionLoader}、按名字和按properties获取单例扩展，
+ * 通过预先解析的{@link ExtensionHandle}获取，以及按Map和按{@link ExtensionContext}获取按properties缓存的扩展。
+ * <p/>
+ * 多线程用JMH的<code>-t</code>参数，分配速率用<code>-prof gc</code>。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtensionLoaderBenchmark {
+
+    private ExtensionLoader<Service> loader;
+
+    private Map<String, String> properties;
+
+    private ExtensionHandle<Service> handle;
+
+    private Map<String, String> requestProperties;
+
+    private ExtensionContext requestContext;
+
+    @Setup
+    public void setup() {
+        loader = ExtensionLoader.getExtensionLoader(Service.class);
+        properties = new HashMap<>();
+        properties.put(Service.class.getName(), "plain");
+        loader.getExtension("plain");
+        handle = loader.handleFor("plain");
+        requestProperties = new HashMap<>();
+        requestProperties.put("tenant", "t1");
+        requestProperties.put("region", "eu");
+        requestContext = ExtensionContext.of(requestProperties);
+        loader.getExtension("contextual", requestContext);
+    }
+
+    @Benchmark
+    public ExtensionLoader<Service> getExtensionLoader() {
+        return ExtensionLoader.getExtensionLoader(Service.class);
+    }
+
+    @Benchmark
+    public Service getExtensionByName() {
+        return loader.getExtension("plain");
+    }
+
+    @Benchmark
+    public Service getExtensionByProperties() {
+        return loader.getExtension(properties);
+    }
+
+    @Benchmark
+    public Service getDefaultExtension() {
+        return loader.getDefaultExtension();
+    }
+
+    @Benchmark
+    public Service getExtensionByHandle() {
+        return handle.get();
+    }
+
+    @Benchmark
+    public Service getPropertiesScopedByMap() {
+        return loader.getExtension("contextual", requestProperties);
+    }
+
+    @Benchmark
+    public Service getPropertiesScopedByContext() {
+        return loader.getExtension("contextual", requestContext);
+    }
+}
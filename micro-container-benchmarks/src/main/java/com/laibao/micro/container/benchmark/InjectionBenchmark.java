@@ -0,0 +1,38 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.benchmark.fixture.Service;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建并注入有N个扩展点setter的prototype扩展，测量实例化加注入的开销。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectionBenchmark {
+
+    @Param({"0", "1", "4", "8"})
+    private int setters;
+
+    private ExtensionLoader<Service> loader;
+
+    private String name;
+
+    @Setup
+    public void setup() {
+        loader = ExtensionLoader.getExtensionLoader(Service.class);
+        name = "injected" + setters;
+        loader.getExtension(name);
+    }
+
+    @Benchmark
+    public Service createAndInject() {
+        return loader.getExtension(name);
+    }
+}
@@ -0,0 +1,137 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.index.DescriptorEntry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static com.laibao.micro.container.constants.CommonConstants.PREFIX_ADAPTIVE_CLASS;
+import static com.laibao.micro.container.constants.CommonConstants.PREFIX_WRAPPER_CLASS;
+
+/**
+ * 逐行解析配置文件的旧实现，作为{@link DescriptorParseBenchmark}的对照：BufferedReader逐行读，substring/trim切分，
+ * 加载时再用正则表达式切分和校验扩展名，<code>split(",")</code>切分属性。
+ * <p/>
+ * {@link #parse(InputStream, String, Map)}和核心模块测试中用来校验<code>DescriptorParser</code>的同名类相同，
+ * 修改时两边一起改，基准对比的就是测试校验过结果相同的实现。
+ */
+final class LegacyDescriptorParser {
+
+    private static final Pattern NAME_SEPARATOR = Pattern.compile("\\s*,+\\s*");
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_]+");
+
+    private LegacyDescriptorParser() {
+    }
+
+    /**
+     * 按旧实现解析，并和加载时一样校验扩展名：名字无效的配置行也记为失败。
+     */
+    static List<DescriptorEntry> parse(InputStream in, String source, Map<String, Throwable> failures) throws IOException {
+        List<DescriptorEntry> entries = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            try {
+                DescriptorEntry entry = parseLine(line, source);
+                if (entry != null) {
+                    checkNames(entry.getName());
+                    entries.add(entry);
+                }
+            } catch (IllegalStateException e) {
+                if (!failures.containsKey(line)) {
+                    failures.put(line, e);
+                }
+            }
+        }
+        return entries;
+    }
+
+    static String[] splitNames(String name) {
+        if (name.startsWith("+")) {
+            name = name.substring(1);
+        }
+        String[] names = NAME_SEPARATOR.split(name);
+        for (String n : names) {
+            if (!NAME_PATTERN.matcher(n).matches()) {
+                throw new IllegalStateException("name(" + n + ") is invalid!");
+            }
+        }
+        return names;
+    }
+
+    static Map<String, String> parseAttributes(String attribute) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        if (attribute == null || attribute.length() == 0) {
+            return attributes;
+        }
+        for (String part : attribute.split(",")) {
+            part = part.trim();
+            if (part.length() == 0) {
+                continue;
+            }
+            int idx = part.indexOf('=');
+            if (idx > 0) {
+                attributes.put(part.substring(0, idx).trim().intern(), part.substring(idx + 1).trim().intern());
+            } else {
+                attributes.put(part.intern(), "");
+            }
+        }
+        return attributes;
+    }
+
+    private static DescriptorEntry parseLine(String line, String source) {
+        String config = line;
+        final int ci = config.indexOf('#');
+        if (ci >= 0) config = config.substring(0, ci);
+        config = config.trim();
+        if (config.length() == 0) return null;
+
+        String name = null;
+        String body = null;
+        String attribute = null;
+        int i = config.indexOf('=');
+        if (i > 0) {
+            name = config.substring(0, i).trim();
+            body = config.substring(i + 1).trim();
+        }
+        if (name == null || name.length() == 0) {
+            throw new IllegalStateException("missing extension name, config value: " + config);
+        }
+        int j = config.indexOf("(", i);
+        if (j > 0) {
+            if (config.charAt(config.length() - 1) != ')') {
+                throw new IllegalStateException("missing ')' of extension attribute!");
+            }
+            body = config.substring(i + 1, j).trim();
+            attribute = config.substring(j + 1, config.length() - 1);
+        }
+        return new DescriptorEntry(name, body, attribute, line, source);
+    }
+
+    /**
+     * 加载时的扩展名校验，Adaptive类不校验。只有逗号、没有名字时旧实现什么都不注册，这里也记为失败。
+     */
+    private static void checkNames(String name) {
+        if (name.startsWith(PREFIX_ADAPTIVE_CLASS)) {
+            return;
+        }
+        if (name.startsWith(PREFIX_WRAPPER_CLASS)) {
+            name = name.substring(PREFIX_WRAPPER_CLASS.length());
+        }
+        String[] names = NAME_SEPARATOR.split(name);
+        if (names.length == 0) {
+            throw new IllegalStateException("no extension name");
+        }
+        for (String n : names) {
+            if (!NAME_PATTERN.matcher(n).matches()) {
+                throw new IllegalStateException("name(" + n + ") is invalid!");
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionLease;
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.benchmark.fixture.Codec;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建时分配64KB缓冲区的扩展：从池中借出、归还，对比每次通过<code>getExtension</code>创建新实例。
+ * 用<code>-t</code>指定多个线程时测量池的竞争。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+
+    private ExtensionLoader<Codec> loader;
+
+    @Setup
+    public void setup() {
+        loader = ExtensionLoader.getExtensionLoader(Codec.class);
+    }
+
+    @Benchmark
+    public int borrowAndRelease() {
+        try (ExtensionLease<Codec> lease = loader.borrowExtension("buffered")) {
+            return lease.get().encode(1);
+        }
+    }
+
+    @Benchmark
+    public int createEachTime() {
+        return loader.getExtension("buffered").encode(1);
+    }
+}
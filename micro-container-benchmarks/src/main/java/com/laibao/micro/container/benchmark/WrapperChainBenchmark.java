@@ -0,0 +1,48 @@
+package com.laibao.micro.container.benchmark;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.benchmark.fixture.Service;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 深度1到8的Wrapper链：单例扩展上缓存的Wrapper链查找，以及prototype扩展上每次重新构造的Wrapper链。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WrapperChainBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int depth;
+
+    private ExtensionLoader<Service> loader;
+
+    private List<String> wrappers;
+
+    @Setup
+    public void setup() {
+        loader = ExtensionLoader.getExtensionLoader(Service.class);
+        wrappers = new ArrayList<>();
+        for (int i = 1; i <= depth; i++) {
+            wrappers.add("w" + i);
+        }
+        loader.getExtension("plain", wrappers);
+    }
+
+    @Benchmark
+    public Service cachedChain() {
+        return loader.getExtension("plain", wrappers);
+    }
+
+    @Benchmark
+    public Service buildChain() {
+        return loader.getExtension("prototype", wrappers);
+    }
+}
@@ -0,0 +1,12 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class BufferedCodec implements Codec {
+
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Override
+    public int encode(int value) {
+        buffer[value & (buffer.length - 1)] = (byte) value;
+        return buffer.length;
+    }
+}
@@ -0,0 +1,12 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+import com.laibao.micro.container.annotation.SPI;
+
+/**
+ * 池化基准用的扩展点，实现类创建时分配一块缓冲区，不是线程安全的。
+ */
+@SPI("buffered")
+public interface Codec {
+
+    int encode(int value);
+}
@@ -0,0 +1,10 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+import com.laibao.micro.container.annotation.SPI;
+
+/**
+ * 冷加载基准用的扩展点，每次测量都在新的ClassLoader中重新定义。
+ */
+@SPI
+public interface ColdService {
+}
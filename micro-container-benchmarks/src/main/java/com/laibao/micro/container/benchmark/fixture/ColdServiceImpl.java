@@ -0,0 +1,4 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class ColdServiceImpl implements ColdService {
+}
@@ -0,0 +1,9 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class DefaultDependency implements Dependency {
+
+    @Override
+    public int value() {
+        return 1;
+    }
+}
@@ -0,0 +1,15 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class Injected1 implements Service {
+
+    private Dependency dep1;
+
+    public void setDep1(Dependency dep1) {
+        this.dep1 = dep1;
+    }
+
+    @Override
+    public int work() {
+        return dep1.value();
+    }
+}
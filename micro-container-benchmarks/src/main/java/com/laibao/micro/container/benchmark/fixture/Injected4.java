@@ -0,0 +1,33 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class Injected4 implements Service {
+
+    private Dependency dep1;
+
+    private Dependency dep2;
+
+    private Dependency dep3;
+
+    private Dependency dep4;
+
+    public void setDep1(Dependency dep1) {
+        this.dep1 = dep1;
+    }
+
+    public void setDep2(Dependency dep2) {
+        this.dep2 = dep2;
+    }
+
+    public void setDep3(Dependency dep3) {
+        this.dep3 = dep3;
+    }
+
+    public void setDep4(Dependency dep4) {
+        this.dep4 = dep4;
+    }
+
+    @Override
+    public int work() {
+        return dep1.value() + dep2.value() + dep3.value() + dep4.value();
+    }
+}
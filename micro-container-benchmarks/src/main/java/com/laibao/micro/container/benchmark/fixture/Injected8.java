@@ -0,0 +1,57 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class Injected8 implements Service {
+
+    private Dependency dep1;
+
+    private Dependency dep2;
+
+    private Dependency dep3;
+
+    private Dependency dep4;
+
+    private Dependency dep5;
+
+    private Dependency dep6;
+
+    private Dependency dep7;
+
+    private Dependency dep8;
+
+    public void setDep1(Dependency dep1) {
+        this.dep1 = dep1;
+    }
+
+    public void setDep2(Dependency dep2) {
+        this.dep2 = dep2;
+    }
+
+    public void setDep3(Dependency dep3) {
+        this.dep3 = dep3;
+    }
+
+    public void setDep4(Dependency dep4) {
+        this.dep4 = dep4;
+    }
+
+    public void setDep5(Dependency dep5) {
+        this.dep5 = dep5;
+    }
+
+    public void setDep6(Dependency dep6) {
+        this.dep6 = dep6;
+    }
+
+    public void setDep7(Dependency dep7) {
+        this.dep7 = dep7;
+    }
+
+    public void setDep8(Dependency dep8) {
+        this.dep8 = dep8;
+    }
+
+    @Override
+    public int work() {
+        return dep1.value() + dep2.value() + dep3.value() + dep4.value() + dep5.value() + dep6.value() + dep7.value() + dep8.value();
+    }
+}
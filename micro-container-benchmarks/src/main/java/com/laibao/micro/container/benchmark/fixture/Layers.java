@@ -0,0 +1,132 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+import com.laibao.micro.container.annotation.SPI;
+import com.laibao.micro.container.annotation.Scope;
+
+/**
+ * 五层的prototype扩展点，每层的实现通过两个setter注入下一层：按实例数算是一棵31个节点的二叉树，
+ * 按扩展算只有5个节点。
+ */
+public final class Layers {
+
+    private Layers() {
+    }
+
+    @SPI(value = "default", scope = Scope.PROTOTYPE)
+    public interface Layer1 {
+
+        int size();
+    }
+
+    @SPI(value = "default", scope = Scope.PROTOTYPE)
+    public interface Layer2 {
+
+        int size();
+    }
+
+    @SPI(value = "default", scope = Scope.PROTOTYPE)
+    public interface Layer3 {
+
+        int size();
+    }
+
+    @SPI(value = "default", scope = Scope.PROTOTYPE)
+    public interface Layer4 {
+
+        int size();
+    }
+
+    @SPI(value = "default", scope = Scope.PROTOTYPE)
+    public interface Layer5 {
+
+        int size();
+    }
+
+    public static class Layer1Impl implements Layer1 {
+
+        private Layer2 left;
+
+        private Layer2 right;
+
+        public void setLeft(Layer2 left) {
+            this.left = left;
+        }
+
+        public void setRight(Layer2 right) {
+            this.right = right;
+        }
+
+        @Override
+        public int size() {
+            return 1 + left.size() + right.size();
+        }
+    }
+
+    public static class Layer2Impl implements Layer2 {
+
+        private Layer3 left;
+
+        private Layer3 right;
+
+        public void setLeft(Layer3 left) {
+            this.left = left;
+        }
+
+        public void setRight(Layer3 right) {
+            this.right = right;
+        }
+
+        @Override
+        public int size() {
+            return 1 + left.size() + right.size();
+        }
+    }
+
+    public static class Layer3Impl implements Layer3 {
+
+        private Layer4 left;
+
+        private Layer4 right;
+
+        public void setLeft(Layer4 left) {
+            this.left = left;
+        }
+
+        public void setRight(Layer4 right) {
+            this.right = right;
+        }
+
+        @Override
+        public int size() {
+            return 1 + left.size() + right.size();
+        }
+    }
+
+    public static class Layer4Impl implements Layer4 {
+
+        private Layer5 left;
+
+        private Layer5 right;
+
+        public void setLeft(Layer5 left) {
+            this.left = left;
+        }
+
+        public void setRight(Layer5 right) {
+            this.right = right;
+        }
+
+        @Override
+        public int size() {
+            return 1 + left.size() + right.size();
+        }
+    }
+
+    public static class Layer5Impl implements Layer5 {
+
+        @Override
+        public int size() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class PlainService implements Service {
+
+    @Override
+    public int work() {
+        return 1;
+    }
+}
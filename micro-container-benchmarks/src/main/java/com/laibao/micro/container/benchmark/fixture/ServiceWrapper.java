@@ -0,0 +1,15 @@
+package com.laibao.micro.container.benchmark.fixture;
+
+public class ServiceWrapper implements Service {
+
+    private final Service service;
+
+    public ServiceWrapper(Service service) {
+        this.service = service;
+    }
+
+    @Override
+    public int work() {
+        return service.work() + 1;
+    }
+}
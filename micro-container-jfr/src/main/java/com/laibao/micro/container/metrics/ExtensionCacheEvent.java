@@ -0,0 +1,29 @@
+package com.laibao.micro.container.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 实例缓存命中与未命中的JFR事件，量大，缺省不启用。
+ *
+ * @since 1.0
+ */
+@Name("com.laibao.micro.container.ExtensionCache")
+@Label("Extension Cache Lookup")
+@Category("Micro Container")
+@Description("Hits and misses of the extension instance cache")
+@Enabled(false)
+class ExtensionCacheEvent extends jdk.jfr.Event {
+
+    @Label("Extension Point")
+    String extensionPoint;
+
+    @Label("Extension Name")
+    String extensionName;
+
+    @Label("Hit")
+    boolean hit;
+}
@@ -0,0 +1,35 @@
+package com.laibao.micro.container.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * 加载扩展点、创建扩展、注入和创建Wrapper的JFR事件。
+ *
+ * @since 1.0
+ */
+@Name("com.laibao.micro.container.Extension")
+@Label("Extension Operation")
+@Category("Micro Container")
+@Description("Loading, instantiation, injection and wrapping of extensions")
+class ExtensionEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Extension Point")
+    String extensionPoint;
+
+    @Label("Extension Name")
+    String extensionName;
+
+    @Label("Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+
+    @Label("Failure")
+    String failure;
+}
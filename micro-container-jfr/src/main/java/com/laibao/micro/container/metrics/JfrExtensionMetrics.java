@@ -0,0 +1,51 @@
+package com.laibao.micro.container.metrics;
+
+/**
+ * 把指标发成JDK Flight Recorder事件，扩展名为<code>jfr</code>。
+ * <p/>
+ * 需要运行在带<code>jdk.jfr</code>的JDK上（8u262+或11+），事件没有在录制中启用时不创建对象。
+ *
+ * @see ExtensionEvent
+ * @see ExtensionCacheEvent
+ * @since 1.0
+ */
+public class JfrExtensionMetrics implements ExtensionMetrics {
+
+    private final ExtensionEvent probe = new ExtensionEvent();
+
+    private final ExtensionCacheEvent cacheProbe = new ExtensionCacheEvent();
+
+    @Override
+    public void record(MetricType metric, Class<?> type, String name, long nanos) {
+        if (metric == MetricType.CACHE_HIT || metric == MetricType.CACHE_MISS) {
+            if (cacheProbe.isEnabled()) {
+                ExtensionCacheEvent event = new ExtensionCacheEvent();
+                event.extensionPoint = type.getName();
+                event.extensionName = name;
+                event.hit = metric == MetricType.CACHE_HIT;
+                event.commit();
+            }
+            return;
+        }
+        if (probe.isEnabled()) {
+            ExtensionEvent event = new ExtensionEvent();
+            event.operation = metric.name();
+            event.extensionPoint = type.getName();
+            event.extensionName = name;
+            event.time = nanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void recordFailure(Class<?> type, String name, Throwable cause) {
+        if (probe.isEnabled()) {
+            ExtensionEvent event = new ExtensionEvent();
+            event.operation = "FAILURE";
+            event.extensionPoint = type.getName();
+            event.extensionName = name;
+            event.failure = String.valueOf(cause);
+            event.commit();
+        }
+    }
+}
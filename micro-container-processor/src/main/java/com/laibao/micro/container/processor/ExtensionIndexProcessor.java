@@ -0,0 +1,251 @@
+package com.laibao.micro.container.processor;
+
+import com.laibao.micro.container.annotation.SPI;
+import com.laibao.micro.container.annotation.Scope;
+import com.laibao.micro.container.index.DescriptorEntry;
+import com.laibao.micro.container.index.ExtensionIndex;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.laibao.micro.container.constants.CommonConstants.*;
+import static com.laibao.micro.container.helper.ExtensionHelper.isValidExtName;
+import static com.laibao.micro.container.helper.ExtensionHelper.parseExtAttribute;
+
+/**
+ * 编译期生成扩展点索引的注解处理器。
+ * <p/>
+ * 处理的扩展点包括：本次编译的{@link SPI}接口、输出目录<code>META-INF/extensions/</code>下有配置文件的接口，
+ * 以及选项<code>-Amicro.container.extensionPoints=a.B,c.D</code>列出的接口。
+ * 配置文件中的每一行都按{@link com.laibao.micro.container.ExtensionLoader}的规则校验：
+ * 扩展名、实现类是扩展点的子类、扩展类有缺省构造函数、Wrapper类有拷贝构造函数。
+ * 校验通过的配置项写入<code>META-INF/extensions.idx</code>。
+ * <p/>
+ * 索引只包含本模块中的配置文件，运行时不再读取本模块中的这些配置文件；其它Jar包中同一个扩展点的配置文件仍然读取。
+ *
+ * @see ExtensionIndex
+ * @since 1.0
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(ExtensionIndexProcessor.EXTENSION_POINTS_OPTION)
+public class ExtensionIndexProcessor extends AbstractProcessor {
+
+    static final String EXTENSION_POINTS_OPTION = "micro.container.extensionPoints";
+
+    private final Set<String> extensionPoints = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        if (!roundEnv.processingOver()) {
+            TypeElement spi = elements.getTypeElement(SPI.class.getName());
+            if (spi != null) {
+                for (Element element : roundEnv.getElementsAnnotatedWith(spi)) {
+                    if (element.getKind() == ElementKind.INTERFACE) {
+                        extensionPoints.add(elements.getBinaryName((TypeElement) element).toString());
+                    }
+                }
+            }
+            return false;
+        }
+
+        String option = processingEnv.getOptions().get(EXTENSION_POINTS_OPTION);
+        if (option != null) {
+            for (String name : NAME_SEPARATOR.split(option.trim())) {
+                if (name.length() > 0) {
+                    extensionPoints.add(name);
+                }
+            }
+        }
+        extensionPoints.addAll(listDescriptors());
+
+        Map<String, List<DescriptorEntry>> type2Entries = new LinkedHashMap<>();
+        for (String typeName : extensionPoints) {
+            List<DescriptorEntry> entries = readDescriptor(typeName);
+            if (entries != null && !entries.isEmpty()) {
+                type2Entries.put(typeName, entries);
+            }
+        }
+        if (!type2Entries.isEmpty()) {
+            writeIndex(new ExtensionIndex(type2Entries));
+        }
+        return false;
+    }
+
+    /**
+     * 列出输出目录下已有的配置文件，输出目录不是文件系统目录时返回空。
+     */
+    private Set<String> listDescriptors() {
+        Set<String> names = new TreeSet<>();
+        try {
+            FileObject root = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", EXTENSION_CONF_DIRECTORY);
+            URI uri = root.toUri();
+            if ("file".equals(uri.getScheme())) {
+                File[] files = new File(uri).listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (file.isFile()) {
+                            names.add(file.getName());
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // 没有配置目录
+        }
+        return names;
+    }
+
+    private List<DescriptorEntry> readDescriptor(String typeName) {
+        Messager messager = processingEnv.getMessager();
+        Filer filer = processingEnv.getFiler();
+        String fileName = EXTENSION_CONF_DIRECTORY + typeName;
+
+        TypeElement type = getTypeElement(typeName);
+        if (type == null) {
+            messager.printMessage(Diagnostic.Kind.WARNING, "Extension point " + typeName +
+                    " of " + fileName + " is not on the compile classpath, skip indexing it.");
+            return null;
+        }
+        if (type.getKind() != ElementKind.INTERFACE || type.getAnnotation(SPI.class) == null) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "type(" + typeName + ") of " + fileName +
+                    " is not a extension, because WITHOUT @SPI Annotation!", type);
+            return null;
+        }
+
+        List<String> lines = new ArrayList<>();
+        try {
+            FileObject file = filer.getResource(StandardLocation.CLASS_OUTPUT, "", fileName);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            // 本模块没有这个扩展点的配置
+            return null;
+        }
+
+        List<DescriptorEntry> entries = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String source = fileName + ":" + (i + 1);
+            try {
+                DescriptorEntry entry = DescriptorEntry.parse(line, source);
+                if (entry != null) {
+                    validate(type, entry);
+                    entries.add(entry);
+                }
+            } catch (IllegalStateException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Failed to load config line(" + line +
+                        ") of config file(" + source + ") for extension(" + typeName + "), cause: " + e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private void validate(TypeElement type, DescriptorEntry entry) {
+        Types types = processingEnv.getTypeUtils();
+        String name = entry.getName();
+        boolean isAdaptive = name.startsWith(PREFIX_ADAPTIVE_CLASS);
+        boolean isWrapper = name.startsWith(PREFIX_WRAPPER_CLASS);
+        if (!isAdaptive) {
+            if (isWrapper) {
+                name = name.substring(PREFIX_WRAPPER_CLASS.length());
+            }
+            for (String n : NAME_SEPARATOR.split(name)) {
+                if (!isValidExtName(n)) {
+                    throw new IllegalStateException("name(" + n +
+                            ") of extension " + type.getQualifiedName() + " is invalid!");
+                }
+            }
+        }
+        String scope = parseExtAttribute(entry.getAttribute()).get(SCOPE_ATTRIBUTE);
+        if (scope != null && scope.length() > 0) {
+            try {
+                Scope.of(scope);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+
+        TypeElement impl = getTypeElement(entry.getClassName());
+        if (impl == null) {
+            // 实现类不在编译期的classpath上，留给运行时校验
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "extension class(" +
+                    entry.getClassName() + ") of " + entry.getSource() + " is not on the compile classpath.");
+            return;
+        }
+        TypeMirror typeMirror = types.erasure(type.asType());
+        if (!types.isAssignable(types.erasure(impl.asType()), typeMirror)) {
+            throw new IllegalStateException("class " + entry.getClassName() + " is not subtype of interface.");
+        }
+        if (isAdaptive) {
+            return;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(impl.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                continue;
+            }
+            if (isWrapper) {
+                if (constructor.getParameters().size() == 1 && types.isSameType(
+                        types.erasure(constructor.getParameters().get(0).asType()), typeMirror)) {
+                    return;
+                }
+            } else if (constructor.getParameters().isEmpty()) {
+                return;
+            }
+        }
+        throw new IllegalStateException(isWrapper
+                ? "wrapper class(" + entry.getClassName() + ") has NO copy constructor!"
+                : "extension class(" + entry.getClassName() + ") has NO default constructor!");
+    }
+
+    private TypeElement getTypeElement(String binaryName) {
+        return processingEnv.getElementUtils().getTypeElement(binaryName.replace('$', '.'));
+    }
+
+    private void writeIndex(ExtensionIndex index) {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", EXTENSION_INDEX_RESOURCE);
+            try (OutputStream out = file.openOutputStream()) {
+                index.write(out);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write extension index " + EXTENSION_INDEX_RESOURCE + ", cause: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.laibao.micro.container.stress;
+
+import java.util.function.Supplier;
+
+/**
+ * Actor中的异常会让jcstress把整个测试记为错误，看不到结果的分布；失败记为<code>null</code>，由结果判定。
+ */
+final class Actors {
+
+    private Actors() {
+    }
+
+    static <T> T get(Supplier<T> supplier) {
+        try {
+            return supplier.get();
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.laibao.micro.container.stress;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.stress.fixture.Service;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+/**
+ * 释放ClassLoader和第一次获取扩展并发：释放清空了缓存，获取方仍然要拿到实例，不能因为槽位被移除而失败。
+ */
+@JCStressTest
+@Outcome(id = "1", expect = Expect.ACCEPTABLE, desc = "Lookup succeeded.")
+@Outcome(id = "0", expect = Expect.FORBIDDEN, desc = "Lookup failed while the ClassLoader was disposed.")
+@State
+public class DisposeRaceTest {
+
+    private final Tenant tenant = new Tenant();
+
+    private final ExtensionLoader<Service> loader = tenant.loader(Service.class);
+
+    private volatile Service service;
+
+    @Actor
+    public void actor1() {
+        service = Actors.get(() -> loader.getExtension("plain"));
+    }
+
+    @Actor
+    public void actor2() {
+        tenant.dispose();
+    }
+
+    @Arbiter
+    public void arbiter(I_Result r) {
+        r.r1 = service != null ? 1 : 0;
+        tenant.dispose();
+    }
+}
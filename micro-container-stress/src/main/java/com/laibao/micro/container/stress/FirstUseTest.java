@@ -0,0 +1,43 @@
+package com.laibao.micro.container.stress;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.stress.fixture.Service;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+/**
+ * 两个线程在还没有加载配置的ExtensionLoader上同时获取单例扩展：都要成功，且拿到同一个实例。
+ * <p/>
+ * 结果：每个线程1表示拿到实例，0表示<code>null</code>或异常；第三个值1表示两个实例相同。
+ */
+@JCStressTest
+@Outcome(id = "1, 1", expect = Expect.ACCEPTABLE, desc = "Loaded once, one singleton.")
+@Outcome(expect = Expect.FORBIDDEN, desc = "A thread failed, saw null, or the singleton was created twice.")
+@State
+public class FirstUseTest {
+
+    private final Tenant tenant = new Tenant();
+
+    private final ExtensionLoader<Service> loader = tenant.loader(Service.class);
+
+    private volatile Service service1;
+
+    private volatile Service service2;
+
+    @Actor
+    public void actor1() {
+        service1 = Actors.get(() -> loader.getExtension("plain"));
+    }
+
+    @Actor
+    public void actor2() {
+        service2 = Actors.get(() -> loader.getExtension("plain"));
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = service1 != null && service2 != null ? 1 : 0;
+        r.r2 = service1 == service2 ? 1 : 0;
+        tenant.dispose();
+    }
+}
@@ -0,0 +1,45 @@
+package com.laibao.micro.container.stress;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.stress.fixture.Dependency;
+import com.laibao.micro.container.stress.fixture.InjectedService;
+import com.laibao.micro.container.stress.fixture.Service;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+/**
+ * 一个线程创建需要注入的扩展，同时另一个线程第一次获取被注入的扩展点：
+ * 两个ExtensionLoader都是第一次使用，注入的依赖必须是另一个线程拿到的同一个单例。
+ */
+@JCStressTest
+@Outcome(id = "1, 1", expect = Expect.ACCEPTABLE, desc = "Dependency injected and shared.")
+@Outcome(expect = Expect.FORBIDDEN, desc = "Injection failed, or the dependency was created twice.")
+@State
+public class InjectionRaceTest {
+
+    private final Tenant tenant = new Tenant();
+
+    private final ExtensionLoader<Service> services = tenant.loader(Service.class);
+
+    private volatile Service injected;
+
+    private volatile Dependency dependency;
+
+    @Actor
+    public void actor1() {
+        injected = Actors.get(() -> services.getExtension("injected"));
+    }
+
+    @Actor
+    public void actor2() {
+        dependency = Actors.get(() -> tenant.loader(Dependency.class).getDefaultExtension());
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        Dependency injectedDependency = injected instanceof InjectedService ? ((InjectedService) injected).getDependency() : null;
+        r.r1 = injectedDependency != null ? 1 : 0;
+        r.r2 = injectedDependency != null && injectedDependency == dependency ? 1 : 0;
+        tenant.dispose();
+    }
+}
@@ -0,0 +1,38 @@
+package com.laibao.micro.container.stress;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.stress.fixture.Service;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.Z_Result;
+
+/**
+ * 两个线程第一次从同一个ClassLoader获取同一个扩展点的ExtensionLoader，必须拿到同一个实例。
+ */
+@JCStressTest
+@Outcome(id = "true", expect = Expect.ACCEPTABLE, desc = "Both threads see the same loader.")
+@Outcome(id = "false", expect = Expect.FORBIDDEN, desc = "Two loaders registered for one (ClassLoader, type).")
+@State
+public class LoaderRaceTest {
+
+    private final Tenant tenant = new Tenant();
+
+    private ExtensionLoader<Service> loader1;
+
+    private ExtensionLoader<Service> loader2;
+
+    @Actor
+    public void actor1() {
+        loader1 = tenant.loader(Service.class);
+    }
+
+    @Actor
+    public void actor2() {
+        loader2 = tenant.loader(Service.class);
+    }
+
+    @Arbiter
+    public void arbiter(Z_Result r) {
+        r.r1 = loader1 == loader2 && loader1 == tenant.loader(Service.class);
+        tenant.dispose();
+    }
+}
@@ -0,0 +1,51 @@
+package com.laibao.micro.container.stress;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.stress.fixture.Service;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 重新加载和获取扩展并发：一个线程重新加载配置，另一个线程获取带Wrapper的扩展。
+ * 获取方要么用旧版本、要么用新版本的注册表，不能看到<code>null</code>的槽位或Wrapper定义；
+ * 之后再获取的单例必须稳定。
+ */
+@JCStressTest
+@Outcome(id = "1, 1", expect = Expect.ACCEPTABLE, desc = "Lookup succeeded, singleton stable afterwards.")
+@Outcome(expect = Expect.FORBIDDEN, desc = "Lookup failed during reload, or the cache is inconsistent.")
+@State
+public class ReloadRaceTest {
+
+    private static final List<String> WRAPPERS = Collections.singletonList("w2");
+
+    private final Tenant tenant = new Tenant();
+
+    private final ExtensionLoader<Service> loader = tenant.loader(Service.class);
+
+    private volatile Service service;
+
+    public ReloadRaceTest() {
+        loader.getExtension("plain");
+    }
+
+    @Actor
+    public void actor1() {
+        loader.reload();
+    }
+
+    @Actor
+    public void actor2() {
+        service = Actors.get(() -> loader.getExtension("plain", WRAPPERS));
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = service != null ? 1 : 0;
+        r.r2 = loader.getExtension("plain") == loader.getExtension("plain")
+                && loader.getExtension("plain", WRAPPERS) == loader.getExtension("plain", WRAPPERS) ? 1 : 0;
+        tenant.dispose();
+    }
+}
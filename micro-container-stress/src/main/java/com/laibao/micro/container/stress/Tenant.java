@@ -0,0 +1,24 @@
+package com.laibao.micro.container.stress;
+
+import com.laibao.micro.container.ExtensionLoader;
+
+/**
+ * 每轮测试一个新的ClassLoader，ExtensionLoader都是第一次使用：还没有加载配置，也没有缓存的实例。
+ * <p/>
+ * 配置和实现类都委托给父ClassLoader加载，只有ClassLoader的标识是新的。每轮结束时在{@code @Arbiter}中{@link #dispose()}，
+ * 否则注册表会一直引用它。
+ */
+final class Tenant extends ClassLoader {
+
+    Tenant() {
+        super(Tenant.class.getClassLoader());
+    }
+
+    <T> ExtensionLoader<T> loader(Class<T> type) {
+        return ExtensionLoader.getExtensionLoader(type, this);
+    }
+
+    void dispose() {
+        ExtensionLoader.dispose(this);
+    }
+}
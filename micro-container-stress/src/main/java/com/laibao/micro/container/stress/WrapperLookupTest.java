@@ -0,0 +1,54 @@
+package com.laibao.micro.container.stress;
+
+import com.laibao.micro.container.ExtensionLoader;
+import com.laibao.micro.container.stress.fixture.Service;
+import com.laibao.micro.container.stress.fixture.ServiceWrapper;
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 第一次使用时两个线程同时获取同一个带Wrapper的单例扩展：加载配置后Wrapper定义必须已经可见，
+ * Wrapper链按(扩展名, Wrapper列表)只构造一次。
+ * <p/>
+ * 结果：第一个值1表示两个线程都拿到了包装好的扩展，第二个值1表示两个线程拿到同一个Wrapper链。
+ */
+@JCStressTest
+@Outcome(id = "1, 1", expect = Expect.ACCEPTABLE, desc = "One wrapper chain, fully built.")
+@Outcome(expect = Expect.FORBIDDEN, desc = "Wrapper missing, or the chain was built twice.")
+@State
+public class WrapperLookupTest {
+
+    private static final List<String> WRAPPERS = Collections.singletonList("w1");
+
+    private final Tenant tenant = new Tenant();
+
+    private final ExtensionLoader<Service> loader = tenant.loader(Service.class);
+
+    private volatile Service wrapped1;
+
+    private volatile Service wrapped2;
+
+    @Actor
+    public void actor1() {
+        wrapped1 = Actors.get(() -> loader.getExtension("plain", WRAPPERS));
+    }
+
+    @Actor
+    public void actor2() {
+        wrapped2 = Actors.get(() -> loader.getExtension("plain", WRAPPERS));
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = isWrapped(wrapped1) && isWrapped(wrapped2) ? 1 : 0;
+        r.r2 = wrapped1 == wrapped2 ? 1 : 0;
+        tenant.dispose();
+    }
+
+    private static boolean isWrapped(Service service) {
+        return service instanceof ServiceWrapper && ((ServiceWrapper) service).getService() != null;
+    }
+}
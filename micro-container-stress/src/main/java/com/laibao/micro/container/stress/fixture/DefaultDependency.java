@@ -0,0 +1,9 @@
+package com.laibao.micro.container.stress.fixture;
+
+public class DefaultDependency implements Dependency {
+
+    @Override
+    public int value() {
+        return 1;
+    }
+}
@@ -0,0 +1,9 @@
+package com.laibao.micro.container.stress.fixture;
+
+import com.laibao.micro.container.annotation.SPI;
+
+@SPI("dep")
+public interface Dependency {
+
+    int value();
+}
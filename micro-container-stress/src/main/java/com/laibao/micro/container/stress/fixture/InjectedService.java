@@ -0,0 +1,19 @@
+package com.laibao.micro.container.stress.fixture;
+
+public class InjectedService implements Service {
+
+    private Dependency dependency;
+
+    public void setDependency(Dependency dependency) {
+        this.dependency = dependency;
+    }
+
+    public Dependency getDependency() {
+        return dependency;
+    }
+
+    @Override
+    public int work() {
+        return dependency.value();
+    }
+}
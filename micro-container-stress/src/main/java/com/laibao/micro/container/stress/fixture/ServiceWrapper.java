@@ -0,0 +1,19 @@
+package com.laibao.micro.container.stress.fixture;
+
+public class ServiceWrapper implements Service {
+
+    private final Service service;
+
+    public ServiceWrapper(Service service) {
+        this.service = service;
+    }
+
+    public Service getService() {
+        return service;
+    }
+
+    @Override
+    public int work() {
+        return service.work() + 1;
+    }
+}
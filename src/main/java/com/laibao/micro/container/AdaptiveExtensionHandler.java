@@ -0,0 +1,187 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.annotation.Adaptive;
+import com.laibao.micro.container.annotation.Scope;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 自适应扩展代理的{@link InvocationHandler}。
+ * <p/>
+ * 每次调用从方法的<code>Map&lt;String, String&gt;</code>参数中取扩展名，再把调用转给对应的扩展实例。
+ * 每个方法（调用点）上有一个小的内联缓存，记录最近选中的单例扩展；超过{@link #POLYMORPHIC_LIMIT}个不同的扩展后，
+ * 新的扩展名不再缓存，直接通过{@link ExtensionLoader}获取。
+ *
+ * @see ExtensionLoader#getAdaptiveExtension()
+ * @since 1.0
+ */
+final class AdaptiveExtensionHandler<T> implements InvocationHandler {
+
+    static final int POLYMORPHIC_LIMIT = 4;
+
+    private static final Entry[] EMPTY_CACHE = new Entry[0];
+
+    private final ExtensionLoader<T> loader;
+
+    private final Class<T> type;
+
+    private final Map<Method, AdaptiveMethod> methods = new HashMap<>();
+
+    // 每次invalidate加一，取扩展前后不一致时不缓存取到的扩展
+    private volatile int epoch;
+
+    AdaptiveExtensionHandler(ExtensionLoader<T> loader, Class<T> type) {
+        this.loader = loader;
+        this.type = type;
+        for (Method method : type.getMethods()) {
+            methods.put(method, new AdaptiveMethod(method, type));
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        AdaptiveMethod adaptiveMethod = methods.get(method);
+        if (adaptiveMethod == null) {
+            return invokeObjectMethod(proxy, method, args);
+        }
+        return adaptiveMethod.invoke(args);
+    }
+
+    /**
+     * 清空所有调用点的内联缓存，扩展点重新加载后调用。
+     */
+    void invalidate() {
+        epoch++;
+        for (AdaptiveMethod method : methods.values()) {
+            synchronized (method) {
+                method.cache = EMPTY_CACHE;
+            }
+        }
+    }
+
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "AdaptiveExtension<" + type.getName() + ">";
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    private final class AdaptiveMethod {
+
+        private final Method method;
+
+        private final int propertiesIndex;
+
+        private final String[] keys;
+
+        // (Object delegate, Object[] args)Object
+        private final MethodHandle invoker;
+
+        volatile Entry[] cache = EMPTY_CACHE;
+
+        AdaptiveMethod(Method method, Class<T> type) {
+            this.method = method;
+            int index = -1;
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (Map.class.isAssignableFrom(parameterTypes[i])) {
+                    index = i;
+                    break;
+                }
+            }
+            this.propertiesIndex = index;
+
+            Adaptive adaptive = method.getAnnotation(Adaptive.class);
+            this.keys = adaptive != null && adaptive.value().length > 0 ? adaptive.value() : new String[]{type.getName()};
+
+            MethodHandle handle = null;
+            if (index >= 0) {
+                try {
+                    handle = MethodHandles.lookup().unreflect(method)
+                            .asType(MethodType.genericMethodType(parameterTypes.length + 1))
+                            .asSpreader(Object[].class, parameterTypes.length);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Can not access method " + method +
+                            " of extension point " + type.getName() + ", cause: " + e.getMessage(), e);
+                }
+            }
+            this.invoker = handle;
+        }
+
+        Object invoke(Object[] args) throws Throwable {
+            if (propertiesIndex < 0) {
+                throw new UnsupportedOperationException("method " + method +
+                        " of extension point " + type.getName() + " has no properties parameter, can not be adaptive!");
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, String> properties = (Map<String, String>) args[propertiesIndex];
+            if (properties == null) {
+                throw new IllegalArgumentException("properties == null");
+            }
+            String name = null;
+            for (String key : keys) {
+                name = properties.get(key);
+                if (name != null && name.length() > 0) {
+                    break;
+                }
+            }
+            if (name == null || name.length() == 0) {
+                name = loader.getDefaultExtensionName();
+                if (name == null) {
+                    throw new IllegalStateException("Fail to get extension(" + type.getName() +
+                            ") name from properties using keys(" + Arrays.toString(keys) + ")");
+                }
+            }
+            return invoker.invokeExact(select(name, properties), args);
+        }
+
+        private Object select(String name, Map<String, String> properties) {
+            Entry[] entries = cache;
+            for (Entry entry : entries) {
+                if (entry.name == name || entry.name.equals(name)) {
+                    return entry.delegate;
+                }
+            }
+            int expected = epoch;
+            Object delegate = loader.getExtension(name, properties);
+            // 只缓存不依赖properties的单例扩展
+            if (entries.length < POLYMORPHIC_LIMIT && loader.getExtensionScope(name) == Scope.SINGLETON) {
+                synchronized (this) {
+                    entries = cache;
+                    // 取扩展期间重新加载过，取到的可能是旧的实例
+                    if (expected == epoch && entries.length < POLYMORPHIC_LIMIT) {
+                        Entry[] updated = Arrays.copyOf(entries, entries.length + 1);
+                        updated[entries.length] = new Entry(name, delegate);
+                        cache = updated;
+                    }
+                }
+            }
+            return delegate;
+        }
+    }
+
+    private static final class Entry {
+
+        final String name;
+
+        final Object delegate;
+
+        Entry(String name, Object delegate) {
+            this.name = name;
+            this.delegate = delegate;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.laibao.micro.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link ExtensionLoader#getExtensionAsync(String, java.util.Map)}缺省使用的Executor：
+ * JDK 21及以上每个任务一个虚拟线程，否则是{@link ForkJoinPool#commonPool()}。
+ * <p/>
+ * 编译目标是Java 8，虚拟线程的Executor通过反射创建。第一次异步获取扩展时才创建。
+ *
+ * @since 1.0
+ */
+final class AsyncExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncExecutors.class);
+
+    private static volatile Executor executor;
+
+    private AsyncExecutors() {
+    }
+
+    static Executor get() {
+        Executor e = executor;
+        return e != null ? e : Default.EXECUTOR;
+    }
+
+    /**
+     * @param e 为<code>null</code>时恢复缺省的Executor
+     */
+    static void set(Executor e) {
+        executor = e;
+    }
+
+    private static final class Default {
+
+        static final Executor EXECUTOR = create();
+
+        private static Executor create() {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                Executor e = (Executor) method.invoke(null);
+                logger.debug("Create extensions asynchronously on virtual threads.");
+                return e;
+            } catch (Throwable t) {
+                // JDK 21以前没有这个方法，或者虚拟线程是没有启用的预览特性
+                return ForkJoinPool.commonPool();
+            }
+        }
+    }
+}
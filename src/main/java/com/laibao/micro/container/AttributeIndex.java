@@ -0,0 +1,214 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.helper.StringHelper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.laibao.micro.container.constants.CommonConstants.*;
+
+/**
+ * 扩展属性的倒排索引，随注册表的每个版本构建一次。
+ * <p/>
+ * 所有扩展名预先按<code>order</code>属性（缺省0）排序，<code>order</code>相同时保持配置中的顺序；
+ * 按属性查询和激活返回的列表都是这个顺序的子序列，不需要再排序。属性值可以用<code>|</code>分隔多个值，
+ * 如<code>group=filter|router</code>。
+ * <p/>
+ * 激活条件：有<code>activate</code>属性的扩展参与激活。<code>activate</code>没有值时总是激活；
+ * 否则值是<code>|</code>分隔的条件，满足任何一个即激活。条件<code>key</code>要求properties中有这个Key且值非空，
+ * <code>key:value</code>要求值相等。有<code>group</code>属性的扩展只在查询这些组时激活。
+ * 激活结果按激活了哪些扩展的位图缓存。
+ *
+ * @see ExtensionLoader#getActivateExtensions(Map, String)
+ * @see ExtensionLoader#getExtensionNames(String, String)
+ * @since 1.0
+ */
+final class AttributeIndex {
+
+    static final int DEFAULT_ORDER = 0;
+
+    // 超过这么多个激活扩展时不缓存激活结果
+    private static final int MAX_CACHED_ACTIVATIONS = Long.SIZE;
+
+    private static final int MAX_ACTIVATION_CACHE_SIZE = 1024;
+
+    // Map<attr-key, Map<attr-value, sorted-names>>
+    private final Map<String, Map<String, List<String>>> key2Value2Names;
+
+    // Map<attr-key, sorted-names>
+    private final Map<String, List<String>> key2Names;
+
+    private final Activation[] activations;
+
+    // Map<mask, sorted-names>
+    private final ConcurrentMap<Long, List<String>> activationCache = new ConcurrentHashMap<>();
+
+    AttributeIndex(Map<String, ExtensionAttributes> attributes) {
+        List<String> names = new ArrayList<>(attributes.keySet());
+        final Map<String, Integer> orders = new HashMap<>();
+        for (String name : names) {
+            orders.put(name, attributes.get(name).getInt(ORDER_ATTRIBUTE, DEFAULT_ORDER));
+        }
+        // 稳定排序，order相同时保持配置中的顺序
+        Collections.sort(names, (a, b) -> Integer.compare(orders.get(a), orders.get(b)));
+
+        Map<String, Map<String, List<String>>> value2Names = new HashMap<>();
+        Map<String, List<String>> keyNames = new HashMap<>();
+        List<Activation> activationList = new ArrayList<>();
+        for (String name : names) {
+            ExtensionAttributes attrs = attributes.get(name);
+            for (Map.Entry<String, String> entry : attrs.entrySet()) {
+                add(keyNames, entry.getKey(), name);
+                Map<String, List<String>> map = value2Names.get(entry.getKey());
+                if (map == null) {
+                    map = new HashMap<>();
+                    value2Names.put(entry.getKey(), map);
+                }
+                // 去掉重复的值，如a|a
+                for (String value : new LinkedHashSet<>(Arrays.asList(splitValues(entry.getValue())))) {
+                    add(map, value, name);
+                }
+            }
+            if (attrs.containsKey(ACTIVATE_ATTRIBUTE)) {
+                activationList.add(new Activation(name, attrs.get(ACTIVATE_ATTRIBUTE), attrs.get(GROUP_ATTRIBUTE)));
+            }
+        }
+        for (Map<String, List<String>> map : value2Names.values()) {
+            freeze(map);
+        }
+        this.key2Value2Names = value2Names;
+        this.key2Names = freeze(keyNames);
+        this.activations = activationList.toArray(new Activation[0]);
+    }
+
+    /**
+     * 属性<code>key</code>的值中有<code>value</code>的扩展名，按order排序；
+     * <code>value</code>为<code>null</code>时返回有这个属性的扩展名。
+     */
+    List<String> getNames(String key, String value) {
+        List<String> names;
+        if (value == null) {
+            names = key2Names.get(key);
+        } else {
+            Map<String, List<String>> value2Names = key2Value2Names.get(key);
+            names = value2Names == null ? null : value2Names.get(value);
+        }
+        return names == null ? Collections.<String>emptyList() : names;
+    }
+
+    /**
+     * properties激活的扩展名，按order排序。
+     *
+     * @param group 为<code>null</code>时不按组过滤
+     */
+    List<String> getActivateNames(Map<String, String> properties, String group) {
+        if (activations.length > MAX_CACHED_ACTIVATIONS) {
+            List<String> names = new ArrayList<>();
+            for (Activation activation : activations) {
+                if (activation.matches(group) && activation.isActive(properties)) {
+                    names.add(activation.name);
+                }
+            }
+            return Collections.unmodifiableList(names);
+        }
+
+        long mask = 0L;
+        for (int i = 0; i < activations.length; i++) {
+            Activation activation = activations[i];
+            if (activation.matches(group) && activation.isActive(properties)) {
+                mask |= 1L << i;
+            }
+        }
+        List<String> names = activationCache.get(mask);
+        if (names == null) {
+            List<String> list = new ArrayList<>(Long.bitCount(mask));
+            for (int i = 0; i < activations.length; i++) {
+                if ((mask & (1L << i)) != 0) {
+                    list.add(activations[i].name);
+                }
+            }
+            names = Collections.unmodifiableList(list);
+            if (activationCache.size() < MAX_ACTIVATION_CACHE_SIZE) {
+                List<String> exist = activationCache.putIfAbsent(mask, names);
+                if (exist != null) {
+                    names = exist;
+                }
+            }
+        }
+        return names;
+    }
+
+    private static String[] splitValues(String value) {
+        if (StringHelper.isBlank(value)) {
+            return new String[]{""};
+        }
+        return ATTRIBUTE_VALUE_SEPARATOR.split(value.trim());
+    }
+
+    private static void add(Map<String, List<String>> map, String key, String name) {
+        List<String> names = map.get(key);
+        if (names == null) {
+            names = new ArrayList<>();
+            map.put(key, names);
+        }
+        names.add(name);
+    }
+
+    private static Map<String, List<String>> freeze(Map<String, List<String>> map) {
+        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        return map;
+    }
+
+    private static final class Activation {
+
+        final String name;
+
+        // null表示所有组
+        final Set<String> groups;
+
+        // 空数组表示总是激活
+        final String[] keys;
+
+        // 与keys对应，null表示只要求有非空的值
+        final String[] values;
+
+        Activation(String name, String activate, String group) {
+            this.name = name;
+            this.groups = StringHelper.isBlank(group) ? null
+                    : new HashSet<>(Arrays.asList(ATTRIBUTE_VALUE_SEPARATOR.split(group.trim())));
+            String[] conditions = StringHelper.isBlank(activate) ? new String[0]
+                    : ATTRIBUTE_VALUE_SEPARATOR.split(activate.trim());
+            this.keys = new String[conditions.length];
+            this.values = new String[conditions.length];
+            for (int i = 0; i < conditions.length; i++) {
+                int idx = conditions[i].indexOf(':');
+                if (idx > 0) {
+                    keys[i] = conditions[i].substring(0, idx).trim();
+                    values[i] = conditions[i].substring(idx + 1).trim();
+                } else {
+                    keys[i] = conditions[i];
+                }
+            }
+        }
+
+        boolean matches(String group) {
+            return group == null || groups == null || groups.contains(group);
+        }
+
+        boolean isActive(Map<String, String> properties) {
+            if (keys.length == 0) {
+                return true;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                String value = properties.get(keys[i]);
+                if (values[i] == null ? !StringHelper.isEmpty(value) : values[i].equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
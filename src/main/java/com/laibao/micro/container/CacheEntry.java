@@ -0,0 +1,107 @@
+package com.laibao.micro.container;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+
+/**
+ * 有界缓存（{@link ContextCache}）中的槽位，带淘汰策略的记账信息。
+ * <p/>
+ * 命中时只写{@link #referenced}，不加锁：多个线程同时写同一个值，丢失的写入只让近似的LRU稍不准确。
+ * 其它字段在缓存的锁内读写。软引用的槽位把实例放在{@link SoftReference}中，被回收后{@link #get()}返回<code>null</code>，
+ * 下次获取时在同一个槽位重新创建。
+ *
+ * @since 1.0
+ */
+final class CacheEntry<T> extends Latch<T> {
+
+    final Object key;
+
+    // 最近被访问过，淘汰时跳过一次
+    boolean referenced;
+
+    long weight = 1;
+
+    // 所在的队列，移出后为null
+    EvictionPolicy.ClockQueue<T> queue;
+
+    // 淘汰时取出的实例，在锁外关闭
+    T evictedValue;
+
+    T evictedCore;
+
+    private final ReferenceQueue<Object> softQueue;
+
+    private volatile SoftValue<T> softValue;
+
+    /**
+     * @param softQueue 软引用的槽位被回收后进入的队列，强引用的槽位为<code>null</code>
+     */
+    CacheEntry(Object key, ReferenceQueue<Object> softQueue) {
+        this.key = key;
+        this.softQueue = softQueue;
+    }
+
+    @Override
+    T get() {
+        if (softQueue == null) {
+            return super.get();
+        }
+        SoftValue<T> v = softValue;
+        return v == null ? null : v.get();
+    }
+
+    /**
+     * 软引用的槽位不保留最里面的实例：它被最外层引用，强引用它会让整条链都不能回收。
+     */
+    @Override
+    void set(T value, T core) {
+        if (softQueue == null) {
+            super.set(value, core);
+        } else {
+            softValue = value == null ? null : new SoftValue<>(value, this, softQueue);
+        }
+    }
+
+    /**
+     * 软引用是不是槽位当前的值，被回收时槽位可能已经放了新的实例。
+     */
+    boolean holds(SoftValue<?> ref) {
+        return softValue == ref;
+    }
+
+    void touch() {
+        if (!referenced) {
+            referenced = true;
+        }
+    }
+
+    /**
+     * 淘汰：取出实例并清空槽位。有线程正在这个槽位上创建实例时不淘汰，返回<code>false</code>。
+     */
+    boolean tryEvict() {
+        if (!tryLock()) {
+            return false;
+        }
+        try {
+            evictedValue = get();
+            evictedCore = getCore();
+            retire();
+        } finally {
+            unlock();
+        }
+        return true;
+    }
+
+    /**
+     * 被回收的实例的软引用，记着所在的槽位，以便从缓存中移除槽位。
+     */
+    static final class SoftValue<T> extends SoftReference<T> {
+
+        final CacheEntry<T> entry;
+
+        SoftValue(T value, CacheEntry<T> entry, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.helper.StringHelper;
+import com.laibao.micro.container.metrics.MetricType;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import static com.laibao.micro.container.constants.CommonConstants.*;
+
+/**
+ * 一个{@link com.laibao.micro.container.annotation.Scope#PROPERTIES}扩展按上下文缓存的实例，
+ * Key是{@link ExtensionContext}，带Wrapper时是{@link ExtensionLoader.ExtensionKey}。
+ * <p/>
+ * 扩展配置了<code>cache.size</code>、<code>cache.weight</code>时缓存有界，超出时按{@link EvictionPolicy}淘汰，
+ * 被淘汰的实例用{@link Lifecycle}关闭；<code>cache.values=soft</code>时实例是软引用，被回收的实例不会关闭。
+ * 命中不加锁，和无界的缓存一样是一次Map查找和一次volatile读；新建槽位、实例创建好后记录权重时加锁。
+ * <p/>
+ * 被淘汰的实例可能正被刚命中的调用方使用，也可能已经注入到其它扩展中。只给不会被长期持有的扩展配置上限。
+ *
+ * @since 1.0
+ */
+final class ContextCache<T> {
+
+    private final Class<?> type;
+
+    private final String name;
+
+    private final Spec spec;
+
+    // 没有数量和权重上限时为null
+    private final EvictionPolicy<T> policy;
+
+    // 强引用时为null
+    private final ReferenceQueue<Object> softQueue;
+
+    // Map<context or (ext-name, wrappers, context), instance>
+    private final ConcurrentMap<Object, Latch<T>> latches = new ConcurrentHashMap<>();
+
+    // 保护淘汰策略的记账
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @param spec 为<code>null</code>时无界
+     */
+    ContextCache(Class<?> type, String name, Spec spec) {
+        this.type = type;
+        this.name = name;
+        this.spec = spec;
+        this.policy = spec == null ? null : EvictionPolicy.<T>of(spec);
+        this.softQueue = spec != null && spec.soft ? new ReferenceQueue<>() : null;
+    }
+
+    /**
+     * 返回实例的槽位，没有时返回<code>null</code>。Key可以是内容相同的{@link Map}。
+     */
+    @SuppressWarnings("unchecked")
+    Latch<T> get(Object key) {
+        Latch<T> latch = latches.get(key);
+        if (latch != null && policy != null) {
+            policy.recordAccess((CacheEntry<T>) latch);
+        }
+        return latch;
+    }
+
+    /**
+     * 返回实例的槽位，没有时创建一个空的槽位，超出上限时淘汰其它槽位。
+     *
+     * @param key 放入缓存的Key，调用方不能再修改
+     */
+    Latch<T> getOrCreate(Object key) {
+        Latch<T> latch = get(key);
+        if (latch != null) {
+            return latch;
+        }
+        if (spec == null) {
+            Latch<T> created = new Latch<>();
+            latch = latches.putIfAbsent(key, created);
+            return latch != null ? latch : created;
+        }
+        if (policy != null) {
+            policy.recordMiss(key.hashCode());
+        }
+        CacheEntry<T> entry = new CacheEntry<>(key, softQueue);
+        latch = latches.putIfAbsent(key, entry);
+        if (latch != null) {
+            return latch;
+        }
+        List<CacheEntry<T>> evicted = Collections.emptyList();
+        lock.lock();
+        try {
+            expungeCollected();
+            if (policy != null) {
+                policy.add(entry);
+                evicted = evict(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        close(evicted);
+        return entry;
+    }
+
+    /**
+     * 槽位中的实例创建好了，有权重上限时记录实例的权重。在槽位的锁外调用。
+     */
+    void created(Latch<T> latch, T instance) {
+        if (policy == null || spec.maxWeight <= 0 || !(latch instanceof CacheEntry)) {
+            return;
+        }
+        CacheEntry<T> entry = (CacheEntry<T>) latch;
+        long weight = instance instanceof Weighted ? Math.max(((Weighted) instance).weight(), 0L) : 1L;
+        List<CacheEntry<T>> evicted;
+        lock.lock();
+        try {
+            policy.reweigh(entry, weight);
+            evicted = evict(entry);
+        } finally {
+            lock.unlock();
+        }
+        close(evicted);
+    }
+
+    /**
+     * 移除Key满足条件的槽位，清空槽位中的实例。
+     *
+     * @param close 是否关闭移除的实例
+     */
+    void removeIf(Predicate<Object> condition, boolean close) {
+        List<Latch<T>> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Iterator<Map.Entry<Object, Latch<T>>> iterator = latches.entrySet().iterator(); iterator.hasNext(); ) {
+                Map.Entry<Object, Latch<T>> entry = iterator.next();
+                if (condition.test(entry.getKey())) {
+                    iterator.remove();
+                    if (policy != null) {
+                        policy.remove((CacheEntry<T>) entry.getValue());
+                    }
+                    removed.add(entry.getValue());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Latch<T> latch : removed) {
+            InstanceCache.retire(type, name, latch, close);
+        }
+    }
+
+    /**
+     * 在锁内调用。
+     */
+    private List<CacheEntry<T>> evict(CacheEntry<T> protect) {
+        List<CacheEntry<T>> evicted = policy.evict(protect);
+        for (CacheEntry<T> entry : evicted) {
+            latches.remove(entry.key, entry);
+        }
+        return evicted;
+    }
+
+    /**
+     * 移除实例已经被回收的软引用槽位，在锁内调用。正在创建实例的槽位不移除。
+     */
+    @SuppressWarnings("unchecked")
+    private void expungeCollected() {
+        if (softQueue == null) {
+            return;
+        }
+        Reference<?> reference;
+        while ((reference = softQueue.poll()) != null) {
+            CacheEntry.SoftValue<T> value = (CacheEntry.SoftValue<T>) reference;
+            CacheEntry<T> entry = value.entry;
+            if (entry.holds(value) && entry.tryLock()) {
+                try {
+                    if (entry.get() == null && !entry.isRetired()) {
+                        entry.retire();
+                        latches.remove(entry.key, entry);
+                        if (policy != null) {
+                            policy.remove(entry);
+                        }
+                    }
+                } finally {
+                    entry.unlock();
+                }
+            }
+        }
+    }
+
+    private void close(List<CacheEntry<T>> evicted) {
+        for (CacheEntry<T> entry : evicted) {
+            T value = entry.evictedValue;
+            T core = entry.evictedCore;
+            entry.evictedValue = null;
+            entry.evictedCore = null;
+            Metrics.count(MetricType.EVICTION, type, name);
+            if (value != null) {
+                Lifecycle.close(type, name, value, core != null ? core : value);
+            }
+        }
+    }
+
+    /**
+     * 扩展属性中的缓存配置。
+     */
+    static final class Spec {
+
+        final long maxSize;
+
+        final long maxWeight;
+
+        final boolean tinyLfu;
+
+        final boolean soft;
+
+        private Spec(long maxSize, long maxWeight, boolean tinyLfu, boolean soft) {
+            this.maxSize = maxSize;
+            this.maxWeight = maxWeight;
+            this.tinyLfu = tinyLfu;
+            this.soft = soft;
+        }
+
+        /**
+         * 解析扩展属性中的缓存配置，没有任何上限、也不是软引用时返回<code>null</code>。
+         *
+         * @param defaultSize 没有<code>cache.size</code>属性时的数量上限，<code>0</code>表示不限制
+         * @throws IllegalStateException 配置不合法
+         */
+        static Spec of(ExtensionAttributes attributes, int defaultSize) {
+            long maxSize = parsePositive(attributes, CACHE_SIZE_ATTRIBUTE, defaultSize);
+            long maxWeight = parsePositive(attributes, CACHE_WEIGHT_ATTRIBUTE, 0);
+            String policy = attributes.get(CACHE_POLICY_ATTRIBUTE);
+            boolean tinyLfu;
+            if (StringHelper.isEmpty(policy) || "lru".equalsIgnoreCase(policy)) {
+                tinyLfu = false;
+            } else if ("tinylfu".equalsIgnoreCase(policy)) {
+                tinyLfu = true;
+            } else {
+                throw new IllegalStateException(CACHE_POLICY_ATTRIBUTE + "(" + policy + ") must be lru or tinylfu!");
+            }
+            String values = attributes.get(CACHE_VALUES_ATTRIBUTE);
+            boolean soft;
+            if (StringHelper.isEmpty(values) || "strong".equalsIgnoreCase(values)) {
+                soft = false;
+            } else if ("soft".equalsIgnoreCase(values)) {
+                soft = true;
+            } else {
+                throw new IllegalStateException(CACHE_VALUES_ATTRIBUTE + "(" + values + ") must be strong or soft!");
+            }
+            return maxSize <= 0 && maxWeight <= 0 && !soft ? null : new Spec(maxSize, maxWeight, tinyLfu, soft);
+        }
+
+        private static long parsePositive(ExtensionAttributes attributes, String key, long defaultValue) {
+            String text = attributes.get(key);
+            if (StringHelper.isEmpty(text)) {
+                return defaultValue;
+            }
+            long value;
+            try {
+                value = Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException(key + "(" + text + ") is not an integer!", e);
+            }
+            if (value <= 0) {
+                throw new IllegalStateException(key + "(" + text + ") must be positive!");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.laibao.micro.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * 监听文件系统目录中的扩展点配置文件，文件创建、修改或删除后通知对应的{@link ExtensionLoader}重新加载。
+ * <p/>
+ * 所有目录共用一个{@link WatchService}和一个后台守护线程。一次变化通常会产生多个事件，
+ * 收到事件后等待{@link #QUIET_PERIOD_MILLIS}毫秒，合并这段时间内的事件，每个扩展点只重新加载一次。
+ * Jar包中的配置文件不能监听。
+ *
+ * @see ExtensionLoader#reload()
+ * @since 1.0
+ */
+final class DescriptorWatcher implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DescriptorWatcher.class);
+
+    static final long QUIET_PERIOD_MILLIS = 100;
+
+    private static volatile DescriptorWatcher instance;
+
+    private final WatchService watchService;
+
+    // Map<dir, Map<file-name, listeners>>
+    private final Map<Path, Map<String, Set<Runnable>>> listeners = new HashMap<>();
+
+    // 有监听者的目录的WatchKey，目录上没有监听者时取消
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+
+    private DescriptorWatcher(WatchService watchService) {
+        this.watchService = watchService;
+    }
+
+    static DescriptorWatcher getInstance() throws IOException {
+        DescriptorWatcher watcher = instance;
+        if (watcher == null) {
+            synchronized (DescriptorWatcher.class) {
+                watcher = instance;
+                if (watcher == null) {
+                    watcher = new DescriptorWatcher(FileSystems.getDefault().newWatchService());
+                    Thread thread = new Thread(watcher, "micro-container-descriptor-watcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                    instance = watcher;
+                }
+            }
+        }
+        return watcher;
+    }
+
+    /**
+     * 目录<code>dir</code>下名为<code>fileName</code>的文件变化时，调用<code>listener</code>。
+     */
+    synchronized void register(Path dir, String fileName, Runnable listener) throws IOException {
+        dir = dir.toAbsolutePath().normalize();
+        WatchKey key = keys.get(dir);
+        // 目录被删除后WatchKey失效，重新注册
+        if (key == null || !key.isValid()) {
+            keys.put(dir, dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE));
+        }
+        Map<String, Set<Runnable>> files = listeners.get(dir);
+        if (files == null) {
+            files = new HashMap<>();
+            listeners.put(dir, files);
+        }
+        Set<Runnable> set = files.get(fileName);
+        if (set == null) {
+            set = new LinkedHashSet<>();
+            files.put(fileName, set);
+        }
+        set.add(listener);
+    }
+
+    /**
+     * 取消<code>listener</code>在所有目录上的监听。目录上没有监听者时取消目录的{@link WatchKey}，不再收到这个目录的事件。
+     */
+    synchronized void unregister(Runnable listener) {
+        for (Iterator<Map.Entry<Path, Map<String, Set<Runnable>>>> dirs = listeners.entrySet().iterator(); dirs.hasNext(); ) {
+            Map.Entry<Path, Map<String, Set<Runnable>>> dir = dirs.next();
+            Map<String, Set<Runnable>> files = dir.getValue();
+            for (Iterator<Set<Runnable>> sets = files.values().iterator(); sets.hasNext(); ) {
+                Set<Runnable> set = sets.next();
+                if (set.remove(listener) && set.isEmpty()) {
+                    sets.remove();
+                }
+            }
+            if (files.isEmpty()) {
+                dirs.remove();
+                WatchKey key = keys.remove(dir.getKey());
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Set<Runnable> changed = new LinkedHashSet<>();
+                collect(watchService.take(), changed);
+                // 合并一段时间内的事件
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                for (Runnable listener : changed) {
+                    try {
+                        listener.run();
+                    } catch (Throwable t) {
+                        logger.error("Exception when reload extension descriptors", t);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (Throwable t) {
+                logger.error("Exception when watch extension descriptors", t);
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Set<Runnable> changed) {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                synchronized (this) {
+                    Map<String, Set<Runnable>> files = listeners.get(dir);
+                    if (files != null) {
+                        for (Set<Runnable> set : files.values()) {
+                            changed.addAll(set);
+                        }
+                    }
+                }
+                continue;
+            }
+            String fileName = event.context().toString();
+            synchronized (this) {
+                Map<String, Set<Runnable>> files = listeners.get(dir);
+                Set<Runnable> set = files == null ? null : files.get(fileName);
+                if (set != null) {
+                    changed.addAll(set);
+                }
+            }
+        }
+        key.reset();
+    }
+}
@@ -0,0 +1,258 @@
+package com.laibao.micro.container;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ContextCache}的淘汰策略，除{@link #recordAccess(CacheEntry)}和{@link #recordMiss(int)}外都在缓存的锁内调用。
+ * <ul>
+ * <li><code>lru</code>：CLOCK（second chance）近似LRU，命中只设置一个标记，不移动队列、不加锁。
+ * <li><code>tinylfu</code>：W-TinyLFU，新实例先进入占1%的窗口；窗口满时，窗口中最老的实例和主区要淘汰的实例比较
+ * {@link FrequencySketch}估计的访问频率，频率低的被淘汰。一次性的properties不会挤掉经常使用的实例。
+ * </ul>
+ * 有线程正在创建实例的槽位，以及刚创建、受保护的槽位不会被淘汰。
+ *
+ * @since 1.0
+ */
+abstract class EvictionPolicy<T> {
+
+    private final long maxSize;
+
+    private final long maxWeight;
+
+    EvictionPolicy(long maxSize, long maxWeight) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+    }
+
+    static <T> EvictionPolicy<T> of(ContextCache.Spec spec) {
+        if (spec.maxSize <= 0 && spec.maxWeight <= 0) {
+            return null;
+        }
+        return spec.tinyLfu ? new TinyLfu<T>(spec.maxSize, spec.maxWeight) : new Lru<T>(spec.maxSize, spec.maxWeight);
+    }
+
+    /**
+     * 命中，不加锁。
+     */
+    void recordAccess(CacheEntry<T> entry) {
+        entry.touch();
+    }
+
+    /**
+     * 未命中，不加锁。
+     */
+    void recordMiss(int hash) {
+    }
+
+    abstract void add(CacheEntry<T> entry);
+
+    void remove(CacheEntry<T> entry) {
+        if (entry.queue != null) {
+            entry.queue.unlink(entry);
+        }
+    }
+
+    void reweigh(CacheEntry<T> entry, long weight) {
+        if (entry.queue != null) {
+            entry.queue.reweigh(entry, weight);
+        } else {
+            entry.weight = weight;
+        }
+    }
+
+    /**
+     * 淘汰到不超出上限为止。淘汰的槽位已经清空，实例在{@link CacheEntry#evictedValue}中，由调用方在锁外关闭。
+     *
+     * @param protect 不淘汰的槽位，刚创建的实例还没有返回给调用方
+     */
+    abstract List<CacheEntry<T>> evict(CacheEntry<T> protect);
+
+    final boolean isOver(long size, long weight) {
+        return (maxSize > 0 && size > maxSize) || (maxWeight > 0 && weight > maxWeight);
+    }
+
+    static <T> List<CacheEntry<T>> add(List<CacheEntry<T>> victims, CacheEntry<T> victim) {
+        if (victims.isEmpty()) {
+            victims = new ArrayList<>();
+        }
+        victims.add(victim);
+        return victims;
+    }
+
+    /**
+     * CLOCK队列。移除的槽位只做标记，转到队首时才从队列中丢掉。
+     */
+    static final class ClockQueue<T> {
+
+        private final ArrayDeque<CacheEntry<T>> deque = new ArrayDeque<>();
+
+        int size;
+
+        long weight;
+
+        void add(CacheEntry<T> entry) {
+            entry.queue = this;
+            deque.addLast(entry);
+            size++;
+            weight += entry.weight;
+        }
+
+        void unlink(CacheEntry<T> entry) {
+            entry.queue = null;
+            size--;
+            weight -= entry.weight;
+        }
+
+        void reweigh(CacheEntry<T> entry, long newWeight) {
+            weight += newWeight - entry.weight;
+            entry.weight = newWeight;
+        }
+
+        /**
+         * 返回可以淘汰的槽位，仍在队首：最近访问过的槽位清除标记后放到队尾，正在创建实例的槽位跳过。
+         * 转了两圈都没有时返回<code>null</code>。
+         */
+        CacheEntry<T> victim(CacheEntry<T> protect) {
+            for (int budget = 2 * deque.size(); budget >= 0; budget--) {
+                CacheEntry<T> entry = deque.peekFirst();
+                if (entry == null) {
+                    return null;
+                }
+                if (entry.queue != this) {
+                    deque.pollFirst();
+                } else if (entry == protect || entry.referenced || entry.isLocked()) {
+                    entry.referenced = false;
+                    deque.addLast(deque.pollFirst());
+                } else {
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 移出{@link #victim(CacheEntry)}返回的槽位。
+         */
+        void removeFirst(CacheEntry<T> entry) {
+            deque.pollFirst();
+            unlink(entry);
+        }
+    }
+
+    private static final class Lru<T> extends EvictionPolicy<T> {
+
+        private final ClockQueue<T> queue = new ClockQueue<>();
+
+        Lru(long maxSize, long maxWeight) {
+            super(maxSize, maxWeight);
+        }
+
+        @Override
+        void add(CacheEntry<T> entry) {
+            queue.add(entry);
+        }
+
+        @Override
+        List<CacheEntry<T>> evict(CacheEntry<T> protect) {
+            List<CacheEntry<T>> victims = Collections.emptyList();
+            for (int attempts = queue.size + 16; attempts > 0 && isOver(queue.size, queue.weight); attempts--) {
+                CacheEntry<T> victim = queue.victim(protect);
+                if (victim == null) {
+                    break;
+                }
+                queue.removeFirst(victim);
+                if (victim.tryEvict()) {
+                    victims = add(victims, victim);
+                } else {
+                    queue.add(victim);
+                }
+            }
+            return victims;
+        }
+    }
+
+    static final class TinyLfu<T> extends EvictionPolicy<T> {
+
+        final ClockQueue<T> window = new ClockQueue<>();
+
+        final ClockQueue<T> main = new ClockQueue<>();
+
+        private final int windowSize;
+
+        private final FrequencySketch sketch;
+
+        TinyLfu(long maxSize, long maxWeight) {
+            super(maxSize, maxWeight);
+            int capacity = maxSize > 0 ? (int) Math.min(maxSize, 1 << 24) : 1024;
+            this.windowSize = Math.max(1, capacity / 100);
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        @Override
+        void recordAccess(CacheEntry<T> entry) {
+            entry.touch();
+            sketch.increment(entry.key.hashCode());
+        }
+
+        @Override
+        void recordMiss(int hash) {
+            sketch.increment(hash);
+        }
+
+        @Override
+        void add(CacheEntry<T> entry) {
+            window.add(entry);
+        }
+
+        @Override
+        List<CacheEntry<T>> evict(CacheEntry<T> protect) {
+            List<CacheEntry<T>> victims = Collections.emptyList();
+            for (int attempts = window.size + main.size + 16; attempts > 0; attempts--) {
+                boolean over = isOver(window.size + main.size, window.weight + main.weight);
+                if (!over && window.size <= windowSize) {
+                    break;
+                }
+                CacheEntry<T> candidate = window.size > windowSize ? window.victim(protect) : null;
+                if (!over) {
+                    if (candidate == null) {
+                        break;
+                    }
+                    // 主区还有空间，候选直接进入主区
+                    window.removeFirst(candidate);
+                    main.add(candidate);
+                    continue;
+                }
+                CacheEntry<T> victim = main.victim(protect);
+                CacheEntry<T> loser;
+                if (candidate != null && victim != null) {
+                    loser = sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())
+                            ? victim : candidate;
+                } else if (victim != null) {
+                    loser = victim;
+                } else if (candidate != null) {
+                    loser = candidate;
+                } else {
+                    loser = window.victim(protect);
+                    if (loser == null) {
+                        break;
+                    }
+                }
+                ClockQueue<T> queue = loser.queue;
+                queue.removeFirst(loser);
+                if (!loser.tryEvict()) {
+                    queue.add(loser);
+                    continue;
+                }
+                victims = add(victims, loser);
+                if (loser == victim && candidate != null) {
+                    window.removeFirst(candidate);
+                    main.add(candidate);
+                }
+            }
+            return victims;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.utils.StringInterner;
+
+import java.util.*;
+
+/**
+ * 扩展的属性，不可修改。
+ * <p/>
+ * 属性按配置中的顺序存放在两个平行的数组中，Key和值都经过{@link String#intern()}（解析配置时通过{@link StringInterner}），
+ * 多个扩展点、多个扩展之间相同的属性名和属性值只保留一份；没有属性的扩展共用{@link #EMPTY}。
+ * 属性较多时另建一个Key到下标的索引。{@link #getInt(String, int)}、{@link #getBoolean(String)}解析的结果会缓存，
+ * 每个属性只解析一次。
+ *
+ * @see com.laibao.micro.container.helper.ExtensionHelper#parseExtAttribute(String)
+ * @see ExtensionLoader#getExtensionAttributes(String)
+ * @since 1.0
+ */
+public final class ExtensionAttributes extends AbstractMap<String, String> {
+
+    public static final ExtensionAttributes EMPTY = new ExtensionAttributes(new String[0], new String[0], 0);
+
+    // 超过这么多个属性时建索引，否则顺序查找
+    private static final int INDEX_THRESHOLD = 8;
+
+    private final String[] keys;
+
+    private final String[] values;
+
+    // Map<key, index>，属性少时为null
+    private final Map<String, Integer> index;
+
+    // 解析过的值，Integer或Boolean
+    private final Object[] parsed;
+
+    private transient Set<Entry<String, String>> entrySet;
+
+    private ExtensionAttributes(String[] keys, String[] values, int size) {
+        this.keys = size == keys.length ? keys : Arrays.copyOf(keys, size);
+        this.values = size == values.length ? values : Arrays.copyOf(values, size);
+        this.parsed = new Object[size];
+        if (size > INDEX_THRESHOLD) {
+            Map<String, Integer> map = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                map.put(this.keys[i], i);
+            }
+            this.index = map;
+        } else {
+            this.index = null;
+        }
+    }
+
+    /**
+     * 解析配置中的属性字符串。
+     * <p/>
+     * <code>
+     * "attrib1=value1,attrib2=value2,isProvider,order=3" =>
+     * {"attrib1"="value1", "attrib2"="value2", "isProvider"="", "order"="3"}
+     * </code>
+     * <p/>
+     * 重复的属性后面的覆盖前面的。
+     *
+     * @param attribute 属性字符串，为<code>null</code>或是空字符串时返回{@link #EMPTY}
+     */
+    public static ExtensionAttributes parse(String attribute) {
+        if (attribute == null || attribute.length() == 0) {
+            return EMPTY;
+        }
+        // 一遍扫描，按逗号的位置切分，不创建中间的字符串数组
+        int count = 1;
+        for (int i = 0; i < attribute.length(); i++) {
+            if (attribute.charAt(i) == ',') {
+                count++;
+            }
+        }
+        String[] keys = new String[count];
+        String[] values = new String[count];
+        int size = 0;
+        int length = attribute.length();
+        int start = 0;
+        while (start < length) {
+            int end = attribute.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            int s = trimStart(attribute, start, end);
+            int e = trimEnd(attribute, s, end);
+            start = end + 1;
+            if (s == e) {
+                continue;
+            }
+            String key;
+            String value;
+            int idx = attribute.indexOf('=', s);
+            if (idx > s && idx < e) {
+                key = StringInterner.intern(attribute, s, trimEnd(attribute, s, idx));
+                value = StringInterner.intern(attribute, trimStart(attribute, idx + 1, e), e);
+            } else {
+                key = StringInterner.intern(attribute, s, e);
+                value = "";
+            }
+            size = put(keys, values, size, key, value);
+        }
+        return size == 0 ? EMPTY : new ExtensionAttributes(keys, values, size);
+    }
+
+    /**
+     * 复制一个Map中的属性。
+     */
+    public static ExtensionAttributes of(Map<String, String> attributes) {
+        if (attributes instanceof ExtensionAttributes) {
+            return (ExtensionAttributes) attributes;
+        }
+        if (attributes == null || attributes.isEmpty()) {
+            return EMPTY;
+        }
+        String[] keys = new String[attributes.size()];
+        String[] values = new String[attributes.size()];
+        int size = 0;
+        for (Entry<String, String> entry : attributes.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                throw new IllegalArgumentException("null attribute key or value: " + entry);
+            }
+            size = put(keys, values, size, entry.getKey().intern(), entry.getValue().intern());
+        }
+        return new ExtensionAttributes(keys, values, size);
+    }
+
+    private static int trimStart(String s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String s, int start, int end) {
+        while (end > start && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    // key和value已经intern
+    private static int put(String[] keys, String[] values, int size, String key, String value) {
+        for (int i = 0; i < size; i++) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return size;
+            }
+        }
+        keys[size] = key;
+        values[size] = value;
+        return size + 1;
+    }
+
+    private int indexOf(Object key) {
+        if (index != null) {
+            Integer i = index.get(key);
+            return i == null ? -1 : i;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        if (key != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * 返回整数属性，解析结果会缓存。
+     *
+     * @param key          属性名
+     * @param defaultValue 没有这个属性，或是属性值为空时返回的缺省值
+     * @throws NumberFormatException 属性值不是整数
+     */
+    public int getInt(String key, int defaultValue) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return defaultValue;
+        }
+        Object value = parsed[i];
+        if (value instanceof Integer) {
+            return (Integer) value;
+        }
+        String text = values[i];
+        if (text.length() == 0) {
+            return defaultValue;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("attribute " + key + "(" + text + ") is not an integer!");
+        }
+        parsed[i] = result;
+        return result;
+    }
+
+    /**
+     * 返回布尔属性，解析结果会缓存。没有值的属性（如<code>isProvider</code>）是<code>true</code>，
+     * 没有这个属性时是<code>false</code>。
+     */
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    /**
+     * 返回布尔属性，解析结果会缓存。没有值的属性（如<code>isProvider</code>）是<code>true</code>。
+     *
+     * @param key          属性名
+     * @param defaultValue 没有这个属性时返回的缺省值
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return defaultValue;
+        }
+        Object value = parsed[i];
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        String text = values[i];
+        boolean result = text.length() == 0 || Boolean.parseBoolean(text);
+        parsed[i] = result;
+        return result;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        Set<Entry<String, String>> set = entrySet;
+        if (set == null) {
+            set = new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int i;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < keys.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (i >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(keys[i], values[i]);
+                            i++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+            entrySet = set;
+        }
+        return set;
+    }
+}
@@ -0,0 +1,78 @@
+package com.laibao.micro.container;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * 一次获取的一组扩展，如过滤器链、处理器链：按传入的扩展名顺序排列，不可修改。
+ * <p/>
+ * 同一个扩展名出现多次时，各位置上是同一个实例。全部是缓存作用域的扩展、且没有配置缓存上限时，
+ * {@link ExtensionLoader}按(扩展名列表, Wrapper列表, 上下文)缓存整条链，扩展点重新加载后重新获取。
+ *
+ * @see ExtensionLoader#getExtensions(List, ExtensionContext, List, java.util.concurrent.Executor)
+ * @since 1.0
+ */
+public final class ExtensionChain<T> extends AbstractList<T> implements RandomAccess {
+
+    // 获取这条链时的注册表版本
+    private final ExtensionRegistry<T> registry;
+
+    private final String[] names;
+
+    private final Object[] extensions;
+
+    ExtensionChain(ExtensionRegistry<T> registry, String[] names, Object[] extensions) {
+        this.registry = registry;
+        this.names = names;
+        this.extensions = extensions;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) extensions[index];
+    }
+
+    @Override
+    public int size() {
+        return extensions.length;
+    }
+
+    /**
+     * 第<code>index</code>个扩展的扩展名。
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * 扩展名列表，和扩展一一对应，不可修改。
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * 扩展名第一次出现的位置，没有时返回<code>-1</code>。
+     */
+    public int indexOfName(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    ExtensionRegistry<T> getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + getNames();
+    }
+}
@@ -0,0 +1,217 @@
+package com.laibao.micro.container;
+
+import java.util.*;
+
+/**
+ * 获取扩展时的properties，不可修改。
+ * <p/>
+ * 属性按Key排序存放在两个平行的数组中，哈希值在创建时算好。可以直接作为缓存的Key：
+ * {@link com.laibao.micro.container.annotation.Scope#PROPERTIES}扩展的实例按它缓存，
+ * 查找时不再复制properties、不再计算哈希值。用同一个上下文反复获取扩展（包括注入依赖时的递归获取）不分配内存。
+ * 没有属性时共用{@link #EMPTY}。
+ * <p/>
+ * 接受<code>Map&lt;String, String&gt;</code>的方法也可以传入上下文，不会复制。
+ *
+ * @see ExtensionLoader#getExtension(String, ExtensionContext)
+ * @since 1.0
+ */
+public final class ExtensionContext extends AbstractMap<String, String> {
+
+    public static final ExtensionContext EMPTY = new ExtensionContext(new String[0], new String[0]);
+
+    // 超过这么多个属性时二分查找，否则顺序查找
+    private static final int SEARCH_THRESHOLD = 8;
+
+    private final String[] keys;
+
+    private final String[] values;
+
+    private final int hash;
+
+    private transient Set<Entry<String, String>> entrySet;
+
+    private ExtensionContext(String[] keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+        int h = 0;
+        for (int i = 0; i < keys.length; i++) {
+            // 和Map.hashCode()的约定一致
+            h += keys[i].hashCode() ^ Objects.hashCode(values[i]);
+        }
+        this.hash = h;
+    }
+
+    /**
+     * 复制一个Map中的属性，传入的就是上下文时直接返回。
+     *
+     * @param properties 为<code>null</code>或是空的Map时返回{@link #EMPTY}
+     * @throws IllegalArgumentException 有<code>null</code>的Key
+     */
+    public static ExtensionContext of(Map<String, String> properties) {
+        if (properties instanceof ExtensionContext) {
+            return (ExtensionContext) properties;
+        }
+        if (properties == null || properties.isEmpty()) {
+            return EMPTY;
+        }
+        String[] keys = new String[properties.size()];
+        String[] values = new String[keys.length];
+        int size = 0;
+        for (Entry<String, String> entry : properties.entrySet()) {
+            if (entry.getKey() == null) {
+                throw new IllegalArgumentException("null property key: " + entry);
+            }
+            keys[size] = entry.getKey();
+            values[size] = entry.getValue();
+            size++;
+        }
+        sort(keys, values, size);
+        return new ExtensionContext(keys, values);
+    }
+
+    public static ExtensionContext of(String key, String value) {
+        return EMPTY.with(key, value);
+    }
+
+    public static ExtensionContext of(String key1, String value1, String key2, String value2) {
+        return EMPTY.with(key1, value1).with(key2, value2);
+    }
+
+    /**
+     * 返回加上（或替换）一个属性后的上下文，这个上下文不变。
+     */
+    public ExtensionContext with(String key, String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("property key == null");
+        }
+        int i = indexOf(key);
+        if (i >= 0) {
+            if (Objects.equals(values[i], value)) {
+                return this;
+            }
+            String[] v = values.clone();
+            v[i] = value;
+            return new ExtensionContext(keys, v);
+        }
+        String[] k = Arrays.copyOf(keys, keys.length + 1);
+        String[] v = Arrays.copyOf(values, values.length + 1);
+        k[keys.length] = key;
+        v[values.length] = value;
+        sort(k, v, k.length);
+        return new ExtensionContext(k, v);
+    }
+
+    // 插入排序，属性通常很少
+    private static void sort(String[] keys, String[] values, int size) {
+        for (int i = 1; i < size; i++) {
+            String key = keys[i];
+            String value = values[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j].compareTo(key) > 0) {
+                keys[j + 1] = keys[j];
+                values[j + 1] = values[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            values[j + 1] = value;
+        }
+    }
+
+    private int indexOf(Object key) {
+        if (keys.length > SEARCH_THRESHOLD) {
+            if (!(key instanceof String)) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(keys, key);
+            return i < 0 ? -1 : i;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        if (key != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof ExtensionContext) {
+            ExtensionContext that = (ExtensionContext) o;
+            return hash == that.hash && Arrays.equals(keys, that.keys) && Arrays.equals(values, that.values);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        Set<Entry<String, String>> set = entrySet;
+        if (set == null) {
+            set = new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return new Iterator<Entry<String, String>>() {
+                        private int i;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < keys.length;
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            if (i >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<String, String> entry = new SimpleImmutableEntry<>(keys[i], values[i]);
+                            i++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+            entrySet = set;
+        }
+        return set;
+    }
+}
@@ -0,0 +1,250 @@
+package com.laibao.micro.container;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 注册表中的一个扩展实现（或Wrapper）：实现类名、实现类，以及预先解析好的实例工厂。
+ * <p/>
+ * 实现类和工厂在{@link #resolve()}时加载、校验并创建一次：缺省在加载扩展点配置时解析；
+ * 懒加载模式下第一次用到这个扩展时才解析，每个定义各自加锁。实现类对容器的ClassLoader可见时，
+ * 通过{@link LambdaMetafactory}生成直接调用构造函数的{@link Supplier}/{@link Function}；
+ * 否则退化为调用构造函数的{@link MethodHandle}。
+ *
+ * @since 1.0
+ */
+final class ExtensionDefinition<T> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final String name;
+
+    private final String className;
+
+    private final Class<T> type;
+
+    private final ClassLoader classLoader;
+
+    private final boolean wrapper;
+
+    // 在extensionClass之前写入，由extensionClass的volatile写发布
+    private Supplier<T> factory;
+
+    private Function<T, T> wrapperFactory;
+
+    private volatile Class<? extends T> extensionClass;
+
+    private IllegalStateException failure;
+
+    // 类加载可能做I/O，不用synchronized，虚拟线程等待时不占住载体线程
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private ExtensionDefinition(String name, String className, Class<T> type, ClassLoader classLoader, boolean wrapper) {
+        this.name = name;
+        this.className = className;
+        this.type = type;
+        this.classLoader = classLoader;
+        this.wrapper = wrapper;
+    }
+
+    /**
+     * 扩展实现的定义，实现类要有public的缺省构造函数。
+     */
+    static <T> ExtensionDefinition<T> ofExtension(String name, String className, Class<T> type, ClassLoader classLoader) {
+        return new ExtensionDefinition<>(name, className, type, classLoader, false);
+    }
+
+    /**
+     * Wrapper的定义，Wrapper类要有以扩展点接口为参数的public构造函数。
+     */
+    static <T> ExtensionDefinition<T> ofWrapper(String name, String className, Class<T> type, ClassLoader classLoader) {
+        return new ExtensionDefinition<>(name, className, type, classLoader, true);
+    }
+
+    /**
+     * 加载、初始化并校验实现类，创建实例工厂。只做一次，失败的结果也会保留。
+     *
+     * @return this
+     * @throws IllegalStateException 类加载失败、不是扩展点的子类，或是没有需要的构造函数
+     */
+    ExtensionDefinition<T> resolve() {
+        if (!tryResolve()) {
+            throw new IllegalStateException(failure.getMessage(), failure);
+        }
+        return this;
+    }
+
+    /**
+     * 和{@link #resolve()}一样加载实现类，失败时不抛出异常。
+     *
+     * @return 是否加载成功，失败的原因见{@link #getFailure()}
+     */
+    boolean tryResolve() {
+        if (extensionClass == null) {
+            lock.lock();
+            try {
+                if (extensionClass == null) {
+                    if (failure == null) {
+                        try {
+                            Class<? extends T> clazz = Class.forName(className, true, classLoader).asSubclass(type);
+                            if (wrapper) {
+                                wrapperFactory = newWrapperFactory(clazz, type);
+                            } else {
+                                factory = newFactory(clazz);
+                            }
+                            extensionClass = clazz;
+                            return true;
+                        } catch (IllegalStateException e) {
+                            failure = e;
+                        } catch (ClassCastException e) {
+                            failure = new IllegalStateException("Error when load extension class(interface: " +
+                                    type.getName() + ", class line: " + className + "), class "
+                                    + className + " is not subtype of interface.", e);
+                        } catch (Throwable t) {
+                            failure = new IllegalStateException("Fail to load extension class " + className +
+                                    " of extension point " + type.getName() + ", cause: " + t, t);
+                        }
+                    }
+                    return false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 加载实现类失败的原因，没有失败时返回<code>null</code>。
+     */
+    IllegalStateException getFailure() {
+        return failure;
+    }
+
+    boolean isResolved() {
+        return extensionClass != null;
+    }
+
+    private static <T> Supplier<T> newFactory(Class<? extends T> clazz) {
+        MethodHandle constructor;
+        try {
+            constructor = LOOKUP.unreflectConstructor(clazz.getConstructor());
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("extension class(" + clazz +
+                    ") has NO default constructor!", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("default constructor of extension class(" + clazz +
+                    ") is not accessible!", e);
+        }
+        return newSupplier(clazz, constructor);
+    }
+
+    private static <T> Function<T, T> newWrapperFactory(Class<? extends T> clazz, Class<T> type) {
+        MethodHandle constructor;
+        try {
+            constructor = LOOKUP.unreflectConstructor(clazz.getConstructor(type));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("wrapper class(" + clazz +
+                    ") has NO copy constructor!", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("copy constructor of wrapper class(" + clazz +
+                    ") is not accessible!", e);
+        }
+        return newWrapperFunction(clazz, type, constructor);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    Class<? extends T> getExtensionClass() {
+        return resolve().extensionClass;
+    }
+
+    T newInstance() {
+        if (extensionClass == null) {
+            resolve();
+        }
+        return factory.get();
+    }
+
+    T wrap(T instance) {
+        if (extensionClass == null) {
+            resolve();
+        }
+        return wrapperFactory.apply(instance);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> newSupplier(Class<?> clazz, MethodHandle constructor) {
+        if (isVisible(clazz)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+                        MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class),
+                        constructor,
+                        MethodType.methodType(clazz));
+                return (Supplier<T>) site.getTarget().invokeExact();
+            } catch (Throwable t) {
+                // fall through to MethodHandle
+            }
+        }
+        final MethodHandle handle = constructor.asType(MethodType.methodType(Object.class));
+        return () -> {
+            try {
+                return (T) handle.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t.toString(), t);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Function<T, T> newWrapperFunction(Class<?> clazz, Class<T> type, MethodHandle constructor) {
+        if (isVisible(clazz) && isVisible(type)) {
+            try {
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                        MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class),
+                        constructor,
+                        MethodType.methodType(clazz, type));
+                return (Function<T, T>) site.getTarget().invokeExact();
+            } catch (Throwable t) {
+                // fall through to MethodHandle
+            }
+        }
+        final MethodHandle handle = constructor.asType(MethodType.methodType(Object.class, Object.class));
+        return instance -> {
+            try {
+                return (T) handle.invokeExact((Object) instance);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t.toString(), t);
+            }
+        };
+    }
+
+    /**
+     * 生成的Lambda类定义在容器的ClassLoader里，只有能从这里按名字找到同一个类时才能直接链接。
+     */
+    private static boolean isVisible(Class<?> clazz) {
+        try {
+            return Class.forName(clazz.getName(), false, ExtensionDefinition.class.getClassLoader()) == clazz;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+}
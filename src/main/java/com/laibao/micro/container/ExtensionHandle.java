@@ -0,0 +1,92 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.metrics.MetricType;
+
+/**
+ * 预先解析好的扩展，用于按消息分发等热点路径：用{@link ExtensionLoader#handleFor(String)}解析一次，
+ * 之后每次{@link #get()}不再按扩展名查找。
+ * <p/>
+ * 缓存作用域的扩展，句柄直接持有实例缓存的槽位，{@link #get()}只有两次volatile读：当前注册表版本和槽位中的实例；
+ * {@link com.laibao.micro.container.annotation.Scope#PROTOTYPE}等每次创建新实例的扩展，直接调用实例工厂。
+ * 扩展点重新加载后，第一次{@link #get()}时重新解析句柄，句柄可以长期持有。
+ * <p/>
+ * 每个扩展有一个{@link #ordinal()}：扩展名排序后的序号，从0开始连续编号，调用方可以用数组代替以扩展名为Key的Map。
+ *
+ * @since 1.0
+ */
+public final class ExtensionHandle<T> {
+
+    private final ExtensionLoader<T> loader;
+
+    private final String name;
+
+    private volatile Binding<T> binding;
+
+    ExtensionHandle(ExtensionLoader<T> loader, String name, Binding<T> binding) {
+        this.loader = loader;
+        this.name = name;
+        this.binding = binding;
+    }
+
+    /**
+     * 返回扩展实例，和{@link ExtensionLoader#getExtension(String)}相同。
+     *
+     * @throws IllegalStateException 重新加载后没有这个扩展了，或是创建扩展失败
+     */
+    public T get() {
+        Binding<T> b = binding;
+        if (b.registry == loader.getCurrentRegistry()) {
+            if (b.latch == null) {
+                return loader.newExtension(name);
+            }
+            T instance = b.latch.get();
+            if (instance != null) {
+                Metrics.count(MetricType.CACHE_HIT, loader.getType(), name);
+                return instance;
+            }
+        }
+        // 第一次获取、或是重新加载后实例缓存被清除了
+        binding = loader.bind(name);
+        return loader.getExtension(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 扩展在当前注册表版本中的序号；重新加载后扩展名没有增减时不变。
+     */
+    public int ordinal() {
+        Binding<T> b = binding;
+        if (b.registry != loader.getCurrentRegistry()) {
+            b = loader.bind(name);
+            binding = b;
+        }
+        return b.ordinal;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + loader.getType().getName() + "(" + name + ")]";
+    }
+
+    /**
+     * 句柄在一个注册表版本上的解析结果。
+     */
+    static final class Binding<T> {
+
+        final ExtensionRegistry<T> registry;
+
+        final int ordinal;
+
+        // 缓存实例的槽位，每次创建新实例的扩展为null
+        final Latch<T> latch;
+
+        Binding(ExtensionRegistry<T> registry, int ordinal, Latch<T> latch) {
+            this.registry = registry;
+            this.ordinal = ordinal;
+            this.latch = latch;
+        }
+    }
+}
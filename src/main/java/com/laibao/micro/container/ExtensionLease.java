@@ -0,0 +1,65 @@
+package com.laibao.micro.container;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 从{@link com.laibao.micro.container.annotation.Scope#POOLED}扩展的池中借出的实例，
+ * {@link #close()}时归还，可以用在try-with-resources中：
+ * <pre>
+ * try (ExtensionLease&lt;Codec&gt; lease = loader.borrowExtension("snappy")) {
+ *     lease.get().encode(buf);
+ * }
+ * </pre>
+ * 归还后不能再使用借出的实例。实例状态已经损坏、不应该再借给别人时，调用{@link #discard()}代替归还。
+ *
+ * @see ExtensionLoader#borrowExtension(String, java.util.List)
+ * @since 1.0
+ */
+public final class ExtensionLease<T> implements AutoCloseable {
+
+    private final T instance;
+
+    private final ExtensionPool<T> pool;
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    ExtensionLease(T instance, ExtensionPool<T> pool) {
+        this.instance = instance;
+        this.pool = pool;
+    }
+
+    /**
+     * 借出的实例。
+     *
+     * @throws IllegalStateException 已经归还或丢弃
+     */
+    public T get() {
+        if (released.get()) {
+            throw new IllegalStateException("Extension lease already released");
+        }
+        return instance;
+    }
+
+    /**
+     * 把实例归还到池中，池已满时丢弃；丢弃的实例实现了{@link AutoCloseable}时关闭。重复调用没有效果。
+     */
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            pool.release(instance);
+        }
+    }
+
+    /**
+     * 丢弃实例，不归还到池中；实例实现了{@link AutoCloseable}时关闭。重复调用、或是归还后调用没有效果。
+     */
+    public void discard() {
+        if (released.compareAndSet(false, true)) {
+            pool.discard(instance);
+        }
+    }
+
+    public boolean isReleased() {
+        return released.get();
+    }
+}
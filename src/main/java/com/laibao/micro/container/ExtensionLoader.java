@@ -1,19 +1,26 @@
 package com.laibao.micro.container;
 
 import com.laibao.micro.container.annotation.SPI;
-import com.laibao.micro.container.utils.Holder;
+import com.laibao.micro.container.annotation.Scope;
+import com.laibao.micro.container.index.DescriptorEntry;
+import com.laibao.micro.container.index.DescriptorParser;
+import com.laibao.micro.container.index.ExtensionIndex;
+import com.laibao.micro.container.metrics.MetricType;
 import com.laibao.micro.container.helper.StringHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 
 import static com.laibao.micro.container.constants.CommonConstants.*;
 import static com.laibao.micro.container.helper.ExtensionHelper.*;
@@ -22,8 +29,8 @@ import static com.laibao.micro.container.helper.ExtensionHelper.*;
  * 加载和管理扩展。
  * <p/>
  * <ul>
- * <li>管理的扩展实例是<b>单例</b>。
- * <li>Wrapper实例每次获得扩展实例重新创建，并Wrap到扩展实例上。
+ * <li>管理的扩展实例缺省是<b>单例</b>，作用域见{@link Scope}。
+ * <li>Wrapper实例Wrap到扩展实例上，按扩展名和Wrapper列表与扩展实例一起缓存。
  * </ul>
  *
  * @see com.laibao.micro.container.annotation.SPI
@@ -34,465 +41,1716 @@ public class ExtensionLoader<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(ExtensionLoader.class);
 
-    private static final ConcurrentMap<Class<?>, ExtensionLoader<?>> EXTENSION_LOADERS = new ConcurrentHashMap();
+    private static final boolean INDEX_ENABLED = !"false".equalsIgnoreCase(System.getProperty(EXTENSION_INDEX_ENABLED_KEY));
+
+    private static final boolean LAZY = Boolean.getBoolean(EXTENSION_LAZY_KEY);
+
+    private static final boolean RELOAD = Boolean.getBoolean(EXTENSION_RELOAD_KEY);
+
+    private static final String SNAPSHOT_DIR = System.getProperty(EXTENSION_SNAPSHOT_KEY);
+
+    private static final boolean STACK_TRACE = !"false".equalsIgnoreCase(System.getProperty(EXTENSION_STACK_TRACE_KEY));
+
+    private static final int CACHE_SIZE = Integer.getInteger(EXTENSION_CACHE_SIZE_KEY, 0);
 
     /**
-     * {@link ExtensionLoader}的工厂方法。
+     * {@link ExtensionLoader}的工厂方法，从当前线程的Context ClassLoader加载扩展。
      *
      * @param type 扩展点接口类型
      * @param <T>  扩展点类型
      * @return {@link ExtensionLoader}实例
      * @throws IllegalArgumentException 参数为<code>null</code>；
      *                                  或是扩展点接口上没有{@link com.laibao.micro.container.annotation.SPI}注解。
+     * @see #getExtensionLoader(Class, ClassLoader)
      * @since 1.0
      */
     public static <T> ExtensionLoader<T> getExtensionLoader(Class<T> type) {
+        return getExtensionLoader(type, getClassLoader());
+    }
+
+    /**
+     * {@link ExtensionLoader}的工厂方法。
+     * <p/>
+     * 每个(ClassLoader, 扩展点)有各自的ExtensionLoader，从这个ClassLoader查找配置、加载实现类，
+     * 注入的依赖也从同一个ClassLoader获取。不同ClassLoader（如不同租户）之间的扩展和实例互不可见。
+     *
+     * @param type        扩展点接口类型
+     * @param classLoader 加载扩展的ClassLoader，为<code>null</code>时使用System ClassLoader
+     * @param <T>         扩展点类型
+     * @return {@link ExtensionLoader}实例
+     * @throws IllegalArgumentException 扩展点接口为<code>null</code>；
+     *                                  或是扩展点接口上没有{@link com.laibao.micro.container.annotation.SPI}注解。
+     * @see #dispose(ClassLoader)
+     * @since 1.0
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ExtensionLoader<T> getExtensionLoader(Class<T> type, ClassLoader classLoader) {
+        Metrics.initialize();
         checkExtensionType(type);
-        ExtensionLoader<T> loader = (ExtensionLoader<T>) EXTENSION_LOADERS.get(type);
+        final ClassLoader cl = classLoader != null ? classLoader : ClassLoader.getSystemClassLoader();
+        ConcurrentMap<Class<?>, ExtensionLoader<?>> loaders = ExtensionLoaders.get(cl);
+        ExtensionLoader<T> loader = (ExtensionLoader<T>) loaders.get(type);
         if (loader == null) {
-            EXTENSION_LOADERS.putIfAbsent(type, new ExtensionLoader(type));
-            loader = (ExtensionLoader<T>) EXTENSION_LOADERS.get(type);
+            loader = (ExtensionLoader<T>) loaders.computeIfAbsent(type, t -> new ExtensionLoader<>(t, cl));
         }
         return loader;
     }
 
+    /**
+     * 释放ClassLoader上的所有{@link ExtensionLoader}：清空缓存的实例，停止监听配置文件，丢弃缓存的索引和快照。
+     * <p/>
+     * 注册表强引用ExtensionLoader，ExtensionLoader又引用了ClassLoader加载的类，卸载ClassLoader（如重新部署租户）时<b>必须</b>调用，
+     * 否则ClassLoader和它加载的类永远不会被回收。
+     * 之后再从这个ClassLoader获取扩展，会重新加载扩展点。池中空闲的{@link Scope#POOLED}实例被关闭，借出的实例归还时关闭；
+     * 其它已经拿到的扩展实例不受影响，不会被关闭，要关闭缓存的实例，先对各ExtensionLoader调用{@link #destroy()}。
+     *
+     * @param classLoader 要释放的ClassLoader
+     * @throws IllegalArgumentException 参数为<code>null</code>
+     * @since 1.0
+     */
+    public static void dispose(ClassLoader classLoader) {
+        if (classLoader == null) {
+            throw new IllegalArgumentException("classLoader == null");
+        }
+        ConcurrentMap<Class<?>, ExtensionLoader<?>> loaders = ExtensionLoaders.remove(classLoader);
+        Resolution.invalidateGraphs();
+        if (loaders != null) {
+            for (ExtensionLoader<?> loader : loaders.values()) {
+                loader.dispose();
+            }
+        }
+        ExtensionIndex.evict(classLoader);
+        ExtensionSnapshot.evict(classLoader);
+    }
+
+    /**
+     * 把启动快照中这次新加载的扩展点写回磁盘，下次启动时直接使用。没有设置<code>-Dmicro.container.snapshot</code>时不做任何事。
+     * <p/>
+     * JVM退出时会自动写回；启动完成（如{@link #preloadAll(Executor, boolean)}之后）调用可以避免进程被强制结束时丢失快照。
+     *
+     * @since 1.0
+     */
+    public static void saveSnapshot() {
+        ExtensionSnapshot.saveAll();
+    }
+
+    /**
+     * 在Executor上并行预加载扩展点：读取配置，加载并校验实现类，不创建实例。
+     *
+     * @see #preload(Collection, Executor, boolean)
+     * @since 1.0
+     */
+    public static PreloadReport preload(Collection<Class<?>> types, Executor executor) {
+        return preload(types, executor, false);
+    }
+
+    /**
+     * 在Executor上并行预加载扩展点，替代启动时逐个调用{@link #getDefaultExtension()}预热。
+     * <p/>
+     * 先并行加载各扩展点的配置和实现类，实现类注入的扩展点也一起加载；<code>instantiate</code>为<code>true</code>时
+     * 再按注入依赖分批并行创建单例扩展的实例，被注入的扩展点先创建。使用当前线程的Context ClassLoader。
+     * 失败不会中断预加载，记录在返回的{@link PreloadReport}中。
+     *
+     * @param types       要预加载的扩展点
+     * @param executor    执行预加载任务的Executor，如{@link java.util.concurrent.ForkJoinPool#commonPool()}
+     * @param instantiate 是否创建单例扩展的实例
+     * @throws IllegalArgumentException <code>types</code>或<code>executor</code>为<code>null</code>
+     * @since 1.0
+     */
+    public static PreloadReport preload(Collection<Class<?>> types, Executor executor, boolean instantiate) {
+        return new Preloader(getClassLoader(), executor, instantiate).preload(types);
+    }
+
+    /**
+     * 并行预加载当前线程的Context ClassLoader上所有已知的扩展点，即编译期索引中的扩展点。
+     * 没有生成索引的扩展点不在其中，用{@link #preload(Collection, Executor, boolean)}指定。
+     *
+     * @see #preload(Collection, Executor, boolean)
+     * @since 1.0
+     */
+    public static PreloadReport preloadAll(Executor executor, boolean instantiate) {
+        return new Preloader(getClassLoader(), executor, instantiate).preloadAll();
+    }
 
     public T getExtension(String name) {
         if (StringHelper.isEmpty(name)){
             throw new IllegalArgumentException("Extension name == null");
         }
-        return getExtension(name, new HashMap<>(), new ArrayList<>());
+        return getExtension(name, ExtensionContext.EMPTY, Collections.<String>emptyList());
     }
 
     public T getExtension(String name, Map<String, String> properties) {
+        return getExtension(name, properties, Collections.<String>emptyList());
+    }
+
+    /**
+     * @see #getExtension(String, ExtensionContext, List)
+     * @since 1.0
+     */
+    public T getExtension(String name, ExtensionContext context) {
         if (StringHelper.isEmpty(name)){
             throw new IllegalArgumentException("Extension name == null");
         }
-        return getExtension(name, properties, new ArrayList<>());
+        return getExtension(name, context, Collections.<String>emptyList());
     }
 
     public T getExtension(Map<String, String> properties) {
-        String name = properties.get(type.getName());
-        if (StringHelper.isEmpty(name)) {
-            name = defaultExtension;
-        }
-        return getExtension(name, properties, new ArrayList<String>());
+        return getExtension(getExtensionName(properties), properties, Collections.<String>emptyList());
+    }
+
+    /**
+     * 返回上下文选择的扩展：上下文中以扩展点接口名为Key的值，没有时是缺省扩展。
+     *
+     * @since 1.0
+     */
+    public T getExtension(ExtensionContext context) {
+        return getExtension(getExtensionName(context), context, Collections.<String>emptyList());
     }
 
     public T getExtension(String name, List<String> wrappers) {
         if (wrappers == null) {
             throw new IllegalArgumentException("wrappers == null");
         }
-        return getExtension(name, new HashMap<>(), wrappers);
+        return getExtension(name, ExtensionContext.EMPTY, wrappers);
     }
 
+    /**
+     * 传入的不是{@link ExtensionContext}时复制为上下文；扩展已经缓存时不用复制，直接返回。
+     */
     public T getExtension(String name, Map<String, String> properties, List<String> wrappers) {
-        if (StringHelper.isEmpty(name)) {
-            throw new IllegalArgumentException("Extension name == null");
+        if (!(properties instanceof ExtensionContext) && properties != null && !properties.isEmpty()
+                && !StringHelper.isEmpty(name)) {
+            T instance = getCachedExtension(name, properties, wrappers == null ? Collections.<String>emptyList() : wrappers);
+            if (instance != null) {
+                return instance;
+            }
         }
-        T extension = createExtension(name, properties);
-        injectExtension(extension, properties);
-        return createWrapper(extension, properties, wrappers);
+        return getExtension(name, ExtensionContext.of(properties), wrappers);
     }
 
     /**
-     * 返回缺省的扩展。
+     * 返回扩展。{@link Scope#PROPERTIES}的扩展按上下文缓存，上下文直接作为缓存的Key；
+     * 已经缓存的扩展（没有Wrapper时）查找时不分配内存。
      *
-     * @throws IllegalStateException 指定的扩展没有设置缺省扩展点
+     * @param context  为<code>null</code>时同{@link ExtensionContext#EMPTY}
+     * @param wrappers 返回的实例上，要启用的Wrapper。
      * @since 1.0
      */
-    public T getDefaultExtension() {
-        if (null == defaultExtension || defaultExtension.length() == 0) {
-            throw new IllegalStateException("No default extension on extension " + type.getName());
+    public T getExtension(String name, ExtensionContext context, List<String> wrappers) {
+        if (StringHelper.isEmpty(name)) {
+            throw new IllegalArgumentException("Extension name == null");
+        }
+        if (context == null) {
+            context = ExtensionContext.EMPTY;
+        }
+        if (wrappers == null) {
+            wrappers = Collections.emptyList();
+        }
+        for (; ; ) {
+            Scope scope = getExtensionScope(name);
+            if (scope == Scope.PROTOTYPE || scope == Scope.POOLED) {
+                return newExtension(name, context, wrappers);
+            }
+
+            Latch<T> latch = cachedInstances.getOrCreate(name, scope == Scope.PROPERTIES ? context : null, wrappers);
+            T instance = latch.get();
+            if (instance != null) {
+                Metrics.count(MetricType.CACHE_HIT, type, name);
+                return instance;
+            }
+            Metrics.count(MetricType.CACHE_MISS, type, name);
+            boolean created = false;
+            latch.lock();
+            try {
+                if (latch.isRetired()) {
+                    // 等锁期间重新加载移除或是淘汰了这个槽位，按新版本的注册表重新查找
+                    continue;
+                }
+                instance = latch.get();
+                if (instance == null) {
+                    Object[] core = new Object[1];
+                    instance = newExtension(name, context, wrappers, core);
+                    latch.set(instance, type.cast(core[0]));
+                    created = true;
+                }
+            } finally {
+                latch.unlock();
+            }
+            if (created && scope == Scope.PROPERTIES) {
+                cachedInstances.created(name, context, latch, instance);
+            }
+            return instance;
         }
-        return getExtension(defaultExtension);
     }
 
     /**
-     * 返回缺省的扩展。
+     * 返回扩展，没有这个名字的扩展、或是实现类加载失败时返回{@link Optional#empty()}，不抛出异常。
+     * 用于扩展名来自外部输入、找不到扩展是正常情况的调用方；创建实例失败时仍然抛出异常。
      *
-     * @param wrappers 返回的实例上，要启用的Wrapper。
-     * @throws IllegalStateException 指定的扩展没有设置缺省扩展点
+     * @throws IllegalStateException 创建扩展实例失败
      * @since 1.0
      */
-    public T getDefaultExtension(List<String> wrappers) {
-        if (null == defaultExtension || defaultExtension.length() == 0) {
-            throw new IllegalStateException("No default extension on extension " + type.getName());
+    public Optional<T> findExtension(String name) {
+        if (StringHelper.isEmpty(name)) {
+            return Optional.empty();
         }
-        return getExtension(defaultExtension, wrappers);
+        ExtensionDefinition<T> definition = getRegistry().getDefinitions().get(name);
+        if (definition == null || !definition.tryResolve()) {
+            return Optional.empty();
+        }
+        return Optional.of(getExtension(name));
     }
 
     /**
-     * 检查是否有指定名字的扩展。
+     * 返回扩展的句柄。热点路径上先解析一次句柄，之后通过{@link ExtensionHandle#get()}获取扩展，不再按扩展名查找。
      *
-     * @param name 扩展名
-     * @return 有指定名字的扩展，则<code>true</code>，否则<code>false</code>。
-     * @throws IllegalArgumentException 参数为<code>null</code>或是空字符串。
+     * @throws IllegalStateException 没有这个名字的扩展
      * @since 1.0
      */
-    public boolean hasExtension(String name) {
-        if (name == null || name.length() == 0){
+    public ExtensionHandle<T> handleFor(String name) {
+        if (StringHelper.isEmpty(name)) {
             throw new IllegalArgumentException("Extension name == null");
         }
-        return getExtensionClasses().get(name) != null;
+        return new ExtensionHandle<>(this, name, bind(name));
     }
 
-    /**
-     * 检查是否有指定缺省的扩展。
-     *
-     * @return 有指定缺省的扩展，则<code>true</code>，否则<code>false</code>。
-     * @since 1.0
-     */
-    public boolean hasDefaultExtension() {
-        return !(null == defaultExtension || defaultExtension.length() == 0);
+    public ExtensionChain<T> getExtensions(List<String> names) {
+        return getExtensions(names, ExtensionContext.EMPTY, Collections.<String>emptyList(), null);
+    }
 
+    public ExtensionChain<T> getExtensions(List<String> names, Map<String, String> properties, List<String> wrappers) {
+        return getExtensions(names, ExtensionContext.of(properties), wrappers, null);
     }
 
     /**
-     * 获取扩展点实现的所有扩展点名。
-     *
+     * @see #getExtensions(List, ExtensionContext, List, Executor)
      * @since 1.0
      */
-    public Set<String> getSupportedExtensions() {
-        Map<String, Class<?>> classes = getExtensionClasses();
-        return Collections.unmodifiableSet(new HashSet<>(classes.keySet()));
+    public ExtensionChain<T> getExtensions(List<String> names, ExtensionContext context, List<String> wrappers) {
+        return getExtensions(names, context, wrappers, null);
     }
 
     /**
-     * 返回缺省的扩展点名，如果没有设置缺省则返回<code>null</code>。
+     * 一次获取一组扩展，如按配置组装的过滤器链、处理器链。
+     * <p/>
+     * 先校验所有扩展名、检查依赖图，没有某个扩展或有循环依赖时不创建任何实例；再在同一次解析中创建各扩展，
+     * 多个扩展注入的同一个依赖（包括prototype的依赖）只获取一次，同一个扩展名出现多次时也只获取一次。
+     * 全部是缓存作用域的扩展时，整条链按(扩展名列表, Wrapper列表, 上下文)缓存，再次获取同一条链时直接返回，
+     * 扩展点重新加载后重新获取。
      *
+     * @param context  为<code>null</code>时同{@link ExtensionContext#EMPTY}
+     * @param wrappers 每个扩展上要启用的Wrapper
+     * @param executor 并行创建各扩展的Executor，为<code>null</code>时在当前线程上依次创建
+     * @throws IllegalArgumentException 扩展名列表为<code>null</code>，或是其中有<code>null</code>、空字符串
+     * @throws IllegalStateException    没有某个扩展、有循环依赖，或是创建扩展失败
      * @since 1.0
      */
-    public String getDefaultExtensionName() {
-        return defaultExtension;
-    }
+    public ExtensionChain<T> getExtensions(List<String> names, ExtensionContext context, List<String> wrappers, Executor executor) {
+        if (names == null) {
+            throw new IllegalArgumentException("names == null");
+        }
+        for (String name : names) {
+            if (StringHelper.isEmpty(name)) {
+                throw new IllegalArgumentException("Extension name == null");
+            }
+        }
+        if (context == null) {
+            context = ExtensionContext.EMPTY;
+        }
+        if (wrappers == null) {
+            wrappers = Collections.emptyList();
+        }
+        ExtensionRegistry<T> registry = getRegistry();
+        // 只有单例扩展的链和上下文无关，不按上下文缓存
+        ChainKey key = new ChainKey(names, wrappers, null);
+        ExtensionChain<T> chain = cachedChains.get(key);
+        if (chain == null && !context.isEmpty()) {
+            key = new ChainKey(names, wrappers, context);
+            chain = cachedChains.get(key);
+        }
+        if (chain != null && chain.getRegistry() == registry) {
+            return chain;
+        }
 
-    public Map<String, Map<String, String>> getExtensionAttribute() {
-        // 先一下加载扩展点类
-        getExtensionClasses();
-        return name2Attributes;
-    }
+        // Map<ext-name, index>，同一个扩展名只获取一次
+        Map<String, Integer> indexes = new LinkedHashMap<>();
+        for (String name : names) {
+            findExtensionDefinition(registry, name);
+            if (!indexes.containsKey(name)) {
+                indexes.put(name, indexes.size());
+            }
+        }
+        String[] unique = indexes.keySet().toArray(new String[0]);
+        boolean cacheable = true;
+        boolean contextual = false;
+        boolean prototypes = false;
+        for (String name : unique) {
+            Scope scope = registry.getScopes().get(name);
+            if (scope == Scope.PROPERTIES) {
+                // 有上限的缓存会淘汰并关闭实例，链中不能再引用
+                cacheable &= getCacheSpec(name) == null;
+                contextual = true;
+            } else {
+                cacheable &= scope == Scope.SINGLETON;
+            }
+            prototypes |= checkCycles(name, context, wrappers).hasPrototypes();
+        }
+        Object[] instances = executor == null || unique.length == 1 || Resolution.current() != null
+                ? createChain(unique, context, wrappers, prototypes)
+                : createChainInParallel(unique, context, wrappers, executor);
 
-    public Map<String, String> getExtensionAttribute(String name) {
-        if (name == null || name.length() == 0){
-            throw new IllegalArgumentException("Extension name == null");
+        String[] chainNames = names.toArray(new String[0]);
+        Object[] extensions = new Object[chainNames.length];
+        for (int i = 0; i < chainNames.length; i++) {
+            extensions[i] = instances[indexes.get(chainNames[i])];
         }
-        // 先一下加载扩展点类，如果没有这个名字的扩展点类，会抛异常，
-        // 这样不用创建不必要的Holder。
-        getExtensionClass(name);
-        return name2Attributes.get(name);
+        chain = new ExtensionChain<>(registry, chainNames, extensions);
+        if (cacheable) {
+            cachedChains.put(new ChainKey(new ArrayList<>(names), new ArrayList<>(wrappers), contextual ? context : null), chain);
+        }
+        return chain;
     }
 
-    @Override
-    public String toString() {
-        return this.getClass().getName() + "<" + type.getName() + ">";
+    /**
+     * 在当前线程上依次创建扩展链中的扩展，依赖图中有prototype的依赖时在同一次解析中创建。依赖图已经检查过。
+     */
+    private Object[] createChain(String[] names, ExtensionContext context, List<String> wrappers, boolean prototypes) {
+        Object[] instances = new Object[names.length];
+        Resolution resolution = prototypes && Resolution.current() == null ? Resolution.begin() : null;
+        try {
+            for (int i = 0; i < names.length; i++) {
+                instances[i] = getExtension(names[i], context, wrappers);
+            }
+        } finally {
+            if (resolution != null) {
+                resolution.end();
+            }
+        }
+        return instances;
     }
 
-    // ==============================
-    // internal methods
-    // ==============================
-
-    private final Class<T> type;
-
-    private final String defaultExtension;
-
-    private ExtensionLoader(Class<T> type) {
-        this.type = type;
-        String defaultExt = null;
-        final SPI annotation = type.getAnnotation(SPI.class);
-        if (annotation != null) {
-            String value = annotation.value();
-            if (value != null && (value = value.trim()).length() > 0) {
-                String[] names = NAME_SEPARATOR.split(value);
-                if (names.length > 1) {
-                    throw new IllegalStateException("more than 1 default extension name on extension " +
-                            type.getName() + ": " + Arrays.toString(names));
+    /**
+     * 在Executor上并行创建扩展链中的扩展，各线程共用一次解析。依赖图已经检查过。
+     */
+    private Object[] createChainInParallel(String[] names, ExtensionContext context, List<String> wrappers, Executor executor) {
+        Resolution resolution = Resolution.shared();
+        List<CompletableFuture<T>> futures = new ArrayList<>(names.length);
+        for (String name : names) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Resolution previous = resolution.enter();
+                try {
+                    return getExtension(name, context, wrappers);
+                } finally {
+                    Resolution.exit(previous);
                 }
-                if (names.length == 1 && names[0].trim().length() > 0) {
-                    defaultExt = names[0].trim();
+            }, executor));
+        }
+        Object[] instances = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            try {
+                instances[i] = futures.get(i).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
                 }
-                if (!isValidExtName(defaultExt)) {
-                    throw new IllegalStateException("default name(" + defaultExt +
-                            ") of extension " + type.getName() + " is invalid!");
+                if (cause instanceof Error) {
+                    throw (Error) cause;
                 }
+                throw new IllegalStateException("Fail to create extension " + names[i] +
+                        " of extension point " + type.getName() + ", cause: " + cause, cause);
             }
         }
-        defaultExtension = defaultExt;
+        return instances;
     }
 
-    private T createExtension(String name, Map<String, String> properties) {
-        Class<?> clazz = getExtensionClass(name);
-        try {
-            return injectExtension((T) clazz.newInstance(), properties);
-        } catch (Throwable t) {
-            String msg = "Fail to create extension " + name +
-                    " of extension point " + type.getName() + ", cause: " + t.getMessage();
-            logger.warn(msg);
-            throw new IllegalStateException(msg, t);
+    public CompletableFuture<T> getExtensionAsync(String name, Map<String, String> properties) {
+        return getExtensionAsync(name, properties, Collections.<String>emptyList());
+    }
+
+    /**
+     * 异步获取扩展，加载配置、加载实现类、创建实例和注入都不在调用线程上执行。
+     * <p/>
+     * 先沿注入依赖图异步创建缓存作用域（单例、按properties缓存）的依赖，互不依赖的依赖并行创建，
+     * prototype的依赖在注入时才创建；依赖都创建好后再创建这个扩展。扩展实例已经缓存时返回已完成的Future。
+     * 使用{@link #setAsyncExecutor(Executor)}设置的Executor，缺省在JDK 21及以上使用虚拟线程，
+     * 否则使用{@link java.util.concurrent.ForkJoinPool#commonPool()}。
+     * 有循环依赖、创建失败时Future异常完成，异常和{@link #getExtension(String, Map, List)}相同。
+     *
+     * @param properties 调用后修改不影响获取的扩展
+     * @param wrappers   返回的实例上，要启用的Wrapper。
+     * @since 1.0
+     */
+    public CompletableFuture<T> getExtensionAsync(String name, Map<String, String> properties, List<String> wrappers) {
+        if (StringHelper.isEmpty(name)) {
+            throw new IllegalArgumentException("Extension name == null");
         }
+        ExtensionContext context = ExtensionContext.of(properties);
+        List<String> wraps = wrappers == null || wrappers.isEmpty()
+                ? Collections.<String>emptyList() : new ArrayList<>(wrappers);
+        return getExtensionAsync(name, context, wraps, AsyncExecutors.get(),
+                new ConcurrentHashMap<List<Object>, CompletableFuture<?>>());
     }
 
-    private T createWrapper(T instance, Map<String, String> properties, List<String> wrappers) {
-        if (wrappers != null) {
-            for (String name : wrappers) {
-                try {
-                    instance = injectExtension(name2Wrapper.get(name).getConstructor(type).newInstance(instance), properties);
-                } catch (Throwable e) {
-                    throw new IllegalStateException("Fail to create wrapper(" + name + ") for extension point " + type);
-                }
-            }
+    /**
+     * 设置{@link #getExtensionAsync(String, Map, List)}使用的Executor。
+     *
+     * @param executor 为<code>null</code>时恢复缺省的Executor
+     * @since 1.0
+     */
+    public static void setAsyncExecutor(Executor executor) {
+        AsyncExecutors.set(executor);
+    }
+
+    /**
+     * @param started Map<(loader, ext-name), future>，这次异步获取中已经开始的依赖，同一个依赖只开始一次
+     */
+    private CompletableFuture<T> getExtensionAsync(String name, ExtensionContext properties, List<String> wrappers,
+                                                   Executor executor, ConcurrentMap<List<Object>, CompletableFuture<?>> started) {
+        T instance = getCachedExtension(name, properties, wrappers);
+        if (instance != null) {
+            return CompletableFuture.completedFuture(instance);
         }
-        return instance;
+        return CompletableFuture.supplyAsync(() -> createDependenciesAsync(name, properties, wrappers, executor, started), executor)
+                .thenCompose(dependencies -> dependencies)
+                .thenApplyAsync(v -> getExtension(name, properties, wrappers), executor);
     }
 
-    private T injectExtension(T instance, Map<String, String> properties) {
-        for (Method method : instance.getClass().getMethods()) {
-            if (method.getName().startsWith("set")
-                    && method.getParameterTypes().length == 1
-                    && Modifier.isPublic(method.getModifiers())) {
-                Class<?> pt = method.getParameterTypes()[0];
-                if (pt.isInterface() && withExtensionAnnotation(pt)) {
-                    if (pt.equals(type)) {
-                        logger.warn("Ignore self set(" + method + ") for class(" +
-                                instance.getClass() + ") when inject.");
-                        continue;
-                    }
+    /**
+     * 异步创建扩展依赖图中缓存作用域的依赖，返回的Future在这些依赖都创建好后完成。
+     */
+    private CompletableFuture<Void> createDependenciesAsync(String name, ExtensionContext properties, List<String> wrappers,
+                                                            Executor executor, ConcurrentMap<List<Object>, CompletableFuture<?>> started) {
+        // 有环时在这里失败，不会无限地异步递归
+        checkCycles(name, properties, wrappers);
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (Class<?> dependencyType : getDependencyTypes(name, wrappers)) {
+            ExtensionLoader<?> loader = getDependencyLoader(dependencyType);
+            String dependencyName = loader.getExtensionName(properties);
+            if (dependencyName == null || !loader.hasExtension(dependencyName)) {
+                // 注入时再报告找不到扩展
+                continue;
+            }
+            List<Object> node = Arrays.<Object>asList(loader, dependencyName);
+            CompletableFuture<?> future = started.get(node);
+            if (future == null) {
+                CompletableFuture<Object> placeholder = new CompletableFuture<>();
+                future = started.putIfAbsent(node, placeholder);
+                if (future == null) {
+                    future = placeholder;
                     try {
-                        Object prototype = getExtensionLoader(pt).getExtension(properties);
-                        method.invoke(instance, prototype);
+                        loader.getDependencyAsync(dependencyName, properties, executor, started).whenComplete((r, t) -> {
+                            if (t != null) {
+                                placeholder.completeExceptionally(t);
+                            } else {
+                                placeholder.complete(r);
+                            }
+                        });
                     } catch (Throwable t) {
-                        String errMsg = "Fail to inject via method " + method.getName()
-                                + " of interface to extension implementation " + instance.getClass() +
-                                " for extension point " + type.getName() + ", cause: " + t.getMessage();
-                        logger.warn(errMsg, t);
-                        throw new IllegalStateException(errMsg, t);
+                        placeholder.completeExceptionally(t);
                     }
                 }
             }
+            futures.add(future);
         }
-        return instance;
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
     }
 
-    // ====================================
-    // get & load Extension Class
-    // ====================================
-
-    // Holder<Map<ext-name, ext-class>>
-    private final Holder<Map<String, Class<?>>> extClassesHolder = new Holder();
-
-    private volatile Map<String, Map<String, String>> name2Attributes;
-
-    private final ConcurrentMap<Class<?>, String> extClass2Name = new ConcurrentHashMap();
-
-    private volatile Class<?> adaptiveClass = null;
-
-    private volatile Map<String, Class<? extends T>> name2Wrapper;
-
-    private final Map<String, IllegalStateException> extClassLoadExceptions = new ConcurrentHashMap();
+    private CompletableFuture<?> getDependencyAsync(String name, ExtensionContext properties, Executor executor,
+                                                    ConcurrentMap<List<Object>, CompletableFuture<?>> started) {
+        Scope scope = getExtensionScope(name);
+        if (scope == Scope.PROTOTYPE || scope == Scope.POOLED) {
+            // 注入时每次创建新实例，只预先创建它的依赖
+            List<String> wrappers = Collections.emptyList();
+            return CompletableFuture.supplyAsync(() -> createDependenciesAsync(name, properties, wrappers, executor, started), executor)
+                    .thenCompose(dependencies -> dependencies);
+        }
+        return getExtensionAsync(name, properties, Collections.<String>emptyList(), executor, started);
+    }
 
-    private Class<?> getExtensionClass(String name) {
-        if (name == null){
-            throw new IllegalArgumentException("Extension name == null");
+    /**
+     * 已经缓存的扩展实例，没有或是还没有加载配置时返回<code>null</code>，不加载配置。
+     */
+    private T getCachedExtension(String name, ExtensionContext properties, List<String> wrappers) {
+        ExtensionRegistry<T> registry = registryLatch.get();
+        if (registry == null) {
+            return null;
         }
-        Class<?> clazz = getExtensionClasses().get(name);
-        if (clazz == null){
-            throw findExtensionClassLoadException(name);
+        Scope scope = registry.getScopes().get(name);
+        if (scope == null || scope == Scope.PROTOTYPE || scope == Scope.POOLED) {
+            return null;
         }
-        return clazz;
+        Latch<T> latch = cachedInstances.get(name, scope == Scope.PROPERTIES ? properties : null, wrappers);
+        return latch == null ? null : latch.get();
     }
 
     /**
-     * Thread-safe.
+     * 已经缓存的扩展实例，没有时返回<code>null</code>。Map和上下文的哈希值、相等的约定相同，
+     * 不用把properties复制为上下文就可以查找按properties缓存的实例。
      */
-    private Map<String, Class<?>> getExtensionClasses() {
-        Map<String, Class<?>> classes = extClassesHolder.get();
-        if (classes == null) {
-            synchronized (extClassesHolder) {
-                classes = extClassesHolder.get();
-                if (classes == null) {
-                    loadExtensionClasses0();
-                    classes = extClassesHolder.get();
-                }
-            }
+    private T getCachedExtension(String name, Map<String, String> properties, List<String> wrappers) {
+        ExtensionRegistry<T> registry = registryLatch.get();
+        Scope scope = registry == null ? null : registry.getScopes().get(name);
+        Latch<T> latch;
+        if (scope == Scope.SINGLETON) {
+            latch = cachedInstances.get(name, null, wrappers);
+        } else if (scope == Scope.PROPERTIES && wrappers.isEmpty()) {
+            latch = cachedInstances.get(name, properties);
+        } else {
+            return null;
+        }
+        T instance = latch == null ? null : latch.get();
+        if (instance != null) {
+            Metrics.count(MetricType.CACHE_HIT, type, name);
         }
-        return classes;
+        return instance;
     }
 
-    private IllegalStateException findExtensionClassLoadException(String name) {
-        String msg = "No such extension " + type.getName() + " by name " + name;
+    public ExtensionLease<T> borrowExtension(String name) {
+        return borrowExtension(name, Collections.<String>emptyList());
+    }
 
-        for (Map.Entry<String, IllegalStateException> entry : extClassLoadExceptions.entrySet()) {
-            if (entry.getKey().toLowerCase().contains(name.toLowerCase())) {
-                IllegalStateException e = entry.getValue();
-                return new IllegalStateException(msg + ", cause: " + e.getMessage(), e);
-            }
+    /**
+     * 从{@link Scope#POOLED}扩展的池中借出一个实例，池中没有空闲实例时新建一个。
+     * 用完后调用{@link ExtensionLease#close()}归还，池的大小由配置属性<code>pool.size</code>指定，
+     * 缺省是CPU核数的2倍，池满时归还的实例被丢弃。每个扩展名和Wrapper列表的组合各有一个池。
+     *
+     * @param wrappers 借出的实例上，要启用的Wrapper。
+     * @throws IllegalStateException 扩展不是{@link Scope#POOLED}的
+     * @since 1.0
+     */
+    public ExtensionLease<T> borrowExtension(String name, List<String> wrappers) {
+        if (StringHelper.isEmpty(name)) {
+            throw new IllegalArgumentException("Extension name == null");
         }
-
-        StringBuilder buf = new StringBuilder(msg);
-        if (!extClassLoadExceptions.isEmpty()) {
-            buf.append(", possible causes: ");
-            int i = 1;
-            for (Map.Entry<String, IllegalStateException> entry : extClassLoadExceptions.entrySet()) {
-                buf.append("\r\n(");
-                buf.append(i++);
-                buf.append(") ");
-                buf.append(entry.getKey());
-                buf.append(":\r\n");
-                buf.append(StringHelper.toString(entry.getValue()));
+        if (wrappers == null) {
+            throw new IllegalArgumentException("wrappers == null");
+        }
+        Scope scope = getExtensionScope(name);
+        if (scope != Scope.POOLED) {
+            throw new IllegalStateException("Extension " + type.getName() + " by name " + name +
+                    " is not pooled, scope: " + scope);
+        }
+        ExtensionKey key = new ExtensionKey(name, wrappers, null);
+        ExtensionPool<T> pool = pools.get(key);
+        if (pool == null) {
+            int size = getExtensionAttributes(name).getInt(POOL_SIZE_ATTRIBUTE, ExtensionPool.DEFAULT_SIZE);
+            ExtensionPool<T> created = new ExtensionPool<>(type, name, size);
+            pool = pools.putIfAbsent(key.copy(), created);
+            if (pool == null) {
+                pool = created;
             }
         }
-        return new IllegalStateException(buf.toString());
+        T instance = pool.poll();
+        if (instance == null) {
+            Metrics.count(MetricType.POOL_MISS, type, name);
+            instance = newExtension(name, ExtensionContext.EMPTY, wrappers);
+        } else {
+            Metrics.count(MetricType.POOL_HIT, type, name);
+        }
+        return new ExtensionLease<>(instance, pool);
     }
 
-    private void loadExtensionClasses0() {
-        Map<String, Class<?>> extName2Class = new HashMap();
-        Map<String, Class<? extends T>> tmpName2Wrapper = new LinkedHashMap();
-        Map<String, Map<String, String>> tmpName2Attributes = new LinkedHashMap();
-        String fileName = null;
-        try {
-            ClassLoader classLoader = getClassLoader();
-            fileName = EXTENSION_CONF_DIRECTORY + type.getName();
-            Enumeration<URL> urls;
-            if (classLoader != null) {
-                urls = classLoader.getResources(fileName);
-            } else {
-                urls = ClassLoader.getSystemResources(fileName);
-            }
-
-            if (urls != null) {
-                while (urls.hasMoreElements()) {
-                    URL url = urls.nextElement();
-                    readExtension0(extName2Class, tmpName2Attributes, tmpName2Wrapper, classLoader, url);
-                }
+    /**
+     * 返回缺省的扩展。
+     *
+     * @throws IllegalStateException 指定的扩展没有设置缺省扩展点
+     * @since 1.0
+     */
+    public T getDefaultExtension() {
+        if (null == defaultExtension || defaultExtension.length() == 0) {
+            throw new IllegalStateException("No default extension on extension " + type.getName());
+        }
+        return getExtension(defaultExtension);
+    }
+
+    /**
+     * 返回缺省的扩展。
+     *
+     * @param wrappers 返回的实例上，要启用的Wrapper。
+     * @throws IllegalStateException 指定的扩展没有设置缺省扩展点
+     * @since 1.0
+     */
+    public T getDefaultExtension(List<String> wrappers) {
+        if (null == defaultExtension || defaultExtension.length() == 0) {
+            throw new IllegalStateException("No default extension on extension " + type.getName());
+        }
+        return getExtension(defaultExtension, wrappers);
+    }
+
+    /**
+     * 返回自适应扩展。
+     * <p/>
+     * 配置文件中有<code>*</code>前缀的Adaptive类时，返回这个类的实例；
+     * 否则返回生成的代理，每次调用从方法的<code>Map&lt;String, String&gt;</code>参数中
+     * 按{@link com.laibao.micro.container.annotation.Adaptive}声明的Key取扩展名，再转给对应的扩展实例。
+     *
+     * @throws IllegalStateException 创建Adaptive类的实例失败
+     * @since 1.0
+     */
+    public T getAdaptiveExtension() {
+        T instance = adaptiveInstanceLatch.get();
+        if (instance == null) {
+            adaptiveInstanceLatch.lock();
+            try {
+                instance = adaptiveInstanceLatch.get();
+                if (instance == null) {
+                    instance = createAdaptiveExtension();
+                    adaptiveInstanceLatch.set(instance);
+                }
+            } finally {
+                adaptiveInstanceLatch.unlock();
             }
+        }
+        return instance;
+    }
+
+    /**
+     * 检查是否有指定名字的扩展。
+     *
+     * @param name 扩展名
+     * @return 有指定名字的扩展，则<code>true</code>，否则<code>false</code>。
+     * @throws IllegalArgumentException 参数为<code>null</code>或是空字符串。
+     * @since 1.0
+     */
+    public boolean hasExtension(String name) {
+        if (name == null || name.length() == 0){
+            throw new IllegalArgumentException("Extension name == null");
+        }
+        ExtensionDefinition<T> definition = getRegistry().getDefinitions().get(name);
+        return definition != null && definition.tryResolve();
+    }
+
+    /**
+     * 检查是否有指定缺省的扩展。
+     *
+     * @return 有指定缺省的扩展，则<code>true</code>，否则<code>false</code>。
+     * @since 1.0
+     */
+    public boolean hasDefaultExtension() {
+        return !(null == defaultExtension || defaultExtension.length() == 0);
+
+    }
+
+    /**
+     * 获取扩展点实现的所有扩展点名。
+     * <p/>
+     * 懒加载模式下实现类还没有加载，返回的扩展名中可能有加载时才会失败的扩展。
+     *
+     * @since 1.0
+     */
+    public Set<String> getSupportedExtensions() {
+        Map<String, ExtensionDefinition<T>> definitions = getRegistry().getDefinitions();
+        return Collections.unmodifiableSet(new HashSet<>(definitions.keySet()));
+    }
+
+    /**
+     * 返回缺省的扩展点名，如果没有设置缺省则返回<code>null</code>。
+     *
+     * @since 1.0
+     */
+    public String getDefaultExtensionName() {
+        return defaultExtension;
+    }
+
+    /**
+     * 返回指定扩展的作用域。
+     *
+     * @param name 扩展名
+     * @throws IllegalArgumentException 参数为<code>null</code>或是空字符串。
+     * @throws IllegalStateException    没有这个名字的扩展
+     * @since 1.0
+     */
+    public Scope getExtensionScope(String name) {
+        if (name == null || name.length() == 0){
+            throw new IllegalArgumentException("Extension name == null");
+        }
+        ExtensionRegistry<T> registry = getRegistry();
+        findExtensionDefinition(registry, name);
+        return registry.getScopes().get(name);
+    }
+
+    /**
+     * 返回所有扩展的属性，扩展名到属性的Map，都不可修改。
+     *
+     * @since 1.0
+     */
+    public Map<String, Map<String, String>> getExtensionAttribute() {
+        return Collections.<String, Map<String, String>>unmodifiableMap(getRegistry().getAttributes());
+    }
+
+    /**
+     * 返回指定扩展的属性，不可修改。
+     *
+     * @see #getExtensionAttributes(String)
+     * @since 1.0
+     */
+    public Map<String, String> getExtensionAttribute(String name) {
+        return getExtensionAttributes(name);
+    }
+
+    /**
+     * 返回指定扩展的属性，不可修改，可以按类型读取属性值。
+     *
+     * @param name 扩展名
+     * @throws IllegalArgumentException 参数为<code>null</code>或是空字符串。
+     * @throws IllegalStateException    没有这个名字的扩展
+     * @since 1.0
+     */
+    public ExtensionAttributes getExtensionAttributes(String name) {
+        if (name == null || name.length() == 0){
+            throw new IllegalArgumentException("Extension name == null");
+        }
+        // 先一下加载扩展点类，如果没有这个名字的扩展点类，会抛异常，
+        // 这样不用创建不必要的Holder。
+        ExtensionRegistry<T> registry = getRegistry();
+        findExtensionDefinition(registry, name);
+        return registry.getAttributes().get(name);
+    }
+
+    /**
+     * 返回properties激活的扩展，按<code>order</code>属性排序。
+     *
+     * @param properties 激活条件检查的properties，也用来获取扩展实例
+     * @see #getActivateExtensions(Map, String)
+     * @since 1.0
+     */
+    public List<T> getActivateExtensions(Map<String, String> properties) {
+        return getActivateExtensions(properties, null);
+    }
+
+    /**
+     * 返回properties激活的、属于指定组的扩展，按<code>order</code>属性排序。
+     * <p/>
+     * 配置中有<code>activate</code>属性的扩展参与激活，如：
+     * <pre>
+     * cache=com.foo.CacheFilter(activate=cache|cache.enabled:true,group=consumer|provider,order=10)
+     * </pre>
+     * <ul>
+     * <li><code>activate</code>没有值时总是激活；否则满足任何一个条件即激活：
+     * <code>key</code>要求properties中有这个Key且值非空，<code>key:value</code>要求值相等。
+     * <li>有<code>group</code>属性的扩展只在查询其中的组时激活，没有<code>group</code>属性的扩展属于所有组。
+     * <li><code>order</code>越小越靠前，相同时按配置中的顺序。
+     * </ul>
+     * 激活的扩展名列表在加载配置时预先排好序并缓存，每次调用只检查激活条件。
+     *
+     * @param properties 激活条件检查的properties，也用来获取扩展实例
+     * @param group      组，为<code>null</code>时不按组过滤
+     * @throws IllegalArgumentException properties为<code>null</code>
+     * @since 1.0
+     */
+    public List<T> getActivateExtensions(Map<String, String> properties, String group) {
+        if (properties == null) {
+            throw new IllegalArgumentException("properties == null");
+        }
+        ExtensionContext context = ExtensionContext.of(properties);
+        List<String> names = getRegistry().getAttributeIndex().getActivateNames(context, group);
+        List<T> extensions = new ArrayList<>(names.size());
+        for (String name : names) {
+            extensions.add(getExtension(name, context));
+        }
+        return extensions;
+    }
+
+    /**
+     * 按属性查询扩展名，按<code>order</code>属性排序，<code>order</code>相同时按配置中的顺序。
+     * <p/>
+     * 属性值可以用<code>|</code>分隔多个值，如<code>group=filter|router</code>，查询其中任何一个值都会返回这个扩展。
+     * 返回的列表在加载配置时建好，不可修改。
+     *
+     * @param key   属性名
+     * @param value 属性值，为<code>null</code>时返回有这个属性的所有扩展名
+     * @throws IllegalArgumentException 属性名为<code>null</code>或是空字符串
+     * @since 1.0
+     */
+    public List<String> getExtensionNames(String key, String value) {
+        if (StringHelper.isEmpty(key)) {
+            throw new IllegalArgumentException("attribute key == null");
+        }
+        return getRegistry().getAttributeIndex().getNames(key, value);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getName() + "<" + type.getName() + ">";
+    }
+
+    // ==============================
+    // internal methods
+    // ==============================
+
+    private final Class<T> type;
+
+    private final ClassLoader classLoader;
+
+    private final String defaultExtension;
+
+    private final Scope defaultScope;
+
+    private final Latch<T> adaptiveInstanceLatch = new Latch<>();
+
+    // 生成的自适应代理的InvocationHandler，重新加载后清空它的内联缓存
+    private volatile AdaptiveExtensionHandler<T> adaptiveHandler;
+
+    // (ext-name, wrappers, context) -> instance
+    private final InstanceCache<T> cachedInstances;
+
+    // destroy()之后不再创建实例
+    private volatile boolean destroyed;
+
+    // Map<(ext-name, wrappers), pool>，POOLED扩展的空闲实例
+    private final ConcurrentMap<ExtensionKey, ExtensionPool<T>> pools = new ConcurrentHashMap();
+
+    // Map<(ext-names, wrappers, context), chain>，全部是缓存作用域的扩展链
+    private final ConcurrentMap<ChainKey, ExtensionChain<T>> cachedChains = new ConcurrentHashMap<>();
+
+    private ExtensionLoader(Class<T> type, ClassLoader classLoader) {
+        this.type = type;
+        this.classLoader = classLoader;
+        this.cachedInstances = new InstanceCache<>(type, this::getCacheSpec);
+        String defaultExt = null;
+        final SPI annotation = type.getAnnotation(SPI.class);
+        defaultScope = annotation == null ? Scope.SINGLETON : annotation.scope();
+        if (annotation != null) {
+            String value = annotation.value();
+            if (value != null && (value = value.trim()).length() > 0) {
+                String[] names = NAME_SEPARATOR.split(value);
+                if (names.length > 1) {
+                    throw new IllegalStateException("more than 1 default extension name on extension " +
+                            type.getName() + ": " + Arrays.toString(names));
+                }
+                if (names.length == 1 && names[0].trim().length() > 0) {
+                    defaultExt = names[0].trim();
+                }
+                if (!isValidExtName(defaultExt)) {
+                    throw new IllegalStateException("default name(" + defaultExt +
+                            ") of extension " + type.getName() + " is invalid!");
+                }
+            }
+        }
+        defaultExtension = defaultExt;
+    }
+
+    private T createAdaptiveExtension() {
+        ExtensionDefinition<T> definition = getRegistry().getAdaptive();
+        if (definition == null) {
+            AdaptiveExtensionHandler<T> handler = new AdaptiveExtensionHandler<>(this, type);
+            adaptiveHandler = handler;
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+        ExtensionContext properties = ExtensionContext.EMPTY;
+        Resolution resolution = Resolution.current();
+        boolean outermost = resolution == null;
+        if (outermost) {
+            resolution = Resolution.begin();
+        }
+        try {
+            if (outermost) {
+                Resolution.checkCycles(this, definition.getName(),
+                        getInjectionPlan(definition.resolve().getExtensionClass()).dependencyTypes(), properties);
+            }
+            return injectExtension(definition.newInstance(), properties);
         } catch (Throwable t) {
-            logger.error("Exception when load extension point(interface: " +
-                    type.getName() + ", description file: " + fileName + ").", t);
+            String msg = "Fail to create adaptive extension " + definition.getClassName() +
+                    " of extension point " + type.getName() + ", cause: " + t.getMessage();
+            logger.warn(msg);
+            throw new IllegalStateException(msg, t);
+        } finally {
+            if (outermost) {
+                resolution.end();
+            }
+        }
+    }
+
+    /**
+     * 在当前注册表版本上解析扩展的句柄：序号，以及缓存作用域的扩展在实例缓存中的槽位。
+     */
+    ExtensionHandle.Binding<T> bind(String name) {
+        ExtensionRegistry<T> registry = getRegistry();
+        int ordinal = registry.getOrdinal(name);
+        if (ordinal < 0) {
+            throw noSuchExtension(registry, name);
         }
+        Scope scope = registry.getScopes().get(name);
+        Latch<T> latch = null;
+        if (scope != Scope.PROTOTYPE && scope != Scope.POOLED) {
+            // 和getExtension(name)使用同一个槽位
+            latch = cachedInstances.getOrCreate(name, scope == Scope.PROPERTIES ? ExtensionContext.EMPTY : null,
+                    Collections.<String>emptyList());
+        }
+        return new ExtensionHandle.Binding<>(registry, ordinal, latch);
+    }
 
-        extClassesHolder.set(extName2Class);
-        name2Attributes = tmpName2Attributes;
-        name2Wrapper = tmpName2Wrapper;
+    /**
+     * 按properties缓存的扩展的缓存配置，没有配置上限时返回<code>null</code>。
+     */
+    private ContextCache.Spec getCacheSpec(String name) {
+        ExtensionAttributes attributes = getRegistry().getAttributes().get(name);
+        return ContextCache.Spec.of(attributes == null ? ExtensionAttributes.EMPTY : attributes, CACHE_SIZE);
     }
 
-    private void readExtension0(Map<String, Class<?>> extName2Class, Map<String, Map<String, String>> name2Attributes, Map<String, Class<? extends T>> name2Wrapper, ClassLoader classLoader, URL url) {
-        BufferedReader reader = null;
+    /**
+     * 当前版本的注册表，还没有加载配置时返回<code>null</code>。
+     */
+    ExtensionRegistry<T> getCurrentRegistry() {
+        return registryLatch.get();
+    }
+
+    T newExtension(String name) {
+        return newExtension(name, ExtensionContext.EMPTY, Collections.<String>emptyList());
+    }
+
+    private T newExtension(String name, ExtensionContext properties, List<String> wrappers) {
+        return newExtension(name, properties, wrappers, null);
+    }
+
+    /**
+     * 创建扩展实例。
+     * <p/>
+     * 不在进行中的解析里时先检查依赖图中没有环；依赖图中有{@link Scope#PROTOTYPE}的依赖时开始一次解析，
+     * 同一个依赖在这次解析中只创建一次。见{@link Resolution}。
+     *
+     * @param core 不为<code>null</code>时，<code>core[0]</code>中放入Wrapper链最里面的扩展实例
+     * @throws IllegalStateException ExtensionLoader已经销毁
+     */
+    private T newExtension(String name, ExtensionContext properties, List<String> wrappers, Object[] core) {
+        if (destroyed) {
+            throw new IllegalStateException("ExtensionLoader of extension point " + type.getName() + " is destroyed");
+        }
+        // 已经在解析中，或是依赖都是缓存的实例时，直接创建
+        if (Resolution.current() != null || !checkCycles(name, properties, wrappers).hasPrototypes()) {
+            return createWrapped(name, properties, wrappers, core);
+        }
+        Resolution resolution = Resolution.begin();
         try {
-            reader = new BufferedReader(new InputStreamReader(url.openStream(), "utf-8"));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String config = line;
+            return createWrapped(name, properties, wrappers, core);
+        } finally {
+            resolution.end();
+        }
+    }
+
+    private T createWrapped(String name, ExtensionContext properties, List<String> wrappers, Object[] core) {
+        T instance = createExtension(name, properties);
+        if (core != null) {
+            core[0] = instance;
+        }
+        if (wrappers.isEmpty()) {
+            return instance;
+        }
+        try {
+            return createWrapper(instance, properties, wrappers);
+        } catch (RuntimeException | Error e) {
+            // 扩展实例不会再被使用
+            Lifecycle.close(type, name, instance);
+            throw e;
+        }
+    }
+
+    // Map<ext-name, checked-graph>，没有Wrapper的扩展
+    private final ConcurrentMap<String, Resolution.CheckedGraph> checkedGraphs = new ConcurrentHashMap();
+
+    // Map<(ext-name, wrappers), checked-graph>
+    private final ConcurrentMap<ExtensionKey, Resolution.CheckedGraph> checkedWrapperGraphs = new ConcurrentHashMap();
+
+    /**
+     * 检查扩展（和它的Wrapper）的依赖图中没有环，检查过的依赖图按扩展名和Wrapper列表缓存。
+     */
+    private Resolution.CheckedGraph checkCycles(String name, ExtensionContext properties, List<String> wrappers) {
+        ExtensionKey key = wrappers.isEmpty() ? null : new ExtensionKey(name, wrappers, null);
+        Resolution.CheckedGraph graph = key == null ? checkedGraphs.get(name) : checkedWrapperGraphs.get(key);
+        if (graph != null && graph.isValid(properties)) {
+            return graph;
+        }
+        graph = Resolution.checkCycles(this, name, getDependencyTypes(name, wrappers), properties);
+        if (key == null) {
+            checkedGraphs.put(name, graph);
+        } else {
+            checkedWrapperGraphs.put(key.copy(), graph);
+        }
+        return graph;
+    }
+
+    private T createExtension(String name, ExtensionContext properties) {
+        ExtensionDefinition<T> definition = getExtensionDefinition(name);
+        try {
+            long start = Metrics.start();
+            T instance = definition.newInstance();
+            Metrics.record(MetricType.INSTANTIATION, type, name, start);
+
+            start = Metrics.start();
+            injectExtension(instance, properties);
+            Metrics.record(MetricType.INJECTION, type, name, start);
+            return instance;
+        } catch (Throwable t) {
+            Metrics.failure(type, name, t);
+            String msg = "Fail to create extension " + name +
+                    " of extension point " + type.getName() + ", cause: " + t.getMessage();
+            logger.warn(msg);
+            throw new IllegalStateException(msg, t);
+        }
+    }
+
+    private T createWrapper(T instance, ExtensionContext properties, List<String> wrappers) {
+        if (wrappers != null) {
+            for (String name : wrappers) {
+                ExtensionDefinition<T> wrapper = getRegistry().getWrappers().get(name);
+                if (wrapper == null) {
+                    throw new IllegalStateException("No such wrapper(" + name + ") for extension point " + type);
+                }
+                try {
+                    long start = Metrics.start();
+                    instance = injectExtension(wrapper.wrap(instance), properties);
+                    Metrics.record(MetricType.WRAPPER, type, name, start);
+                } catch (Throwable e) {
+                    Metrics.failure(type, name, e);
+                    throw new IllegalStateException("Fail to create wrapper(" + name + ") for extension point " + type, e);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private T injectExtension(T instance, ExtensionContext properties) {
+        InjectionPlan plan = getInjectionPlan(instance.getClass());
+        Resolution resolution = Resolution.current();
+        for (int i = 0; i < plan.size(); i++) {
+            try {
+                ExtensionLoader<?> loader = getDependencyLoader(plan.dependencyType(i));
+                Object dependency = resolution != null ? resolution.getDependency(loader, properties)
+                        : loader.getExtension(properties);
+                plan.inject(i, instance, dependency);
+            } catch (Throwable t) {
+                String errMsg = "Fail to inject via method " + plan.setterName(i)
+                        + " of interface to extension implementation " + instance.getClass() +
+                        " for extension point " + type.getName() + ", cause: " + t.getMessage();
+                logger.warn(errMsg, t);
+                throw new IllegalStateException(errMsg, t);
+            }
+        }
+        return instance;
+    }
 
-                // delete comments
-                final int ci = config.indexOf('#');
-                if (ci >= 0) config = config.substring(0, ci);
-                config = config.trim();
-                if (config.length() == 0) continue;
+    /**
+     * 预加载：加载配置，加载所有实现类、Wrapper类和Adaptive类，生成注入计划。
+     *
+     * @param failures 收集失败，Key是扩展名或解析失败的配置行
+     * @return 实现类注入的扩展点
+     */
+    Set<Class<?>> preloadClasses(Map<String, Throwable> failures) {
+        ExtensionRegistry<T> registry = getRegistry();
+        failures.putAll(registry.getLoadExceptions());
+        // Wrapper的多个名字共用一个定义
+        Set<ExtensionDefinition<T>> definitions = Collections.newSetFromMap(new IdentityHashMap<ExtensionDefinition<T>, Boolean>());
+        definitions.addAll(registry.getDefinitions().values());
+        definitions.addAll(registry.getWrappers().values());
+        if (registry.getAdaptive() != null) {
+            definitions.add(registry.getAdaptive());
+        }
+        Set<Class<?>> dependencies = new LinkedHashSet<>();
+        for (ExtensionDefinition<T> definition : definitions) {
+            try {
+                InjectionPlan plan = getInjectionPlan(definition.resolve().getExtensionClass());
+                for (int i = 0; i < plan.size(); i++) {
+                    dependencies.add(plan.dependencyType(i));
+                }
+            } catch (Throwable t) {
+                failures.put(definition.getName(), t);
+            }
+        }
+        return dependencies;
+    }
 
+    /**
+     * 预加载：创建所有{@link Scope#SINGLETON}扩展的实例（不带Wrapper）。
+     *
+     * @param failures 收集失败，Key是扩展名
+     */
+    void preloadInstances(Map<String, Throwable> failures) {
+        for (Map.Entry<String, Scope> entry : getRegistry().getScopes().entrySet()) {
+            if (entry.getValue() == Scope.SINGLETON) {
                 try {
-                    String name = null;
-                    String body = null;
-                    String attribute = null;
-                    int i = config.indexOf('=');
-                    if (i > 0) {
-                        name = config.substring(0, i).trim();
-                        body = config.substring(i + 1).trim();
-                    }
-                    // 没有配置文件中没有扩展点名，从实现类的Extension注解上读取。
-                    if (name == null || name.length() == 0) {
-                        throw new IllegalStateException(
-                                "missing extension name, config value: " + config);
-                    }
-                    int j = config.indexOf("(", i);
-                    if (j > 0) {
-                        if (config.charAt(config.length() - 1) != ')') {
-                            throw new IllegalStateException(
-                                    "missing ')' of extension attribute!");
-                        }
-                        body = config.substring(i + 1, j).trim();
-                        attribute = config.substring(j + 1, config.length() - 1);
-                    }
+                    getExtension(entry.getKey());
+                } catch (Throwable t) {
+                    failures.put(entry.getKey(), t);
+                }
+            }
+        }
+    }
+
+    Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * 按properties选择的扩展名：properties中以扩展点接口名为Key的值，没有时是缺省扩展名（可能为<code>null</code>）。
+     */
+    String getExtensionName(Map<String, String> properties) {
+        String name = properties.get(type.getName());
+        return StringHelper.isEmpty(name) ? defaultExtension : name;
+    }
 
-                    Class<? extends T> clazz = Class.forName(body, true, classLoader).asSubclass(type);
-                    if (!type.isAssignableFrom(clazz)) {
-                        throw new IllegalStateException("Error when load extension class(interface: " +
-                                type.getName() + ", class line: " + clazz.getName() + "), class "
-                                + clazz.getName() + "is not subtype of interface.");
+    /**
+     * 注入的依赖从同一个ClassLoader获取。
+     */
+    <D> ExtensionLoader<D> getDependencyLoader(Class<D> dependencyType) {
+        return getExtensionLoader(dependencyType, classLoader);
+    }
+
+    /**
+     * 扩展的实现类注入的扩展点，即依赖图中这个扩展的出边。
+     */
+    List<Class<?>> getDependencyTypes(String name) {
+        return getInjectionPlan(getExtensionDefinition(name).getExtensionClass()).dependencyTypes();
+    }
+
+    /**
+     * 扩展和它的Wrapper注入的扩展点。
+     */
+    private List<Class<?>> getDependencyTypes(String name, List<String> wrappers) {
+        List<Class<?>> dependencyTypes = getDependencyTypes(name);
+        if (!wrappers.isEmpty()) {
+            dependencyTypes = new ArrayList<>(dependencyTypes);
+            for (String wrapper : wrappers) {
+                ExtensionDefinition<T> definition = getRegistry().getWrappers().get(wrapper);
+                try {
+                    if (definition != null) {
+                        dependencyTypes.addAll(getInjectionPlan(definition.resolve().getExtensionClass()).dependencyTypes());
                     }
+                } catch (IllegalStateException e) {
+                    // 创建Wrapper时再报告
+                }
+            }
+        }
+        return dependencyTypes;
+    }
 
-                    if (name.startsWith(PREFIX_ADAPTIVE_CLASS)) {
-                        if (adaptiveClass == null) {
-                            adaptiveClass = clazz;
-                        } else if (!adaptiveClass.equals(clazz)) {
-                            throw new IllegalStateException("More than 1 adaptive class found: "
-                                    + adaptiveClass.getClass().getName()
-                                    + ", " + clazz.getClass().getName());
-                        }
-                    } else {
-                        final boolean isWrapper = name.startsWith(PREFIX_WRAPPER_CLASS);
-                        if (isWrapper)
-                            name = name.substring(PREFIX_WRAPPER_CLASS.length());
-
-                        String[] nameList = NAME_SEPARATOR.split(name);
-                        for (String n : nameList) {
-                            if (!isValidExtName(n)) {
-                                throw new IllegalStateException("name(" + n +
-                                        ") of extension " + type.getName() + "is invalid!");
-                            }
+    // Map<impl-class, injection-plan>
+    private final ConcurrentMap<Class<?>, InjectionPlan> injectionPlans = new ConcurrentHashMap();
 
-                            if (isWrapper) {
-                                try {
-                                    clazz.getConstructor(type);
-                                    name2Wrapper.put(name, clazz);
-                                } catch (NoSuchMethodException e) {
-                                    throw new IllegalStateException("wrapper class(" + clazz +
-                                            ") has NO copy constructor!", e);
-                                }
-                            } else {
-                                try {
-                                    clazz.getConstructor();
-                                } catch (NoSuchMethodException e) {
-                                    throw new IllegalStateException("extension class(" + clazz +
-                                            ") has NO default constructor!", e);
-                                }
-                                if (extName2Class.containsKey(n)) {
-                                    if (extName2Class.get(n) != clazz) {
-                                        throw new IllegalStateException("Duplicate extension " +
-                                                type.getName() + " name " + n +
-                                                " on " + clazz.getName() + " and " + clazz.getName());
-                                    }
-                                } else {
-                                    extName2Class.put(n, clazz);
-                                }
-                                name2Attributes.put(n, parseExtAttribute(attribute));
-
-                                if (!extClass2Name.containsKey(clazz)) {
-                                    extClass2Name.put(clazz, n); // 实现类到扩展点名的Map中，记录了一个就可以了
-                                }
-                            }
+    private InjectionPlan getInjectionPlan(Class<?> clazz) {
+        InjectionPlan plan = injectionPlans.get(clazz);
+        if (plan == null) {
+            // dispose可能在两次调用之间清空Map，用putIfAbsent的返回值
+            InjectionPlan created = InjectionPlan.of(clazz, type);
+            plan = injectionPlans.putIfAbsent(clazz, created);
+            if (plan == null) {
+                plan = created;
+            }
+        }
+        return plan;
+    }
+
+    // ====================================
+    // get & load Extension Class
+    // ====================================
+
+    // 注册表整体替换，不修改已发布的版本；加载配置时加锁
+    private final Latch<ExtensionRegistry<T>> registryLatch = new Latch<>();
+
+    // 配置文件变化时重新加载
+    private final Runnable reloadTask = this::reload;
+
+    /**
+     * 返回已解析的扩展定义，懒加载模式下在这里加载实现类。
+     */
+    private ExtensionDefinition<T> getExtensionDefinition(String name) {
+        ExtensionRegistry<T> registry = getRegistry();
+        ExtensionDefinition<T> definition = findExtensionDefinition(registry, name);
+        if (!definition.isResolved() && !definition.tryResolve()) {
+            throw noSuchExtension(registry, name);
+        }
+        return definition;
+    }
+
+    /**
+     * 返回扩展定义，不加载实现类。
+     */
+    private ExtensionDefinition<T> findExtensionDefinition(ExtensionRegistry<T> registry, String name) {
+        if (name == null){
+            throw new IllegalArgumentException("Extension name == null");
+        }
+        ExtensionDefinition<T> definition = registry.getDefinitions().get(name);
+        if (definition == null){
+            throw noSuchExtension(registry, name);
+        }
+        return definition;
+    }
+
+    /**
+     * 返回当前版本的注册表，第一次调用时加载配置。
+     * <p/>
+     * Thread-safe.
+     */
+    private ExtensionRegistry<T> getRegistry() {
+        ExtensionRegistry<T> registry = registryLatch.get();
+        if (registry == null) {
+            registryLatch.lock();
+            try {
+                registry = registryLatch.get();
+                if (registry == null) {
+                    registry = loadRegistry(null);
+                    registryLatch.set(registry);
+                }
+            } finally {
+                registryLatch.unlock();
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * 重新加载扩展点配置，构建新版本的注册表，用一次volatile写替换当前版本。
+     * <p/>
+     * 重新加载期间读方不阻塞，继续使用当前版本。替换后只清除受影响的缓存实例：
+     * 扩展的实现类、作用域或属性有变化，或是用到的Wrapper有变化。Adaptive类有变化时重新创建自适应扩展，
+     * 自适应代理的内联缓存总是清空。已经注入到其它扩展实例中的依赖不会替换；
+     * 同一个ClassLoader不会重新加载修改过的类文件，只有配置的变化会生效。
+     * <p/>
+     * 设置<code>-Dmicro.container.reload=true</code>时，文件系统目录中的配置文件变化后自动调用。
+     *
+     * @since 1.0
+     */
+    public void reload() {
+        ExtensionRegistry<T> previous;
+        ExtensionRegistry<T> registry;
+        registryLatch.lock();
+        try {
+            previous = registryLatch.get();
+            if (previous == null) {
+                getRegistry();
+                return;
+            }
+            // 重新读取可能重新生成了的索引
+            ExtensionIndex.evict(classLoader);
+            registry = loadRegistry(previous);
+            registryLatch.set(registry);
+        } finally {
+            registryLatch.unlock();
+        }
+        Resolution.invalidateGraphs();
+        invalidate(previous, registry);
+        logger.info("Reloaded extension point " + type.getName() + ", registry version " + registry.getVersion());
+    }
+
+    private void invalidate(ExtensionRegistry<T> previous, ExtensionRegistry<T> registry) {
+        Set<String> changedWrappers = new HashSet<>();
+        for (String name : previous.getWrappers().keySet()) {
+            if (!registry.isSameWrapper(previous, name)) {
+                changedWrappers.add(name);
+            }
+        }
+        // 持有被移除槽位的句柄重新解析
+        cachedInstances.removeIf((name, wrappers) ->
+                !registry.isSameExtension(previous, name) || !Collections.disjoint(wrappers, changedWrappers));
+        // 扩展链记录了注册表版本，下次获取时重新获取；这里清空，不再引用旧实例
+        cachedChains.clear();
+        // 移除的池关闭空闲的实例，借出中的实例归还时关闭，不再放回没有人能找到的池
+        for (Iterator<Map.Entry<ExtensionKey, ExtensionPool<T>>> iterator = pools.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<ExtensionKey, ExtensionPool<T>> entry = iterator.next();
+            ExtensionKey key = entry.getKey();
+            if (!registry.isSameExtension(previous, key.name) || !Collections.disjoint(key.wrappers, changedWrappers)) {
+                iterator.remove();
+                entry.getValue().drain();
+            }
+        }
+        if (registry.getAdaptive() != previous.getAdaptive()) {
+            adaptiveInstanceLatch.lock();
+            try {
+                adaptiveInstanceLatch.set(null);
+                adaptiveHandler = null;
+            } finally {
+                adaptiveInstanceLatch.unlock();
+            }
+        }
+        AdaptiveExtensionHandler<T> handler = adaptiveHandler;
+        if (handler != null) {
+            handler.invalidate();
+        }
+    }
+
+    /**
+     * 销毁这个ExtensionLoader：从注册表中移除，关闭缓存的所有实例、池中空闲的实例和Adaptive类的实例，停止监听配置文件。
+     * <p/>
+     * 实现了{@link AutoCloseable}的实例会被关闭，带Wrapper时关闭最外层的Wrapper。已经借出的池化实例归还时关闭，
+     * 已经注入到其它扩展中的实例也会被关闭。之后这个ExtensionLoader不再创建实例，再调用{@link #getExtensionLoader(Class, ClassLoader)}
+     * 会得到新的ExtensionLoader。
+     *
+     * @see #dispose(ClassLoader)
+     * @since 1.0
+     */
+    public void destroy() {
+        destroyed = true;
+        ExtensionLoaders.remove(classLoader, type, this);
+        Resolution.invalidateGraphs();
+        cachedChains.clear();
+        cachedInstances.clear(true);
+        T adaptive;
+        adaptiveInstanceLatch.lock();
+        try {
+            adaptive = adaptiveInstanceLatch.get();
+            adaptiveInstanceLatch.set(null);
+        } finally {
+            adaptiveInstanceLatch.unlock();
+        }
+        if (adaptive != null && !Proxy.isProxyClass(adaptive.getClass())) {
+            Lifecycle.close(type, "adaptive", adaptive);
+        }
+        dispose();
+        logger.info("Destroyed extension point " + type.getName());
+    }
+
+    /**
+     * 释放这个ExtensionLoader，见{@link #dispose(ClassLoader)}。
+     */
+    private void dispose() {
+        if (RELOAD) {
+            try {
+                DescriptorWatcher.getInstance().unregister(reloadTask);
+            } catch (Throwable t) {
+                logger.warn("Fail to unwatch descriptors of extension point " + type.getName() + ", cause: " + t.getMessage(), t);
+            }
+        }
+        cachedInstances.clear(false);
+        cachedChains.clear();
+        // 池化的是编解码器、大缓冲区这类代价大的资源，不能只丢弃
+        for (ExtensionPool<T> pool : pools.values()) {
+            pool.drain();
+        }
+        pools.clear();
+        adaptiveInstanceLatch.lock();
+        try {
+            adaptiveInstanceLatch.set(null);
+            adaptiveHandler = null;
+        } finally {
+            adaptiveInstanceLatch.unlock();
+        }
+        injectionPlans.clear();
+        checkedGraphs.clear();
+        checkedWrapperGraphs.clear();
+    }
+
+    /**
+     * 找不到扩展或是实现类加载失败的异常。诊断信息按扩展名缓存在注册表版本中，只生成一次。
+     */
+    private NoSuchExtensionException noSuchExtension(ExtensionRegistry<T> registry, String name) {
+        NoSuchExtensionException diagnostic = registry.getFailure(name);
+        if (diagnostic == null) {
+            ExtensionDefinition<T> definition = registry.getDefinitions().get(name);
+            IllegalStateException failure = definition == null ? null : definition.getFailure();
+            if (failure == null && registry.isFailuresFull()) {
+                // 错误的扩展名太多（如来自外部输入）时不再逐个匹配、渲染加载异常，共用渲染好的诊断信息
+                NoSuchExtensionException cause = registry.getOverflowCause(type.getName());
+                return new NoSuchExtensionException(type.getName(), name, "No such extension " + type.getName() +
+                        " by name " + name + (cause == null ? "" : ", possible causes in cause"), cause, STACK_TRACE);
+            }
+            diagnostic = failure == null ? findExtensionClassLoadException(registry, name)
+                    : new NoSuchExtensionException(type.getName(), name, "No such extension " + type.getName() +
+                    " by name " + name + ", cause: " + failure.getMessage(), failure, false);
+            registry.putFailure(name, diagnostic);
+        }
+        return diagnostic.copy(STACK_TRACE);
+    }
+
+    private NoSuchExtensionException findExtensionClassLoadException(ExtensionRegistry<T> registry, String name) {
+        String msg = "No such extension " + type.getName() + " by name " + name;
+        Map<String, IllegalStateException> extClassLoadExceptions = registry.getLoadExceptions();
+
+        String lowerName = name.toLowerCase();
+        for (Map.Entry<String, IllegalStateException> entry : extClassLoadExceptions.entrySet()) {
+            if (entry.getKey().toLowerCase().contains(lowerName)) {
+                IllegalStateException e = entry.getValue();
+                return new NoSuchExtensionException(type.getName(), name, msg + ", cause: " + e.getMessage(), e, false);
+            }
+        }
+
+        String causes = registry.getPossibleCauses();
+        if (causes != null) {
+            msg += ", possible causes: " + causes;
+        }
+        return new NoSuchExtensionException(type.getName(), name, msg, null, false);
+    }
+
+    /**
+     * 读取配置，构建下一个版本的注册表。
+     */
+    private ExtensionRegistry<T> loadRegistry(ExtensionRegistry<T> previous) {
+        long start = Metrics.start();
+        ExtensionRegistry.Builder<T> builder = new ExtensionRegistry.Builder<>(previous, classLoader);
+        String fileName = null;
+        // 启动快照中有这个扩展点时，直接使用快照中校验过的配置项；重新加载模式下不使用快照
+        ExtensionSnapshot snapshot = StringHelper.isEmpty(SNAPSHOT_DIR) || RELOAD ? null
+                : ExtensionSnapshot.getSnapshot(classLoader, SNAPSHOT_DIR, LAZY, INDEX_ENABLED);
+        List<DescriptorEntry> snapshotted = snapshot != null ? snapshot.getEntries(type.getName()) : null;
+        try {
+            // 有编译期生成的索引时，直接使用索引中的配置项；索引只覆盖和它在同一个Jar包或目录中的配置文件，
+            // 其它位置（如没有生成索引的第三方Jar包）的配置文件仍然读取。重新加载模式下总是读配置文件
+            ExtensionIndex index = snapshotted == null && INDEX_ENABLED && !RELOAD
+                    ? ExtensionIndex.getIndex(classLoader) : ExtensionIndex.EMPTY;
+            List<DescriptorEntry> entries = snapshotted != null ? snapshotted : index.getEntries(type.getName());
+            builder.snapshotted = snapshotted != null;
+            if (entries != null) {
+                for (DescriptorEntry entry : entries) {
+                    try {
+                        loadExtension0(builder, entry);
+                    } catch (Throwable t) {
+                        recordLoadException(builder, entry.getLine(), entry.getSource(), t);
+                    }
+                }
+            }
+            // 索引是权威的时，索引中有的扩展点不再查找配置文件
+            if (snapshotted == null && !index.isAuthoritative(type.getName())) {
+                fileName = EXTENSION_CONF_DIRECTORY + type.getName();
+                Enumeration<URL> urls;
+                if (classLoader != null) {
+                    urls = classLoader.getResources(fileName);
+                } else {
+                    urls = ClassLoader.getSystemResources(fileName);
+                }
+
+                if (urls != null) {
+                    while (urls.hasMoreElements()) {
+                        URL url = urls.nextElement();
+                        if (index.covers(type.getName(), url)) {
+                            continue;
                         }
+                        builder.sources.add(url);
+                        readExtension0(builder, url);
                     }
-                } catch (Throwable t) {
-                    IllegalStateException e = new IllegalStateException("Failed to load config line(" + line +
-                            ") of config file(" + url + ") for extension(" + type.getName() +
-                            "), cause: " + t.getMessage(), t);
-                    logger.warn("", e);
-                    extClassLoadExceptions.put(line, e);
                 }
-            } // end of while read lines
+            }
+        } catch (Throwable t) {
+            logger.error("Exception when load extension point(interface: " +
+                    type.getName() + ", description file: " + fileName + ").", t);
+        }
+
+        ExtensionRegistry<T> registry = builder.build();
+        if (RELOAD) {
+            watch(registry);
+        }
+        if (snapshot != null && snapshotted == null && registry.getLoadExceptions().isEmpty()) {
+            snapshot.record(type.getName(), builder.entries);
+        }
+        Metrics.record(MetricType.LOAD, type, null, start);
+        return registry;
+    }
+
+    /**
+     * 监听读过的配置文件所在的目录，以及ClassLoader上所有文件系统中的配置目录，以便发现新增的配置文件。
+     */
+    private void watch(ExtensionRegistry<T> registry) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        try {
+            for (URL url : registry.getSources()) {
+                if ("file".equals(url.getProtocol())) {
+                    dirs.add(Paths.get(url.toURI()).getParent());
+                }
+            }
+            Enumeration<URL> urls = classLoader != null ? classLoader.getResources(EXTENSION_CONF_DIRECTORY)
+                    : ClassLoader.getSystemResources(EXTENSION_CONF_DIRECTORY);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                if ("file".equals(url.getProtocol())) {
+                    dirs.add(Paths.get(url.toURI()));
+                }
+            }
+            DescriptorWatcher watcher = DescriptorWatcher.getInstance();
+            for (Path dir : dirs) {
+                watcher.register(dir, type.getName(), reloadTask);
+            }
+        } catch (Throwable t) {
+            logger.warn("Fail to watch descriptors of extension point " + type.getName() + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    private void readExtension0(ExtensionRegistry.Builder<T> builder, URL url) {
+        String source = url.toString();
+        List<DescriptorEntry> entries;
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        try (InputStream in = url.openStream()) {
+            entries = DescriptorParser.parse(in, source, failures);
         } catch (Throwable t) {
             logger.error("Exception when load extension class(interface: " +
                     type.getName() + ", class file: " + url + ") in " + url, t);
-        } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (Throwable t) {
-                    // ignore
+            return;
+        }
+        for (Map.Entry<String, Throwable> failure : failures.entrySet()) {
+            recordLoadException(builder, failure.getKey(), source, failure.getValue());
+        }
+        for (DescriptorEntry entry : entries) {
+            try {
+                loadExtension0(builder, entry);
+            } catch (Throwable t) {
+                recordLoadException(builder, entry.getLine(), source, t);
+            }
+        }
+    }
+
+    private void recordLoadException(ExtensionRegistry.Builder<T> builder, String line, String source, Throwable t) {
+        IllegalStateException e = new IllegalStateException("Failed to load config line(" + line +
+                ") of config file(" + source + ") for extension(" + type.getName() +
+                "), cause: " + t.getMessage(), t);
+        logger.warn("", e);
+        builder.loadExceptions.put(line, e);
+        Metrics.failure(type, line, e);
+    }
+
+    private void loadExtension0(ExtensionRegistry.Builder<T> builder, DescriptorEntry entry) {
+        String name = entry.getName();
+        String className = entry.getClassName();
+        String attribute = entry.getAttribute();
+        ClassLoader classLoader = builder.classLoader;
+
+        if (name.startsWith(PREFIX_ADAPTIVE_CLASS)) {
+            if (builder.adaptive == null) {
+                ExtensionDefinition<T> definition = builder.previousAdaptive(className);
+                builder.adaptive = resolveIfEager(builder, definition != null ? definition
+                        : ExtensionDefinition.ofExtension(name, className, type, classLoader));
+            } else if (!builder.adaptive.getClassName().equals(className)) {
+                throw new IllegalStateException("More than 1 adaptive class found: "
+                        + builder.adaptive.getClassName()
+                        + ", " + className);
+            }
+        } else {
+            final boolean isWrapper = name.startsWith(PREFIX_WRAPPER_CLASS);
+            if (isWrapper)
+                name = name.substring(PREFIX_WRAPPER_CLASS.length());
+
+            String[] nameList = DescriptorParser.splitNames(name);
+            if (nameList == null) {
+                throw new IllegalStateException("name(" + name +
+                        ") of extension " + type.getName() + " is invalid!");
+            }
+
+            if (isWrapper) {
+                ExtensionDefinition<T> definition = builder.previousWrapper(nameList[0], className);
+                definition = resolveIfEager(builder, definition != null ? definition
+                        : ExtensionDefinition.ofWrapper(name, className, type, classLoader));
+                for (String n : nameList) {
+                    builder.wrappers.put(n, definition);
+                }
+            } else {
+                ExtensionAttributes attributes = parseExtAttribute(attribute);
+                String scope = attributes.get(SCOPE_ATTRIBUTE);
+                Scope extScope = StringHelper.isEmpty(scope) ? defaultScope : Scope.of(scope);
+                // 校验order和pool.size，解析结果缓存在属性中
+                attributes.getInt(ORDER_ATTRIBUTE, AttributeIndex.DEFAULT_ORDER);
+                if (attributes.getInt(POOL_SIZE_ATTRIBUTE, ExtensionPool.DEFAULT_SIZE) <= 0) {
+                    throw new IllegalStateException("pool.size(" + attributes.get(POOL_SIZE_ATTRIBUTE) +
+                            ") of extension " + type.getName() + " must be positive!");
+                }
+                ContextCache.Spec.of(attributes, CACHE_SIZE);
+                for (String n : nameList) {
+                    ExtensionDefinition<T> exist = builder.definitions.get(n);
+                    if (exist != null) {
+                        if (!exist.getClassName().equals(className)) {
+                            throw new IllegalStateException("Duplicate extension " +
+                                    type.getName() + " name " + n +
+                                    " on " + exist.getClassName() + " and " + className);
+                        }
+                    } else {
+                        ExtensionDefinition<T> definition = builder.previousExtension(n, className);
+                        builder.definitions.put(n, resolveIfEager(builder, definition != null ? definition
+                                : ExtensionDefinition.ofExtension(n, className, type, classLoader)));
+                    }
+                    builder.scopes.put(n, extScope);
+                    builder.attributes.put(n, attributes);
                 }
             }
         }
+        builder.entries.add(entry);
     }
 
+    /**
+     * 非懒加载模式下，加载配置时就加载、初始化并校验实现类；启动快照中的配置项已经校验过，第一次用到时才加载。
+     */
+    private ExtensionDefinition<T> resolveIfEager(ExtensionRegistry.Builder<T> builder, ExtensionDefinition<T> definition) {
+        return LAZY || builder.snapshotted ? definition : definition.resolve();
+    }
 
+    /**
+     * 缓存的Key：扩展名、Wrapper列表，以及{@link Scope#PROPERTIES}作用域下的上下文。
+     */
+    static final class ExtensionKey {
+
+        final String name;
+
+        final List<String> wrappers;
+
+        private final ExtensionContext context;
+
+        private final int hash;
+
+        ExtensionKey(String name, List<String> wrappers, ExtensionContext context) {
+            this.name = name;
+            this.wrappers = wrappers;
+            this.context = context;
+            int h = name.hashCode();
+            h = 31 * h + wrappers.hashCode();
+            h = 31 * h + (context == null ? 0 : context.hashCode());
+            this.hash = h;
+        }
+
+        /**
+         * 放入缓存前复制一份，避免调用方后续修改参数影响缓存；上下文不可修改，不用复制。
+         */
+        ExtensionKey copy() {
+            return new ExtensionKey(name, new ArrayList<>(wrappers), context);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ExtensionKey)) return false;
+            ExtensionKey that = (ExtensionKey) o;
+            return hash == that.hash
+                    && name.equals(that.name)
+                    && wrappers.equals(that.wrappers)
+                    && Objects.equals(context, that.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * 扩展链缓存的Key：扩展名列表、Wrapper列表，以及有{@link Scope#PROPERTIES}扩展时的上下文。
+     */
+    private static final class ChainKey {
+
+        private final List<String> names;
+
+        private final List<String> wrappers;
+
+        private final ExtensionContext context;
+
+        private final int hash;
+
+        ChainKey(List<String> names, List<String> wrappers, ExtensionContext context) {
+            this.names = names;
+            this.wrappers = wrappers;
+            this.context = context;
+            int h = names.hashCode();
+            h = 31 * h + wrappers.hashCode();
+            h = 31 * h + (context == null ? 0 : context.hashCode());
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ChainKey)) return false;
+            ChainKey that = (ChainKey) o;
+            return hash == that.hash
+                    && names.equals(that.names)
+                    && wrappers.equals(that.wrappers)
+                    && Objects.equals(context, that.context);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
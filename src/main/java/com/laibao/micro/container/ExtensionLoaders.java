@@ -0,0 +1,74 @@
+package com.laibao.micro.container;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按(ClassLoader, 扩展点接口)注册的{@link ExtensionLoader}。
+ * <p/>
+ * ClassLoader按对象标识比较，注册表强引用ClassLoader和ExtensionLoader。ExtensionLoader引用了ClassLoader、
+ * 它加载的实现类和实例，弱引用ClassLoader也不能让条目被回收，所以这里不用弱引用：
+ * 卸载ClassLoader（如租户重新部署）时<b>必须</b>调用{@link ExtensionLoader#dispose(ClassLoader)}，
+ * 否则ClassLoader和它加载的类永远不会被回收。
+ *
+ * @since 1.0
+ */
+final class ExtensionLoaders {
+
+    // Map<Key(class-loader), Map<type, loader>>
+    private static final ConcurrentMap<Key, ConcurrentMap<Class<?>, ExtensionLoader<?>>> LOADERS = new ConcurrentHashMap<>();
+
+    private ExtensionLoaders() {
+    }
+
+    /**
+     * 返回ClassLoader上的ExtensionLoader，没有时注册一个空的Map。
+     */
+    static ConcurrentMap<Class<?>, ExtensionLoader<?>> get(ClassLoader classLoader) {
+        Key key = new Key(classLoader);
+        ConcurrentMap<Class<?>, ExtensionLoader<?>> loaders = LOADERS.get(key);
+        if (loaders == null) {
+            loaders = LOADERS.computeIfAbsent(key, k -> new ConcurrentHashMap<Class<?>, ExtensionLoader<?>>());
+        }
+        return loaders;
+    }
+
+    /**
+     * 移除ClassLoader上的所有ExtensionLoader，没有时返回<code>null</code>。
+     */
+    static ConcurrentMap<Class<?>, ExtensionLoader<?>> remove(ClassLoader classLoader) {
+        return LOADERS.remove(new Key(classLoader));
+    }
+
+    /**
+     * 移除ClassLoader上注册的一个ExtensionLoader，已经被替换时不移除。
+     */
+    static void remove(ClassLoader classLoader, Class<?> type, ExtensionLoader<?> loader) {
+        ConcurrentMap<Class<?>, ExtensionLoader<?>> loaders = LOADERS.get(new Key(classLoader));
+        if (loaders != null) {
+            loaders.remove(type, loader);
+        }
+    }
+
+    /**
+     * 按对象标识比较ClassLoader的Key，ClassLoader的子类可能重写了<code>equals</code>。
+     */
+    private static final class Key {
+
+        private final ClassLoader classLoader;
+
+        Key(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Key && classLoader == ((Key) o).classLoader;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(classLoader);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.laibao.micro.container;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link com.laibao.micro.container.annotation.Scope#POOLED}扩展的空闲实例池。
+ * <p/>
+ * 有界、无锁：每个槽位放一个空闲实例，借出和归还都是对槽位的CAS，池满时归还的实例直接丢弃。
+ * 每个线程从按线程ID散列出的槽位开始查找，同一个线程归还后再借出通常拿回自己刚归还的实例，
+ * 不同线程从不同的槽位开始，减少对同一个槽位的竞争。相邻槽位在数组中隔开{@link #SLOT_SPACING}个元素，避免伪共享。
+ * 池满时丢弃的实例，以及{@link #drain()}取出的实例，用{@link Lifecycle}关闭。
+ *
+ * @since 1.0
+ */
+final class ExtensionPool<T> {
+
+    /**
+     * 没有配置<code>pool.size</code>时池的大小。
+     */
+    static final int DEFAULT_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    // 16个引用至少64字节，一个缓存行
+    private static final int SLOT_SPACING = 16;
+
+    private final Class<?> type;
+
+    private final String name;
+
+    private final int size;
+
+    private final AtomicReferenceArray<T> slots;
+
+    // drain()后池已经退役（重新加载时移除，或ExtensionLoader释放），归还的实例直接关闭
+    private volatile boolean drained;
+
+    ExtensionPool(Class<?> type, String name, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("pool size(" + size + ") <= 0");
+        }
+        this.type = type;
+        this.name = name;
+        this.size = size;
+        this.slots = new AtomicReferenceArray<>(size * SLOT_SPACING);
+    }
+
+    /**
+     * 取出一个空闲实例，没有时返回<code>null</code>。
+     */
+    T poll() {
+        int home = home();
+        for (int i = 0; i < size; i++) {
+            int index = slot(home + i);
+            T instance = slots.get(index);
+            if (instance != null && slots.compareAndSet(index, instance, null)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 放回一个空闲实例。
+     *
+     * @return 池已满时返回<code>false</code>，实例没有放入池中
+     */
+    boolean offer(T instance) {
+        int home = home();
+        for (int i = 0; i < size; i++) {
+            int index = slot(home + i);
+            if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 归还实例，池已满或已经{@link #drain()}时关闭实例。
+     */
+    void release(T instance) {
+        if (drained || !offer(instance)) {
+            discard(instance);
+        } else if (drained) {
+            // 和drain()并发时，放入后再取出一次
+            drain();
+        }
+    }
+
+    /**
+     * 关闭不再放回池中的实例。
+     */
+    void discard(T instance) {
+        Lifecycle.close(type, name, instance);
+    }
+
+    /**
+     * 退役：取出并关闭池中所有空闲的实例，之后归还的实例直接关闭，不再放回池中。
+     */
+    void drain() {
+        drained = true;
+        for (int i = 0; i < size; i++) {
+            T instance = slots.getAndSet(slot(i), null);
+            if (instance != null) {
+                discard(instance);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(int i) {
+        return (i < size ? i : i - size) * SLOT_SPACING;
+    }
+
+    private int home() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % size);
+    }
+}
@@ -0,0 +1,253 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.annotation.Scope;
+import com.laibao.micro.container.helper.StringHelper;
+import com.laibao.micro.container.index.DescriptorEntry;
+
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 扩展点注册表的一个不可变快照：扩展定义、Wrapper定义、Adaptive类、扩展属性、作用域，以及加载配置时的异常。
+ * <p/>
+ * 快照完整构建好后，由{@link ExtensionLoader}通过一次volatile写发布，读方拿到的总是某个完整的版本，
+ * 不会看到构建了一半的Map。重新加载配置时构建新版本替换旧版本，旧版本不做任何修改。
+ *
+ * @see ExtensionLoader#reload()
+ * @since 1.0
+ */
+final class ExtensionRegistry<T> {
+
+    // 最多缓存这么多个扩展名的失败查找，防止用大量不同的错误扩展名查找时占用过多内存
+    private static final int MAX_FAILURES = 1024;
+
+    private final long version;
+
+    // Map<ext-name, ext-definition>
+    private final Map<String, ExtensionDefinition<T>> definitions;
+
+    // Map<wrapper-name, wrapper-definition>
+    private final Map<String, ExtensionDefinition<T>> wrappers;
+
+    private final ExtensionDefinition<T> adaptive;
+
+    private final Map<String, ExtensionAttributes> attributes;
+
+    private final Map<String, Scope> scopes;
+
+    // Map<config-line, exception>
+    private final Map<String, IllegalStateException> loadExceptions;
+
+    // 读过的配置文件，重新加载模式下监听这些文件
+    private final List<URL> sources;
+
+    private final AttributeIndex attributeIndex;
+
+    // Map<ext-name, ordinal>，扩展名排序后从0开始连续编号，扩展名不变时各版本的序号相同
+    private final Map<String, Integer> ordinals;
+
+    // Map<ext-name, diagnostic>，失败查找的诊断信息，第一次失败时生成，随注册表版本一起丢弃
+    private final ConcurrentMap<String, NoSuchExtensionException> failures = new ConcurrentHashMap<>();
+
+    // 加载异常渲染成的诊断信息，和扩展名无关，第一次失败查找时生成；并发时可能生成多次，结果相同
+    private volatile String possibleCauses;
+
+    // 失败查找的扩展名超过MAX_FAILURES后，各次查找共用的原因
+    private volatile NoSuchExtensionException overflowCause;
+
+    private ExtensionRegistry(long version, Builder<T> builder) {
+        this.version = version;
+        this.definitions = Collections.unmodifiableMap(builder.definitions);
+        this.wrappers = Collections.unmodifiableMap(builder.wrappers);
+        this.adaptive = builder.adaptive;
+        this.attributes = Collections.unmodifiableMap(builder.attributes);
+        this.scopes = Collections.unmodifiableMap(builder.scopes);
+        this.loadExceptions = Collections.unmodifiableMap(builder.loadExceptions);
+        this.sources = Collections.unmodifiableList(builder.sources);
+        this.attributeIndex = new AttributeIndex(attributes);
+        String[] names = definitions.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            ordinals.put(names[i], i);
+        }
+        this.ordinals = Collections.unmodifiableMap(ordinals);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    Map<String, ExtensionDefinition<T>> getDefinitions() {
+        return definitions;
+    }
+
+    Map<String, ExtensionDefinition<T>> getWrappers() {
+        return wrappers;
+    }
+
+    ExtensionDefinition<T> getAdaptive() {
+        return adaptive;
+    }
+
+    Map<String, ExtensionAttributes> getAttributes() {
+        return attributes;
+    }
+
+    Map<String, Scope> getScopes() {
+        return scopes;
+    }
+
+    Map<String, IllegalStateException> getLoadExceptions() {
+        return loadExceptions;
+    }
+
+    List<URL> getSources() {
+        return sources;
+    }
+
+    AttributeIndex getAttributeIndex() {
+        return attributeIndex;
+    }
+
+    /**
+     * 扩展名的失败查找的诊断信息，没有缓存时返回<code>null</code>。
+     */
+    NoSuchExtensionException getFailure(String name) {
+        return failures.get(name);
+    }
+
+    void putFailure(String name, NoSuchExtensionException diagnostic) {
+        if (failures.size() < MAX_FAILURES) {
+            failures.putIfAbsent(name, diagnostic);
+        }
+    }
+
+    /**
+     * 缓存的失败查找是否已经达到上限，之后的失败查找不再按扩展名生成诊断信息。
+     */
+    boolean isFailuresFull() {
+        return failures.size() >= MAX_FAILURES;
+    }
+
+    /**
+     * 加载配置时的所有异常渲染成的诊断信息，每个版本只渲染一次；没有加载异常时返回<code>null</code>。
+     */
+    String getPossibleCauses() {
+        String causes = possibleCauses;
+        if (causes == null && !loadExceptions.isEmpty()) {
+            StringBuilder buf = new StringBuilder();
+            int i = 1;
+            for (Map.Entry<String, IllegalStateException> entry : loadExceptions.entrySet()) {
+                buf.append("\r\n(");
+                buf.append(i++);
+                buf.append(") ");
+                buf.append(entry.getKey());
+                buf.append(":\r\n");
+                buf.append(StringHelper.toString(entry.getValue()));
+            }
+            possibleCauses = causes = buf.toString();
+        }
+        return causes;
+    }
+
+    /**
+     * 失败查找的扩展名超过上限后共用的原因，消息是{@link #getPossibleCauses()}，没有加载异常时返回<code>null</code>。
+     */
+    NoSuchExtensionException getOverflowCause(String typeName) {
+        NoSuchExtensionException cause = overflowCause;
+        if (cause == null) {
+            String causes = getPossibleCauses();
+            if (causes == null) {
+                return null;
+            }
+            overflowCause = cause = new NoSuchExtensionException(typeName, null, "possible causes: " + causes, null, false);
+        }
+        return cause;
+    }
+
+    /**
+     * 扩展的序号，没有这个扩展时返回<code>-1</code>。
+     */
+    int getOrdinal(String name) {
+        Integer ordinal = ordinals.get(name);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * 扩展在两个版本中是否相同：定义、作用域和属性都没有变化。
+     */
+    boolean isSameExtension(ExtensionRegistry<T> other, String name) {
+        return definitions.get(name) == other.definitions.get(name)
+                && scopes.get(name) == other.scopes.get(name)
+                && Objects.equals(attributes.get(name), other.attributes.get(name));
+    }
+
+    /**
+     * Wrapper在两个版本中是否相同。
+     */
+    boolean isSameWrapper(ExtensionRegistry<T> other, String name) {
+        return wrappers.get(name) == other.wrappers.get(name);
+    }
+
+    /**
+     * 构建下一个版本的注册表。实现类名没有变化的扩展和Wrapper沿用上一个版本的定义，
+     * 已加载的实现类和实例工厂不需要重新解析。
+     */
+    static final class Builder<T> {
+
+        private final ExtensionRegistry<T> previous;
+
+        final ClassLoader classLoader;
+
+        final Map<String, ExtensionDefinition<T>> definitions = new HashMap<>();
+
+        final Map<String, ExtensionDefinition<T>> wrappers = new LinkedHashMap<>();
+
+        ExtensionDefinition<T> adaptive;
+
+        final Map<String, ExtensionAttributes> attributes = new LinkedHashMap<>();
+
+        final Map<String, Scope> scopes = new HashMap<>();
+
+        final Map<String, IllegalStateException> loadExceptions = new LinkedHashMap<>();
+
+        final List<URL> sources = new ArrayList<>();
+
+        // 加载成功的配置项，记入启动快照
+        final List<DescriptorEntry> entries = new ArrayList<>();
+
+        // 配置项来自启动快照，实现类已经校验过，第一次用到时才加载
+        boolean snapshotted;
+
+        Builder(ExtensionRegistry<T> previous, ClassLoader classLoader) {
+            this.previous = previous;
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * 上一个版本中同名、同实现类的扩展定义，没有时返回<code>null</code>。
+         */
+        ExtensionDefinition<T> previousExtension(String name, String className) {
+            return previous == null ? null : sameClass(previous.definitions.get(name), className);
+        }
+
+        ExtensionDefinition<T> previousWrapper(String name, String className) {
+            return previous == null ? null : sameClass(previous.wrappers.get(name), className);
+        }
+
+        ExtensionDefinition<T> previousAdaptive(String className) {
+            return previous == null ? null : sameClass(previous.adaptive, className);
+        }
+
+        private static <T> ExtensionDefinition<T> sameClass(ExtensionDefinition<T> definition, String className) {
+            return definition != null && definition.getClassName().equals(className) ? definition : null;
+        }
+
+        ExtensionRegistry<T> build() {
+            return new ExtensionRegistry<>(previous == null ? 1 : previous.version + 1, this);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.index.DescriptorEntry;
+import com.laibao.micro.container.index.ExtensionIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_CONF_DIRECTORY;
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_INDEX_RESOURCE;
+
+/**
+ * 启动快照：上次启动时校验通过的各扩展点配置项，按ClassLoader的classpath指纹保存在磁盘上。
+ * <p/>
+ * 指纹由ClassLoader查找资源的全部位置算出：Jar包的路径、大小和修改时间，目录中配置文件和索引文件的名字、大小和修改时间。
+ * 快照文件是<code>&lt;快照目录&gt;/&lt;指纹&gt;.snapshot</code>，通过内存映射读取，内容是文件头加上{@link ExtensionIndex}的二进制格式：
+ * <pre>
+ * int magic, short version, long fingerprint, ExtensionIndex
+ * </pre>
+ * 快照中有的扩展点直接使用快照中的配置项，不查找、解析配置文件，也不在加载时校验实现类（第一次用到时才加载）。
+ * 快照中没有的扩展点照常加载，没有加载失败的配置行时记入快照，{@link #save()}或JVM退出时写回。
+ * classpath有变化时指纹不同，使用新的快照文件；旧的快照文件不会自动删除。
+ * 不能确定ClassLoader全部资源位置时（见{@link #getRoots(ClassLoader)}）不使用快照。
+ * Jar包Manifest中<code>Class-Path</code>引用的Jar包不计入指纹。
+ *
+ * @since 1.0
+ */
+final class ExtensionSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionSnapshot.class);
+
+    private static final int MAGIC = 0x4D43534E; // "MCSN"
+
+    private static final short VERSION = 1;
+
+    private static final String SUFFIX = ".snapshot";
+
+    // 不能使用快照的ClassLoader
+    private static final ExtensionSnapshot UNSUPPORTED = new ExtensionSnapshot(null, 0, ExtensionIndex.EMPTY);
+
+    // WeakHashMap<ClassLoader, ExtensionSnapshot>，快照中只有字符串，不会钉住ClassLoader
+    private static final Map<ClassLoader, ExtensionSnapshot> SNAPSHOTS = new WeakHashMap<>();
+
+    private final Path file;
+
+    private final long fingerprint;
+
+    // 从快照文件读出的配置项
+    private final ExtensionIndex loaded;
+
+    // Map<type-name, entries>，这次启动新加载的扩展点
+    private final ConcurrentMap<String, List<DescriptorEntry>> recorded = new ConcurrentHashMap<>();
+
+    // 上次写回后有新记录的扩展点
+    private volatile boolean dirty;
+
+    private ExtensionSnapshot(Path file, long fingerprint, ExtensionIndex loaded) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.loaded = loaded;
+    }
+
+    /**
+     * 返回ClassLoader的快照，第一次调用时计算指纹、读取快照文件。不能使用快照时返回<code>null</code>。
+     *
+     * @param dir     快照目录
+     * @param lazy    是否懒加载实现类，懒加载时写的快照没有校验过实现类，只在懒加载时使用
+     * @param indexed 是否使用编译期索引
+     */
+    static ExtensionSnapshot getSnapshot(ClassLoader classLoader, String dir, boolean lazy, boolean indexed) {
+        if (classLoader == null) {
+            return null;
+        }
+        synchronized (SNAPSHOTS) {
+            ExtensionSnapshot snapshot = SNAPSHOTS.get(classLoader);
+            if (snapshot == null) {
+                snapshot = open(classLoader, dir, lazy, indexed);
+                SNAPSHOTS.put(classLoader, snapshot);
+                if (snapshot != UNSUPPORTED) {
+                    ShutdownHook.install();
+                }
+            }
+            return snapshot == UNSUPPORTED ? null : snapshot;
+        }
+    }
+
+    /**
+     * 写回所有ClassLoader的快照中新记录的扩展点。
+     */
+    static void saveAll() {
+        List<ExtensionSnapshot> snapshots;
+        synchronized (SNAPSHOTS) {
+            snapshots = new ArrayList<>(SNAPSHOTS.values());
+        }
+        for (ExtensionSnapshot snapshot : snapshots) {
+            if (snapshot != UNSUPPORTED) {
+                snapshot.save();
+            }
+        }
+    }
+
+    /**
+     * 写回ClassLoader的快照后丢弃，见{@link ExtensionLoader#dispose(ClassLoader)}。
+     */
+    static void evict(ClassLoader classLoader) {
+        ExtensionSnapshot snapshot;
+        synchronized (SNAPSHOTS) {
+            snapshot = SNAPSHOTS.remove(classLoader);
+        }
+        if (snapshot != null && snapshot != UNSUPPORTED) {
+            snapshot.save();
+        }
+    }
+
+    /**
+     * 快照中扩展点的配置项，快照中没有这个扩展点时返回<code>null</code>。
+     */
+    List<DescriptorEntry> getEntries(String typeName) {
+        List<DescriptorEntry> entries = loaded.getEntries(typeName);
+        return entries != null ? entries : recorded.get(typeName);
+    }
+
+    /**
+     * 记录校验通过的扩展点配置项。
+     */
+    void record(String typeName, List<DescriptorEntry> entries) {
+        recorded.put(typeName, Collections.unmodifiableList(new ArrayList<>(entries)));
+        dirty = true;
+    }
+
+    /**
+     * 有新记录的扩展点时，把快照写到临时文件后替换快照文件。
+     */
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Map<String, List<DescriptorEntry>> type2Entries = new LinkedHashMap<>();
+        for (String typeName : loaded.getTypeNames()) {
+            type2Entries.put(typeName, loaded.getEntries(typeName));
+        }
+        type2Entries.putAll(recorded);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeShort(VERSION);
+                    out.writeLong(fingerprint);
+                    new ExtensionIndex(type2Entries).write(out);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            logger.info("Saved extension snapshot " + file + " of " + type2Entries.size() + " extension points.");
+        } catch (Throwable t) {
+            logger.warn("Fail to save extension snapshot " + file + ", cause: " + t.getMessage(), t);
+        }
+    }
+
+    private static ExtensionSnapshot open(ClassLoader classLoader, String dir, boolean lazy, boolean indexed) {
+        List<File> roots = getRoots(classLoader);
+        if (roots == null) {
+            return UNSUPPORTED;
+        }
+        long fingerprint;
+        try {
+            fingerprint = fingerprint(roots, lazy, indexed);
+        } catch (Throwable t) {
+            logger.warn("Fail to fingerprint classpath of " + classLoader + ", cause: " + t.getMessage(), t);
+            return UNSUPPORTED;
+        }
+        Path file = Paths.get(dir, String.format("%016x", fingerprint) + SUFFIX);
+        ExtensionIndex loaded = ExtensionIndex.EMPTY;
+        if (Files.isRegularFile(file)) {
+            try {
+                loaded = read(file, fingerprint);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Loaded extension snapshot " + file + " of " + loaded.getTypeNames().size() + " extension points.");
+                }
+            } catch (Throwable t) {
+                logger.warn("Ignore extension snapshot " + file + ", cause: " + t.getMessage(), t);
+            }
+        }
+        return new ExtensionSnapshot(file, fingerprint, loaded);
+    }
+
+    private static ExtensionIndex read(Path file, long fingerprint) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 14 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not an extension snapshot: " + file);
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported extension snapshot version " + version + ": " + file);
+        }
+        if (buffer.getLong() != fingerprint) {
+            throw new IOException("Fingerprint mismatch: " + file);
+        }
+        return ExtensionIndex.read(new ByteBufferInputStream(buffer), file.toString());
+    }
+
+    /**
+     * ClassLoader查找资源的全部位置，按查找顺序排列；不能确定时返回<code>null</code>。
+     */
+    static List<File> getRoots(ClassLoader classLoader) {
+        Deque<ClassLoader> chain = new ArrayDeque<>();
+        for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
+            chain.addFirst(cl);
+        }
+        LinkedHashSet<File> roots = new LinkedHashSet<>();
+        for (ClassLoader cl : chain) {
+            String className = cl.getClass().getName();
+            if (cl instanceof URLClassLoader && !overridesResourceLookup(cl)) {
+                for (URL url : ((URLClassLoader) cl).getURLs()) {
+                    if (!addRoot(url, roots)) {
+                        return null;
+                    }
+                }
+            } else if ("jdk.internal.loader.ClassLoaders$AppClassLoader".equals(className)) {
+                // JDK 9+的App ClassLoader
+                if (System.getProperty("jdk.module.path") != null) {
+                    return null;
+                }
+                String classPath = System.getProperty("java.class.path", "");
+                for (String path : classPath.split(File.pathSeparator)) {
+                    if (path.length() > 0) {
+                        roots.add(new File(path).getAbsoluteFile());
+                    }
+                }
+            } else if (!"jdk.internal.loader.ClassLoaders$PlatformClassLoader".equals(className)) {
+                // JDK 9+的Platform ClassLoader中只有JDK的模块；其它ClassLoader不知道资源位置
+                return null;
+            }
+        }
+        return new ArrayList<>(roots);
+    }
+
+    private static boolean addRoot(URL url, Set<File> roots) {
+        if (!"file".equals(url.getProtocol())) {
+            return false;
+        }
+        try {
+            roots.add(new File(url.toURI()));
+            return true;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * URLClassLoader的子类重写了资源查找方法时，资源位置不一定是{@link URLClassLoader#getURLs()}。
+     */
+    private static boolean overridesResourceLookup(ClassLoader classLoader) {
+        for (Class<?> clazz = classLoader.getClass(); clazz != URLClassLoader.class; clazz = clazz.getSuperclass()) {
+            for (Method method : clazz.getDeclaredMethods()) {
+                String name = method.getName();
+                if (("getResources".equals(name) || "findResources".equals(name)
+                        || "getResource".equals(name) || "findResource".equals(name))
+                        && method.getParameterCount() == 1) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * classpath的64位FNV-1a指纹。
+     */
+    private static long fingerprint(List<File> roots, boolean lazy, boolean indexed) {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.add(VERSION).add(lazy ? 1 : 0).add(indexed ? 1 : 0);
+        for (File root : roots) {
+            fingerprint.add(root.getPath());
+            if (root.isFile()) {
+                fingerprint.add(root.length()).add(root.lastModified());
+            } else if (root.isDirectory()) {
+                addFile(fingerprint, new File(root, EXTENSION_INDEX_RESOURCE));
+                File[] files = new File(root, EXTENSION_CONF_DIRECTORY).listFiles();
+                if (files != null) {
+                    Arrays.sort(files);
+                    for (File file : files) {
+                        addFile(fingerprint, file);
+                    }
+                }
+            } else {
+                fingerprint.add(-1);
+            }
+        }
+        return fingerprint.value;
+    }
+
+    private static void addFile(Fingerprint fingerprint, File file) {
+        if (file.isFile()) {
+            fingerprint.add(file.getName()).add(file.length()).add(file.lastModified());
+        }
+    }
+
+    private static final class Fingerprint {
+
+        long value = 0xcbf29ce484222325L;
+
+        Fingerprint add(String s) {
+            for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+                addByte(b & 0xff);
+            }
+            // 分隔相邻的字符串
+            addByte(0);
+            return this;
+        }
+
+        Fingerprint add(long v) {
+            for (int i = 0; i < 8; i++) {
+                addByte((int) (v >>> (i * 8)) & 0xff);
+            }
+            return this;
+        }
+
+        private void addByte(int b) {
+            value ^= b;
+            value *= 0x100000001b3L;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private static final class ShutdownHook {
+
+        static {
+            Thread hook = new Thread(ExtensionSnapshot::saveAll, "micro-container-snapshot");
+            try {
+                Runtime.getRuntime().addShutdownHook(hook);
+            } catch (IllegalStateException e) {
+                // JVM正在退出
+            }
+        }
+
+        static void install() {
+            // 触发类初始化
+        }
+    }
+}
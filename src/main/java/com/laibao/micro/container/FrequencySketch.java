@@ -0,0 +1,102 @@
+package com.laibao.micro.container;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TinyLFU的访问频率估计：Count-Min Sketch，每个Key在4个4位的计数器上计数，取最小值，最大15。
+ * <p/>
+ * 累计计数达到容量的10倍后所有计数器减半，旧的访问逐渐失去影响。
+ * <p/>
+ * 缓存命中时在缓存的锁外计数，多个线程同时计数。一个long中有16个计数器，读出、加一、写回分开做时，
+ * 两个线程可能把同一个计数器从15加到16，进位到相邻的计数器。这里每个计数器都用CAS加一，到15后不再加；
+ * 减半也逐个long用CAS，不会丢失同时进行的计数。累计计数减半时重新从容量的5倍开始，
+ * 这期间同时进行的几次计数可能不计入累计，只让下次减半略晚一点。
+ *
+ * @since 1.0
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    // 最多8M字节
+    private static final int MAX_WORDS = 1 << 20;
+
+    // 每个long放16个4位的计数器，每个Key平均一个long：计数器太少时一次扫过的Key就能把计数器填满
+    final AtomicLongArray table;
+
+    private final int counterMask;
+
+    private final int sampleSize;
+
+    private final AtomicInteger additions = new AtomicInteger();
+
+    FrequencySketch(int capacity) {
+        int words = 1;
+        while (words < Math.min(Math.max(capacity, 64), MAX_WORDS)) {
+            words <<= 1;
+        }
+        this.table = new AtomicLongArray(words);
+        this.counterMask = words * 16 - 1;
+        this.sampleSize = Math.max(capacity, 64) * 10;
+    }
+
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            frequency = Math.min(frequency, (int) ((table.get(index >>> 4) >>> ((index & 15) << 2)) & 0xFL));
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            added |= incrementCounter(index >>> 4, (index & 15) << 2);
+        }
+        if (added) {
+            int n = additions.incrementAndGet();
+            // 只有一个线程能把累计计数改回去，由它减半
+            if (n >= sampleSize && additions.compareAndSet(n, sampleSize / 2)) {
+                reset();
+            }
+        }
+    }
+
+    /**
+     * 计数器加一，已经是15时不变。
+     *
+     * @return 是否加了一
+     */
+    private boolean incrementCounter(int word, int shift) {
+        for (; ; ) {
+            long value = table.get(word);
+            if (((value >>> shift) & 0xFL) == 15) {
+                return false;
+            }
+            if (table.compareAndSet(word, value, value + (1L << shift))) {
+                return true;
+            }
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length(); i++) {
+            long value;
+            do {
+                value = table.get(i);
+            } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+        }
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+}
@@ -0,0 +1,117 @@
+package com.laibao.micro.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static com.laibao.micro.container.helper.ExtensionHelper.withExtensionAnnotation;
+
+/**
+ * 一个实现类的注入计划：该类上所有可注入扩展点的<code>setXxx</code>方法。
+ * <p/>
+ * 每个实现类只扫描一次{@link Class#getMethods()}，之后注入直接按数组调用{@link MethodHandle}。
+ *
+ * @since 1.0
+ */
+final class InjectionPlan {
+
+    private static final Logger logger = LoggerFactory.getLogger(InjectionPlan.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<?>[] dependencyTypes;
+
+    // 去重后的注入扩展点，依赖图的出边
+    private final List<Class<?>> distinctDependencyTypes;
+
+    private final String[] setterNames;
+
+    // (Object instance, Object dependency)void
+    private final MethodHandle[] setters;
+
+    private InjectionPlan(Class<?>[] dependencyTypes, String[] setterNames, MethodHandle[] setters) {
+        this.dependencyTypes = dependencyTypes;
+        this.distinctDependencyTypes = Collections.unmodifiableList(
+                new ArrayList<>(new LinkedHashSet<>(Arrays.asList(dependencyTypes))));
+        this.setterNames = setterNames;
+        this.setters = setters;
+    }
+
+    /**
+     * 扫描实现类，生成注入计划。
+     *
+     * @param clazz 实现类
+     * @param type  实现类所属的扩展点，不注入扩展点自身
+     * @throws IllegalStateException setter方法不能访问
+     */
+    static InjectionPlan of(Class<?> clazz, Class<?> type) {
+        List<Method> methods = new ArrayList<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().startsWith("set")
+                    && method.getParameterTypes().length == 1
+                    && Modifier.isPublic(method.getModifiers())
+                    && !Modifier.isStatic(method.getModifiers())) {
+                Class<?> pt = method.getParameterTypes()[0];
+                if (pt.isInterface() && withExtensionAnnotation(pt)) {
+                    if (pt.equals(type)) {
+                        logger.warn("Ignore self set(" + method + ") for class(" +
+                                clazz + ") when inject.");
+                        continue;
+                    }
+                    methods.add(method);
+                }
+            }
+        }
+
+        int size = methods.size();
+        Class<?>[] dependencyTypes = new Class<?>[size];
+        String[] setterNames = new String[size];
+        MethodHandle[] setters = new MethodHandle[size];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < size; i++) {
+            Method method = methods.get(i);
+            dependencyTypes[i] = method.getParameterTypes()[0];
+            setterNames[i] = method.getName();
+            try {
+                setters[i] = lookup.unreflect(method).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Can not access inject method " + method.getName() +
+                        " of extension implementation " + clazz + ", cause: " + e.getMessage(), e);
+            }
+        }
+        return new InjectionPlan(dependencyTypes, setterNames, setters);
+    }
+
+    int size() {
+        return setters.length;
+    }
+
+    Class<?> dependencyType(int index) {
+        return dependencyTypes[index];
+    }
+
+    /**
+     * 注入的扩展点，去掉了重复的类型。
+     */
+    List<Class<?>> dependencyTypes() {
+        return distinctDependencyTypes;
+    }
+
+    String setterName(int index) {
+        return setterNames[index];
+    }
+
+    void inject(int index, Object instance, Object dependency) throws Throwable {
+        setters[index].invokeExact(instance, dependency);
+    }
+}
@@ -0,0 +1,185 @@
+package com.laibao.micro.container;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * 扩展实例的缓存槽位，按扩展名、Wrapper列表和{@link ExtensionContext}查找。
+ * <p/>
+ * 最常见的两种查找不创建任何Key对象：没有Wrapper的扩展直接按扩展名查找；
+ * 没有Wrapper的{@link com.laibao.micro.container.annotation.Scope#PROPERTIES}扩展先按扩展名、再按上下文查找，
+ * 上下文不可修改、哈希值已经算好，直接作为Key。有Wrapper时按(扩展名, Wrapper列表, 上下文)查找。
+ * <p/>
+ * 按上下文缓存的实例每个扩展名一个{@link ContextCache}，可以按扩展的<code>cache.*</code>属性限制数量和权重。
+ *
+ * @since 1.0
+ */
+final class InstanceCache<T> {
+
+    private final Class<T> type;
+
+    // 扩展名 -> 缓存配置，没有配置时返回null
+    private final Function<String, ContextCache.Spec> specs;
+
+    // Map<ext-name, instance>，没有Wrapper、不按properties缓存的扩展
+    private final ConcurrentMap<String, Latch<T>> plain = new ConcurrentHashMap<>();
+
+    // Map<ext-name, Map<context or (ext-name, wrappers, context), instance>>，按properties缓存的扩展
+    private final ConcurrentMap<String, ContextCache<T>> contextual = new ConcurrentHashMap<>();
+
+    // Map<(ext-name, wrappers), instance>，有Wrapper、不按properties缓存的扩展
+    private final ConcurrentMap<ExtensionLoader.ExtensionKey, Latch<T>> wrapped = new ConcurrentHashMap<>();
+
+    InstanceCache(Class<T> type, Function<String, ContextCache.Spec> specs) {
+        this.type = type;
+        this.specs = specs;
+    }
+
+    /**
+     * 返回实例的槽位，没有时返回<code>null</code>。
+     *
+     * @param context 按properties缓存的扩展的上下文，其它扩展为<code>null</code>
+     */
+    Latch<T> get(String name, ExtensionContext context, List<String> wrappers) {
+        if (context == null) {
+            return wrappers.isEmpty() ? plain.get(name) : wrapped.get(new ExtensionLoader.ExtensionKey(name, wrappers, null));
+        }
+        ContextCache<T> latches = contextual.get(name);
+        if (latches == null) {
+            return null;
+        }
+        return latches.get(wrappers.isEmpty() ? context : new ExtensionLoader.ExtensionKey(name, wrappers, context));
+    }
+
+    /**
+     * 没有Wrapper、按properties缓存的扩展的槽位，用Map查找，没有时返回<code>null</code>。
+     * 上下文的哈希值和相等都符合{@link Map}的约定，和内容相同的Map可以互相查找。
+     */
+    Latch<T> get(String name, Map<String, String> properties) {
+        ContextCache<T> latches = contextual.get(name);
+        return latches == null ? null : latches.get(properties);
+    }
+
+    /**
+     * 返回实例的槽位，没有时创建一个空的槽位。
+     *
+     * @see #get(String, ExtensionContext, List)
+     */
+    Latch<T> getOrCreate(String name, ExtensionContext context, List<String> wrappers) {
+        Latch<T> latch = get(name, context, wrappers);
+        if (latch != null) {
+            return latch;
+        }
+        if (context != null) {
+            ContextCache<T> latches = contextual.get(name);
+            if (latches == null) {
+                ContextCache<T> created = new ContextCache<>(type, name, specs.apply(name));
+                latches = contextual.putIfAbsent(name, created);
+                if (latches == null) {
+                    latches = created;
+                }
+            }
+            return latches.getOrCreate(wrappers.isEmpty() ? context
+                    : new ExtensionLoader.ExtensionKey(name, new ArrayList<>(wrappers), context));
+        }
+        // 用putIfAbsent的返回值，不再get一次：两次调用之间槽位可能被重新加载移除，get会返回null
+        Latch<T> created = new Latch<>();
+        if (!wrappers.isEmpty()) {
+            latch = wrapped.putIfAbsent(new ExtensionLoader.ExtensionKey(name, new ArrayList<>(wrappers), null), created);
+        } else {
+            latch = plain.putIfAbsent(name, created);
+        }
+        return latch != null ? latch : created;
+    }
+
+    /**
+     * 槽位中新建了实例，在槽位的锁外调用。有权重上限时记录权重，可能淘汰其它实例。
+     */
+    void created(String name, ExtensionContext context, Latch<T> latch, T instance) {
+        if (context != null) {
+            ContextCache<T> latches = contextual.get(name);
+            if (latches != null) {
+                latches.created(latch, instance);
+            }
+        }
+    }
+
+    /**
+     * 移除满足条件的槽位，并清空槽位中的实例，持有槽位的句柄重新解析，正在等锁创建实例的线程重新查找槽位。
+     *
+     * @param condition 参数是扩展名和Wrapper列表
+     */
+    void removeIf(BiPredicate<String, List<String>> condition) {
+        removeIf(condition, false);
+    }
+
+    /**
+     * @param close 是否关闭移除的实例
+     */
+    private void removeIf(BiPredicate<String, List<String>> condition, boolean close) {
+        List<String> noWrappers = Collections.emptyList();
+        for (Iterator<Map.Entry<String, Latch<T>>> iterator = plain.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Latch<T>> entry = iterator.next();
+            if (condition.test(entry.getKey(), noWrappers)) {
+                iterator.remove();
+                retire(type, entry.getKey(), entry.getValue(), close);
+            }
+        }
+        for (Iterator<Map.Entry<String, ContextCache<T>>> iterator = contextual.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, ContextCache<T>> entry = iterator.next();
+            String name = entry.getKey();
+            if (condition.test(name, noWrappers)) {
+                // 扩展本身有变化，整个移除，新的缓存使用新的cache.*属性
+                iterator.remove();
+                entry.getValue().removeIf(key -> true, close);
+            } else {
+                entry.getValue().removeIf(key -> key instanceof ExtensionLoader.ExtensionKey
+                        && condition.test(name, ((ExtensionLoader.ExtensionKey) key).wrappers), close);
+            }
+        }
+        for (Iterator<Map.Entry<ExtensionLoader.ExtensionKey, Latch<T>>> iterator = wrapped.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<ExtensionLoader.ExtensionKey, Latch<T>> entry = iterator.next();
+            if (condition.test(entry.getKey().name, entry.getKey().wrappers)) {
+                iterator.remove();
+                retire(type, entry.getKey().name, entry.getValue(), close);
+            }
+        }
+    }
+
+    /**
+     * 清空所有槽位。
+     *
+     * @param close 是否关闭缓存的实例
+     */
+    void clear(boolean close) {
+        removeIf((name, wrappers) -> true, close);
+    }
+
+    /**
+     * 清空已经移除的槽位，等正在创建的实例创建完。
+     *
+     * @param close 是否关闭槽位中的实例
+     */
+    static <T> void retire(Class<?> type, String name, Latch<T> latch, boolean close) {
+        T instance;
+        T core;
+        latch.lock();
+        try {
+            instance = latch.get();
+            core = latch.getCore();
+            latch.retire();
+        } finally {
+            latch.unlock();
+        }
+        if (close && instance != null) {
+            Lifecycle.close(type, name, instance, core != null ? core : instance);
+        }
+    }
+}
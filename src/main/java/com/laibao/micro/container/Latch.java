@@ -0,0 +1,89 @@
+package com.laibao.micro.container;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 只初始化一次的值，和{@link com.laibao.micro.container.utils.Holder}一样读是一次volatile读。
+ * <p/>
+ * 初始化（加载配置、创建扩展实例）可能做I/O、执行扩展的构造函数，用{@link ReentrantLock}而不是<code>synchronized</code>串行化，
+ * 在虚拟线程上初始化时等待不会占住载体线程（pinning）。
+ *
+ * @since 1.0
+ */
+class Latch<T> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile T value;
+
+    // Wrapper链最里面的扩展实例，关闭时用；在锁内写、锁内读
+    private T core;
+
+    // 槽位已经从缓存中移除，在锁内写、锁内读
+    private boolean retired;
+
+    T get() {
+        return value;
+    }
+
+    /**
+     * 在{@link #lock()}和{@link #unlock()}之间调用。
+     */
+    void set(T value) {
+        set(value, value);
+    }
+
+    /**
+     * 在{@link #lock()}和{@link #unlock()}之间调用。
+     *
+     * @param core 带Wrapper时Wrapper链最里面的扩展实例，没有Wrapper时和<code>value</code>相同
+     */
+    void set(T value, T core) {
+        this.value = value;
+        this.core = core;
+    }
+
+    /**
+     * 在{@link #lock()}和{@link #unlock()}之间调用。
+     */
+    T getCore() {
+        return core;
+    }
+
+    /**
+     * 清空值，并标记槽位已经从缓存中移除。在{@link #lock()}和{@link #unlock()}之间调用。
+     * <p/>
+     * 移除前已经拿到槽位、还在等锁的线程，取得锁后用{@link #isRetired()}发现槽位已经移除，
+     * 要重新查找槽位，不能把新建的实例放进没有人再能找到的槽位（否则单例会被创建两次）。
+     */
+    void retire() {
+        set(null, null);
+        this.retired = true;
+    }
+
+    /**
+     * 在{@link #lock()}和{@link #unlock()}之间调用。
+     */
+    boolean isRetired() {
+        return retired;
+    }
+
+    void lock() {
+        lock.lock();
+    }
+
+    boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    /**
+     * 有线程正在初始化。
+     */
+    boolean isLocked() {
+        return lock.isLocked();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+}
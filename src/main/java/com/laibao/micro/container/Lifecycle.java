@@ -0,0 +1,41 @@
+package com.laibao.micro.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 关闭容器不再持有的扩展实例：被淘汰的缓存实例、池满时丢弃的实例，以及{@link ExtensionLoader#destroy()}时缓存的所有实例。
+ * <p/>
+ * 带Wrapper的实例按装饰器的约定关闭：最外层实现了{@link AutoCloseable}时只关闭最外层，由它关闭被包装的实例，
+ * 和{@link java.io.FilterInputStream}一样；否则关闭最里面的扩展实例。关闭失败只记录日志，不抛出异常。
+ *
+ * @since 1.0
+ */
+final class Lifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(Lifecycle.class);
+
+    private Lifecycle() {
+    }
+
+    static void close(Class<?> type, String name, Object instance) {
+        close(type, name, instance, instance);
+    }
+
+    /**
+     * @param instance 最外层的实例
+     * @param core     Wrapper链最里面的扩展实例，没有Wrapper时和<code>instance</code>相同
+     */
+    static void close(Class<?> type, String name, Object instance, Object core) {
+        Object closeable = instance instanceof AutoCloseable ? instance : core;
+        if (!(closeable instanceof AutoCloseable)) {
+            return;
+        }
+        try {
+            ((AutoCloseable) closeable).close();
+        } catch (Throwable t) {
+            logger.warn("Fail to close extension " + name + " of extension point " + type.getName() +
+                    ", cause: " + t.getMessage(), t);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.helper.StringHelper;
+import com.laibao.micro.container.metrics.ExtensionMetrics;
+import com.laibao.micro.container.metrics.MetricType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_METRICS_KEY;
+import static com.laibao.micro.container.constants.CommonConstants.NAME_SEPARATOR;
+
+/**
+ * 按<code>-Dmicro.container.metrics</code>配置的{@link ExtensionMetrics}。
+ * <p/>
+ * 没有配置时{@link #ENABLED}是<code>false</code>，JIT会把所有记录指标的分支去掉。
+ * 指标实现本身也通过{@link ExtensionLoader}加载，初始化期间同一线程上读到的{@link #ENABLED}是<code>false</code>，不会递归。
+ *
+ * @since 1.0
+ */
+final class Metrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    static final ExtensionMetrics METRICS;
+
+    static final boolean ENABLED;
+
+    static {
+        ExtensionMetrics metrics = null;
+        String config = System.getProperty(EXTENSION_METRICS_KEY);
+        if (!StringHelper.isBlank(config)) {
+            try {
+                ExtensionLoader<ExtensionMetrics> loader = ExtensionLoader.getExtensionLoader(ExtensionMetrics.class, Metrics.class.getClassLoader());
+                List<ExtensionMetrics> list = new ArrayList<>();
+                for (String name : NAME_SEPARATOR.split(config.trim())) {
+                    list.add(loader.getExtension(name));
+                }
+                metrics = list.size() == 1 ? list.get(0) : new CompositeMetrics(list);
+            } catch (Throwable t) {
+                logger.error("Fail to load extension metrics(" + config + "), metrics disabled.", t);
+                metrics = null;
+            }
+        }
+        METRICS = metrics;
+        ENABLED = metrics != null;
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * 触发初始化，在取得任何扩展点的锁之前调用。
+     */
+    static void initialize() {
+    }
+
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    static void record(MetricType metric, Class<?> type, String name, long start) {
+        if (ENABLED) {
+            METRICS.record(metric, type, name, System.nanoTime() - start);
+        }
+    }
+
+    static void count(MetricType metric, Class<?> type, String name) {
+        if (ENABLED) {
+            METRICS.record(metric, type, name, 0L);
+        }
+    }
+
+    static void failure(Class<?> type, String name, Throwable cause) {
+        if (ENABLED) {
+            METRICS.recordFailure(type, name, cause);
+        }
+    }
+
+    private static final class CompositeMetrics implements ExtensionMetrics {
+
+        private final ExtensionMetrics[] metrics;
+
+        CompositeMetrics(List<ExtensionMetrics> metrics) {
+            this.metrics = metrics.toArray(new ExtensionMetrics[0]);
+        }
+
+        @Override
+        public void record(MetricType metric, Class<?> type, String name, long nanos) {
+            for (ExtensionMetrics m : metrics) {
+                m.record(metric, type, name, nanos);
+            }
+        }
+
+        @Override
+        public void recordFailure(Class<?> type, String name, Throwable cause) {
+            for (ExtensionMetrics m : metrics) {
+                m.recordFailure(type, name, cause);
+            }
+        }
+    }
+}
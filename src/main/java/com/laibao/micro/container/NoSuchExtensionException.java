@@ -0,0 +1,54 @@
+package com.laibao.micro.container;
+
+/**
+ * 没有指定名字的扩展，或是扩展的实现类加载失败。
+ * <p/>
+ * 诊断信息（包括加载配置时的相关异常）按扩展名在每个注册表版本中只生成一次，之后的失败查找直接复用，
+ * 配置错误的调用方反复查找时不会每次都遍历、渲染加载异常。加载异常在每个注册表版本中只渲染一次；
+ * 失败查找的扩展名超过1024个后不再按扩展名匹配加载异常，渲染好的加载异常作为各次查找共用的{@link #getCause() cause}。
+ * 设置<code>-Dmicro.container.stacktrace=false</code>时不填充异常栈，失败查找只是创建一个对象。
+ *
+ * @see ExtensionLoader#findExtension(String)
+ * @since 1.0
+ */
+public final class NoSuchExtensionException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String extensionType;
+
+    private final String extensionName;
+
+    NoSuchExtensionException(String extensionType, String extensionName, String message, Throwable cause, boolean stackTrace) {
+        super(message, cause);
+        this.extensionType = extensionType;
+        this.extensionName = extensionName;
+        if (stackTrace) {
+            super.fillInStackTrace();
+        }
+    }
+
+    /**
+     * 扩展点接口名。
+     */
+    public String getExtensionType() {
+        return extensionType;
+    }
+
+    public String getExtensionName() {
+        return extensionName;
+    }
+
+    /**
+     * 同样诊断信息的新异常，异常栈是这次调用的。
+     */
+    NoSuchExtensionException copy(boolean stackTrace) {
+        return new NoSuchExtensionException(extensionType, extensionName, getMessage(), getCause(), stackTrace);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        // 父类构造函数调用时还不知道是否需要异常栈，在构造函数中按需填充
+        return this;
+    }
+}
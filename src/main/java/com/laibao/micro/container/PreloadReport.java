@@ -0,0 +1,101 @@
+package com.laibao.micro.container;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预加载的结果：预加载了哪些扩展点、每个扩展点的耗时，以及失败的扩展点和扩展。
+ * <p/>
+ * 失败按Key记录：扩展点本身失败（类加载失败、不是扩展点接口）时Key是扩展点接口名，
+ * 扩展失败时Key是<code>扩展点接口名:扩展名</code>，配置行解析失败时Key是<code>扩展点接口名:配置行</code>。
+ *
+ * @see ExtensionLoader#preload(Collection, java.util.concurrent.Executor, boolean)
+ * @since 1.0
+ */
+public final class PreloadReport {
+
+    private final List<Class<?>> types;
+
+    private final Map<Class<?>, Long> loadNanos;
+
+    private final Map<Class<?>, Long> instantiateNanos;
+
+    private final Map<String, Throwable> failures;
+
+    private final int waves;
+
+    private final long elapsedNanos;
+
+    PreloadReport(List<Class<?>> types, Map<Class<?>, Long> loadNanos, Map<Class<?>, Long> instantiateNanos,
+                  Map<String, Throwable> failures, int waves, long elapsedNanos) {
+        this.types = Collections.unmodifiableList(new ArrayList<>(types));
+        this.loadNanos = Collections.unmodifiableMap(new HashMap<>(loadNanos));
+        this.instantiateNanos = Collections.unmodifiableMap(new HashMap<>(instantiateNanos));
+        this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+        this.waves = waves;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * 预加载了的扩展点，包括被注入而一起预加载的扩展点。
+     */
+    public List<Class<?>> getTypes() {
+        return types;
+    }
+
+    /**
+     * 加载扩展点配置和实现类的耗时，没有预加载这个扩展点时返回<code>-1</code>。
+     */
+    public long getLoadTime(Class<?> type, TimeUnit unit) {
+        Long nanos = loadNanos.get(type);
+        return nanos == null ? -1 : unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 创建扩展点单例实例的耗时，没有创建实例时返回<code>-1</code>。
+     */
+    public long getInstantiateTime(Class<?> type, TimeUnit unit) {
+        Long nanos = instantiateNanos.get(type);
+        return nanos == null ? -1 : unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 失败的扩展点和扩展，按Key排序。
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * 按注入依赖分成的创建实例的批数，同一批的扩展点并行创建实例；没有创建实例时是0。
+     */
+    public int getWaves() {
+        return waves;
+    }
+
+    /**
+     * 预加载的总耗时。
+     */
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("Preloaded ").append(types.size()).append(" extension points in ")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms");
+        if (waves > 0) {
+            buf.append(", instantiated in ").append(waves).append(" waves");
+        }
+        buf.append(", ").append(failures.size()).append(" failures");
+        for (Map.Entry<String, Throwable> entry : failures.entrySet()) {
+            buf.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue().getMessage());
+        }
+        return buf.toString();
+    }
+}
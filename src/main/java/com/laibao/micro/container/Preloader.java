@@ -0,0 +1,196 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.index.ExtensionIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static com.laibao.micro.container.helper.ExtensionHelper.checkExtensionType;
+
+/**
+ * 并行预加载一组扩展点。
+ * <p/>
+ * 分两个阶段，每个阶段内各扩展点的任务并行执行，阶段之间等待：
+ * <ol>
+ * <li>加载：读取配置、加载并校验所有实现类和Wrapper类、生成注入计划。
+ * 实现类注入的扩展点如果不在这组扩展点中，也一起加载，直到没有新的扩展点。</li>
+ * <li>创建实例（可选）：按注入依赖把扩展点排成若干批，被注入的扩展点所在的批先创建，
+ * 同一批内并行创建单例扩展的实例；互相注入的扩展点放在同一批。</li>
+ * </ol>
+ * 不同扩展点的{@link ExtensionLoader}各自加锁，互不阻塞。
+ *
+ * @since 1.0
+ */
+final class Preloader {
+
+    private static final Logger logger = LoggerFactory.getLogger(Preloader.class);
+
+    private final ClassLoader classLoader;
+
+    private final Executor executor;
+
+    private final boolean instantiate;
+
+    // Map<type, injected-types>
+    private final ConcurrentMap<Class<?>, Set<Class<?>>> dependencies = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, Long> loadNanos = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<?>, Long> instantiateNanos = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    Preloader(ClassLoader classLoader, Executor executor, boolean instantiate) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+        this.classLoader = classLoader;
+        this.executor = executor;
+        this.instantiate = instantiate;
+    }
+
+    /**
+     * ClassLoader上所有已知扩展点的接口名，即编译期索引中的扩展点。
+     */
+    static Set<String> getTypeNames(ClassLoader classLoader) {
+        return new LinkedHashSet<>(ExtensionIndex.getIndex(classLoader).getTypeNames());
+    }
+
+    PreloadReport preloadAll() {
+        long start = System.nanoTime();
+        List<Class<?>> types = new ArrayList<>();
+        for (String typeName : getTypeNames(classLoader)) {
+            try {
+                Class<?> type = Class.forName(typeName, false, classLoader);
+                checkExtensionType(type);
+                types.add(type);
+            } catch (Throwable t) {
+                failures.put(typeName, t);
+            }
+        }
+        return preload(types, start);
+    }
+
+    PreloadReport preload(Collection<Class<?>> types) {
+        if (types == null) {
+            throw new IllegalArgumentException("types == null");
+        }
+        long start = System.nanoTime();
+        List<Class<?>> checked = new ArrayList<>();
+        for (Class<?> type : types) {
+            try {
+                checkExtensionType(type);
+                checked.add(type);
+            } catch (IllegalArgumentException e) {
+                failures.put(String.valueOf(type == null ? null : type.getName()), e);
+            }
+        }
+        return preload(checked, start);
+    }
+
+    private PreloadReport preload(List<Class<?>> types, long start) {
+        List<Class<?>> loaded = new ArrayList<>();
+        Set<Class<?>> pending = new LinkedHashSet<>(types);
+        while (!pending.isEmpty()) {
+            List<Class<?>> batch = new ArrayList<>(pending);
+            runAll(batch, this::load);
+            loaded.addAll(batch);
+            // 注入的扩展点也需要加载
+            pending.clear();
+            for (Class<?> type : batch) {
+                Set<Class<?>> injected = dependencies.get(type);
+                if (injected != null) {
+                    pending.addAll(injected);
+                }
+            }
+            pending.removeAll(loaded);
+        }
+
+        int waves = 0;
+        if (instantiate) {
+            for (List<Class<?>> wave : sortByDependencies(loaded)) {
+                runAll(wave, this::instantiate);
+                waves++;
+            }
+        }
+        PreloadReport report = new PreloadReport(loaded, loadNanos, instantiateNanos, failures, waves,
+                System.nanoTime() - start);
+        if (logger.isDebugEnabled()) {
+            logger.debug(report.toString());
+        }
+        return report;
+    }
+
+    private void load(Class<?> type) {
+        long start = System.nanoTime();
+        try {
+            Map<String, Throwable> errors = new LinkedHashMap<>();
+            dependencies.put(type, ExtensionLoader.getExtensionLoader(type, classLoader).preloadClasses(errors));
+            record(type, errors);
+        } catch (Throwable t) {
+            failures.put(type.getName(), t);
+        } finally {
+            loadNanos.put(type, System.nanoTime() - start);
+        }
+    }
+
+    private void instantiate(Class<?> type) {
+        long start = System.nanoTime();
+        try {
+            Map<String, Throwable> errors = new LinkedHashMap<>();
+            ExtensionLoader.getExtensionLoader(type, classLoader).preloadInstances(errors);
+            record(type, errors);
+        } catch (Throwable t) {
+            failures.put(type.getName(), t);
+        } finally {
+            instantiateNanos.put(type, System.nanoTime() - start);
+        }
+    }
+
+    private void record(Class<?> type, Map<String, Throwable> errors) {
+        for (Map.Entry<String, Throwable> entry : errors.entrySet()) {
+            failures.put(type.getName() + ":" + entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 按注入依赖分批：每一批只依赖前面的批。只剩互相注入的扩展点时，把它们放在同一批。
+     */
+    private List<List<Class<?>>> sortByDependencies(List<Class<?>> types) {
+        List<List<Class<?>>> waves = new ArrayList<>();
+        Set<Class<?>> done = new HashSet<>();
+        List<Class<?>> remaining = new ArrayList<>(types);
+        while (!remaining.isEmpty()) {
+            List<Class<?>> wave = new ArrayList<>();
+            for (Class<?> type : remaining) {
+                Set<Class<?>> injected = dependencies.get(type);
+                if (injected == null || done.containsAll(injected)) {
+                    wave.add(type);
+                }
+            }
+            if (wave.isEmpty()) {
+                logger.warn("Cyclic injection among extension points " + remaining + ", instantiate them in one wave.");
+                wave.addAll(remaining);
+            }
+            remaining.removeAll(wave);
+            done.addAll(wave);
+            waves.add(wave);
+        }
+        return waves;
+    }
+
+    private void runAll(List<Class<?>> types, Consumer<Class<?>> task) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[types.size()];
+        for (int i = 0; i < futures.length; i++) {
+            final Class<?> type = types.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> task.accept(type), executor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,317 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.annotation.Scope;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次扩展解析：从获取一个扩展开始，到它的依赖都创建、注入完为止，绑定在当前线程上。
+ * <p/>
+ * 创建扩展前先沿着注入依赖图做一次深度优先遍历：图的边来自每个实现类缓存的{@link InjectionPlan}，
+ * 依赖的扩展名和注入时一样由properties决定。有循环依赖时在创建任何实例之前抛出异常，异常中给出环上的路径，
+ * 不会递归到栈溢出。遍历时每个依赖只访问一次，共用的子图不重复遍历。检查过的依赖图按遍历时用到的properties值缓存，
+ * 任何扩展点重新加载或释放后失效。
+ * <p/>
+ * 注入时依赖先于使用方创建（拓扑序）；同一次解析中多个使用方注入的同一个依赖（同一个扩展点的同一个扩展）
+ * 只获取一次，{@link com.laibao.micro.container.annotation.Scope#PROTOTYPE}的依赖也在这次解析中共用一个实例。
+ * 并行构造扩展链时，一次解析由多个线程共用，见{@link #shared()}。
+ *
+ * @since 1.0
+ */
+final class Resolution {
+
+    private static final ThreadLocal<Resolution> CURRENT = new ThreadLocal<>();
+
+    // 扩展点配置的版本，重新加载或释放扩展点后递增，之前检查过的依赖图失效
+    private static final AtomicLong EPOCH = new AtomicLong();
+
+    // Map<(loader, ext-name), instance>，这次解析中已经获取的依赖，第一次获取依赖时创建
+    private Map<Node, Object> dependencies;
+
+    // Map<(loader, ext-name), future>，多个线程共用的解析中已经开始获取的依赖，不共用时为null
+    private final ConcurrentMap<Node, CompletableFuture<Object>> sharedDependencies;
+
+    private Resolution(boolean shared) {
+        this.sharedDependencies = shared ? new ConcurrentHashMap<Node, CompletableFuture<Object>>() : null;
+    }
+
+    /**
+     * 当前线程上进行中的解析，没有时返回<code>null</code>。
+     */
+    static Resolution current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 开始一次解析，调用方要在finally中调用{@link #end()}。
+     */
+    static Resolution begin() {
+        Resolution resolution = new Resolution(false);
+        CURRENT.set(resolution);
+        return resolution;
+    }
+
+    void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 创建一次多个线程共用的解析，不绑定到当前线程，各线程用{@link #enter()}加入。
+     * 同一个依赖只由第一个需要它的线程获取，其它线程等它获取完。
+     */
+    static Resolution shared() {
+        return new Resolution(true);
+    }
+
+    /**
+     * 在当前线程上加入这次解析，调用方要在finally中用返回值调用{@link #exit(Resolution)}。
+     *
+     * @return 当前线程上原来的解析，没有时为<code>null</code>
+     */
+    Resolution enter() {
+        Resolution previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    /**
+     * 离开{@link #enter()}加入的解析，恢复当前线程上原来的解析。
+     */
+    static void exit(Resolution previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * 扩展点的配置有变化，之前检查过的依赖图都要重新检查。
+     */
+    static void invalidateGraphs() {
+        EPOCH.incrementAndGet();
+    }
+
+    /**
+     * 检查从一个扩展出发的依赖图中没有环。
+     *
+     * @param name            扩展名
+     * @param dependencyTypes 扩展（以及它的Wrapper）注入的扩展点
+     * @return 检查过的依赖图，properties中决定依赖的值不变时可以复用
+     * @throws IllegalStateException 有循环依赖
+     */
+    static CheckedGraph checkCycles(ExtensionLoader<?> loader, String name, List<Class<?>> dependencyTypes,
+                                    Map<String, String> properties) {
+        long epoch = EPOCH.get();
+        CycleDetector detector = new CycleDetector(properties);
+        detector.visit(new Node(loader, name), dependencyTypes);
+        return new CheckedGraph(epoch, detector.consulted, detector.prototypes);
+    }
+
+    /**
+     * 获取注入的依赖，这次解析中已经获取过时直接返回。
+     */
+    Object getDependency(ExtensionLoader<?> loader, ExtensionContext properties) {
+        String name = loader.getExtensionName(properties);
+        if (name == null) {
+            // 交给getExtension报告缺少扩展名
+            return loader.getExtension(properties);
+        }
+        if (!isPrototype(loader.getExtensionScope(name))) {
+            // 缓存的实例本来就是共用的
+            return loader.getExtension(name, properties);
+        }
+        Node node = new Node(loader, name);
+        if (sharedDependencies != null) {
+            return getSharedDependency(loader, name, properties, node);
+        }
+        if (dependencies == null) {
+            dependencies = new HashMap<>();
+        }
+        Object dependency = dependencies.get(node);
+        if (dependency == null) {
+            dependency = loader.getExtension(name, properties);
+            dependencies.put(node, dependency);
+        }
+        return dependency;
+    }
+
+    /**
+     * 依赖图中没有环，等待的依赖不会反过来等待当前线程。
+     */
+    private Object getSharedDependency(ExtensionLoader<?> loader, String name, ExtensionContext properties, Node node) {
+        CompletableFuture<Object> future = sharedDependencies.get(node);
+        if (future == null) {
+            CompletableFuture<Object> created = new CompletableFuture<>();
+            future = sharedDependencies.putIfAbsent(node, created);
+            if (future == null) {
+                try {
+                    Object dependency = loader.getExtension(name, properties);
+                    created.complete(dependency);
+                    return dependency;
+                } catch (RuntimeException | Error e) {
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 注入时每次创建新实例的scope，{@link Scope#POOLED}的扩展注入时不经过池。
+     */
+    private static boolean isPrototype(Scope scope) {
+        return scope == Scope.PROTOTYPE || scope == Scope.POOLED;
+    }
+
+    private static String getValue(Map<String, String> properties, String key) {
+        String value = properties.get(key);
+        return value == null || value.length() == 0 ? null : value;
+    }
+
+    /**
+     * 检查过没有环的依赖图。依赖图只取决于遍历时读过的properties值（按扩展点接口名选择扩展），
+     * 这些值相同、配置没有变化时依赖图相同。
+     */
+    static final class CheckedGraph {
+
+        private final long epoch;
+
+        private final String[] keys;
+
+        // 与keys对应，null表示没有值
+        private final String[] values;
+
+        private final boolean prototypes;
+
+        CheckedGraph(long epoch, Map<String, String> consulted, boolean prototypes) {
+            this.epoch = epoch;
+            this.keys = consulted.keySet().toArray(new String[0]);
+            this.values = consulted.values().toArray(new String[0]);
+            this.prototypes = prototypes;
+        }
+
+        /**
+         * 依赖图中有没有{@link com.laibao.micro.container.annotation.Scope#PROTOTYPE}的依赖。
+         * 没有时所有依赖都是缓存的实例，本来就是共用的，不需要在解析中记录。
+         */
+        boolean hasPrototypes() {
+            return prototypes;
+        }
+
+        boolean isValid(Map<String, String> properties) {
+            if (epoch != EPOCH.get()) {
+                return false;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (!Objects.equals(values[i], getValue(properties, keys[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class CycleDetector {
+
+        private final Map<String, String> properties;
+
+        // Map<type-name, property-value>，遍历时读过的properties值
+        private final Map<String, String> consulted = new LinkedHashMap<>();
+
+        private boolean prototypes;
+
+        private final Set<Node> visited = new HashSet<>();
+
+        // 当前路径，有环时用于报告
+        private final List<Node> path = new ArrayList<>();
+
+        CycleDetector(Map<String, String> properties) {
+            this.properties = properties;
+        }
+
+        void visit(Node node, List<Class<?>> dependencyTypes) {
+            path.add(node);
+            for (Class<?> dependencyType : dependencyTypes) {
+                ExtensionLoader<?> loader = node.loader.getDependencyLoader(dependencyType);
+                consulted.put(dependencyType.getName(), getValue(properties, dependencyType.getName()));
+                String name = loader.getExtensionName(properties);
+                if (name == null || !loader.hasExtension(name)) {
+                    // 注入时再报告找不到扩展
+                    continue;
+                }
+                if (isPrototype(loader.getExtensionScope(name))) {
+                    prototypes = true;
+                }
+                Node dependency = new Node(loader, name);
+                int index = path.indexOf(dependency);
+                if (index >= 0) {
+                    StringBuilder buf = new StringBuilder("Cyclic injection of extensions: ");
+                    for (int i = index; i < path.size(); i++) {
+                        buf.append(path.get(i)).append(" -> ");
+                    }
+                    buf.append(dependency);
+                    throw new IllegalStateException(buf.toString());
+                }
+                if (visited.add(dependency)) {
+                    List<Class<?>> types;
+                    try {
+                        types = loader.getDependencyTypes(name);
+                    } catch (IllegalStateException e) {
+                        // 实现类加载失败，注入时再报告
+                        continue;
+                    }
+                    visit(dependency, types);
+                }
+            }
+            path.remove(path.size() - 1);
+        }
+    }
+
+    private static final class Node {
+
+        final ExtensionLoader<?> loader;
+
+        final String name;
+
+        Node(ExtensionLoader<?> loader, String name) {
+            this.loader = loader;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Node)) return false;
+            Node that = (Node) o;
+            return loader == that.loader && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(loader) * 31 + name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return loader.getType().getName() + "(" + name + ")";
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.laibao.micro.container;
+
+/**
+ * 扩展实例在有<code>cache.weight</code>上限的缓存中的权重，如持有的缓冲区字节数。
+ * 没有实现这个接口的实例权重是1；带Wrapper时按最外层的实例计算。
+ *
+ * @see com.laibao.micro.container.constants.CommonConstants#CACHE_WEIGHT_ATTRIBUTE
+ * @since 1.0
+ */
+public interface Weighted {
+
+    /**
+     * 实例的权重，创建实例后读取一次，不能为负数。
+     */
+    long weight();
+}
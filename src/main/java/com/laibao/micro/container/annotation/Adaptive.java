@@ -0,0 +1,25 @@
+package com.laibao.micro.container.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 声明自适应扩展方法从properties中按哪些Key取扩展名。
+ * <p/>
+ * {@link com.laibao.micro.container.ExtensionLoader#getAdaptiveExtension()}生成的代理，
+ * 每次调用从方法的<code>Map&lt;String, String&gt;</code>参数中依次按这些Key取扩展名，
+ * 都没有时使用扩展点的缺省扩展。没有这个注解时，Key是扩展点接口的全名。
+ *
+ * @see com.laibao.micro.container.ExtensionLoader#getAdaptiveExtension()
+ * @since 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+public @interface Adaptive {
+    /**
+     * properties中扩展名的Key，按顺序查找。
+     *
+     * @since 1.0
+     */
+    String[] value() default {};
+}
@@ -20,4 +20,11 @@ public @interface SPI {
      * @since 1.0
      */
     String value() default "";
+
+    /**
+     * the default scope of extension instances.
+     *
+     * @since 1.0
+     */
+    Scope scope() default Scope.SINGLETON;
 }
@@ -0,0 +1,51 @@
+package com.laibao.micro.container.annotation;
+
+/**
+ * 扩展实例的作用域。
+ * <p/>
+ * 扩展点上通过{@link SPI#scope()}声明缺省作用域，
+ * 单个扩展可以在配置文件的属性中通过<code>scope=prototype</code>覆盖。
+ *
+ * @see SPI#scope()
+ * @since 1.0
+ */
+public enum Scope {
+
+    /**
+     * 每个扩展名（及Wrapper列表）只创建一个实例。
+     */
+    SINGLETON,
+
+    /**
+     * 每次获取都创建新的实例。
+     */
+    PROTOTYPE,
+
+    /**
+     * 每个扩展名（及Wrapper列表）按不同的properties各创建一个实例。
+     */
+    PROPERTIES,
+
+    /**
+     * 每个扩展名（及Wrapper列表）维护一个有界的实例池，通过
+     * {@link com.laibao.micro.container.ExtensionLoader#borrowExtension(String)}借出，用完后归还。
+     * 适合创建代价大、又不是线程安全的实现，如带大缓冲区的编解码器。池的大小由配置属性<code>pool.size</code>指定。
+     * <p/>
+     * 通过<code>getExtension</code>获取或是注入时，和{@link #PROTOTYPE}一样每次创建新的实例，不经过池。
+     */
+    POOLED;
+
+    /**
+     * 按名字（忽略大小写）解析作用域。
+     *
+     * @throws IllegalArgumentException 不认识的作用域名
+     */
+    public static Scope of(String name) {
+        for (Scope scope : values()) {
+            if (scope.name().equalsIgnoreCase(name)) {
+                return scope;
+            }
+        }
+        throw new IllegalArgumentException("Unknown extension scope: " + name);
+    }
+}
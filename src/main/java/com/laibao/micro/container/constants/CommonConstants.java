@@ -6,11 +6,100 @@ public interface CommonConstants {
 
     String EXTENSION_CONF_DIRECTORY = "META-INF/extensions/";
 
+    String EXTENSION_INDEX_RESOURCE = "META-INF/extensions.idx";
+
+    /**
+     * 设为<code>false</code>时忽略编译期生成的扩展点索引，总是扫描配置文件。
+     */
+    String EXTENSION_INDEX_ENABLED_KEY = "micro.container.index";
+
+    /**
+     * 设为<code>true</code>时索引中有的扩展点只使用索引中的配置项，不再逐个扩展点查找配置文件；
+     * 索引中没有的扩展点仍然查找。classpath上同一个扩展点的配置文件都在生成了索引的模块中时才能打开。
+     */
+    String EXTENSION_INDEX_AUTHORITATIVE_KEY = "micro.container.index.authoritative";
+
+    /**
+     * 设为<code>true</code>时扫描配置只记录扩展名、实现类名和属性，第一次用到扩展时才加载实现类。
+     */
+    String EXTENSION_LAZY_KEY = "micro.container.lazy";
+
+    /**
+     * 启用的{@link com.laibao.micro.container.metrics.ExtensionMetrics}扩展名，逗号分隔，如<code>simple,jfr</code>。
+     */
+    String EXTENSION_METRICS_KEY = "micro.container.metrics";
+
+    /**
+     * 设为<code>true</code>时监听文件系统目录中的配置文件，变化后重新加载扩展点。
+     */
+    String EXTENSION_RELOAD_KEY = "micro.container.reload";
+
+    /**
+     * 启动快照所在的目录。设置后按classpath的指纹读写校验过的扩展点配置，指纹相同时启动不再查找配置文件、不再校验实现类。
+     */
+    String EXTENSION_SNAPSHOT_KEY = "micro.container.snapshot";
+
+    /**
+     * 设为<code>false</code>时找不到扩展的异常不填充异常栈，配置错误的调用方反复查找时开销更小。
+     */
+    String EXTENSION_STACK_TRACE_KEY = "micro.container.stacktrace";
+
+    /**
+     * {@link com.laibao.micro.container.annotation.Scope#PROPERTIES}扩展缺省最多缓存的实例数，
+     * 没有设置时不限制；扩展上的<code>cache.size</code>属性优先。
+     */
+    String EXTENSION_CACHE_SIZE_KEY = "micro.container.cache.size";
+
     String PREFIX_ADAPTIVE_CLASS = "*";
 
     String PREFIX_WRAPPER_CLASS = "+";
 
+    String SCOPE_ATTRIBUTE = "scope";
+
+    /**
+     * 扩展的排序，整数，缺省0，越小越靠前。
+     */
+    String ORDER_ATTRIBUTE = "order";
+
+    /**
+     * {@link com.laibao.micro.container.annotation.Scope#POOLED}扩展的池大小。
+     */
+    String POOL_SIZE_ATTRIBUTE = "pool.size";
+
+    /**
+     * {@link com.laibao.micro.container.annotation.Scope#PROPERTIES}扩展最多缓存的实例数（不同的properties和Wrapper列表）。
+     */
+    String CACHE_SIZE_ATTRIBUTE = "cache.size";
+
+    /**
+     * {@link com.laibao.micro.container.annotation.Scope#PROPERTIES}扩展缓存的实例的最大总权重，
+     * 实例的权重见{@link com.laibao.micro.container.Weighted}。
+     */
+    String CACHE_WEIGHT_ATTRIBUTE = "cache.weight";
+
+    /**
+     * 超出<code>cache.size</code>或<code>cache.weight</code>时的淘汰策略：<code>lru</code>（缺省）或<code>tinylfu</code>。
+     */
+    String CACHE_POLICY_ATTRIBUTE = "cache.policy";
+
+    /**
+     * 设为<code>soft</code>时缓存的实例是软引用，内存不足时可以被回收，下次获取时重新创建。
+     */
+    String CACHE_VALUES_ATTRIBUTE = "cache.values";
+
+    String GROUP_ATTRIBUTE = "group";
+
+    /**
+     * 有这个属性的扩展参与激活，值是激活条件，见{@link com.laibao.micro.container.ExtensionLoader#getActivateExtensions(java.util.Map, String)}。
+     */
+    String ACTIVATE_ATTRIBUTE = "activate";
+
     Pattern NAME_SEPARATOR = Pattern.compile("\\s*,+\\s*");
 
+    /**
+     * 属性的多个值之间的分隔符，如<code>group=filter|router</code>。
+     */
+    Pattern ATTRIBUTE_VALUE_SEPARATOR = Pattern.compile("\\s*\\|+\\s*");
+
     Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z0-9_]+");
 }
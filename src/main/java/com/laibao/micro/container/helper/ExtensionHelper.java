@@ -1,12 +1,9 @@
 package com.laibao.micro.container.helper;
 
+import com.laibao.micro.container.ExtensionAttributes;
 import com.laibao.micro.container.ExtensionLoader;
 import com.laibao.micro.container.annotation.SPI;
-
-import java.util.HashMap;
-import java.util.Map;
-
-import static com.laibao.micro.container.constants.CommonConstants.NAME_PATTERN;
+import com.laibao.micro.container.index.DescriptorParser;
 
 public interface ExtensionHelper {
 
@@ -44,7 +41,7 @@ public interface ExtensionHelper {
 
 
     static boolean isValidExtName(String name) {
-        return NAME_PATTERN.matcher(name).matches();
+        return DescriptorParser.isValidName(name);
     }
 
 
@@ -53,25 +50,10 @@ public interface ExtensionHelper {
      * "attrib1=value1,attrib2=value2,isProvider,order=3" =>
      * {"attrib1"="value1", "attrib2"="value2", "isProvider"="", "order"="3"}
      * </code>
+     * <p/>
+     * 返回的属性不可修改，没有属性时返回{@link ExtensionAttributes#EMPTY}。
      */
-    static Map<String, String> parseExtAttribute(String attribute) {
-        Map<String, String> ret = new HashMap();
-        if (attribute == null || attribute.length() == 0) {
-            return ret;
-        }
-
-        String[] parts = attribute.split(",");
-        for (String part : parts) {
-            part = part.trim();
-            int idx = part.indexOf('=');
-            if (idx > 0) {
-                ret.put(part.substring(0, idx).trim(),
-                        part.substring(idx + 1).trim());
-            } else {
-                ret.put(part, "");
-            }
-        }
-
-        return ret;
+    static ExtensionAttributes parseExtAttribute(String attribute) {
+        return ExtensionAttributes.parse(attribute);
     }
 }
@@ -0,0 +1,76 @@
+package com.laibao.micro.container.index;
+
+/**
+ * 扩展点配置文件中的一行：<code>name=className(attribute)</code>。
+ * <p/>
+ * 名字保留配置中的原样，包括Adaptive类的<code>*</code>前缀、Wrapper类的<code>+</code>前缀，以及逗号分隔的多个名字。
+ *
+ * @since 1.0
+ */
+public final class DescriptorEntry {
+
+    private final String name;
+
+    private final String className;
+
+    private final String attribute;
+
+    private final String line;
+
+    private final String source;
+
+    public DescriptorEntry(String name, String className, String attribute, String line, String source) {
+        this.name = name;
+        this.className = className;
+        this.attribute = attribute;
+        this.line = line;
+        this.source = source;
+    }
+
+    /**
+     * 解析配置文件的一行。名字无效的配置行（Adaptive类除外）也会失败，出错信息中有出错的列号。
+     * 解析整个配置文件时使用{@link DescriptorParser}。
+     *
+     * @param line   配置行
+     * @param source 配置文件的位置，用于出错信息
+     * @return 解析出的配置项；空行或注释行返回<code>null</code>
+     * @throws IllegalStateException 配置行格式不对
+     */
+    public static DescriptorEntry parse(String line, String source) {
+        return DescriptorParser.parseLine(line, source);
+    }
+
+    /**
+     * 配置中的扩展名，包括前缀。
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * 括号中的属性串，没有属性时为<code>null</code>。
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * 原始的配置行。
+     */
+    public String getLine() {
+        return line;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return line + " (" + source + ")";
+    }
+}
@@ -0,0 +1,406 @@
+package com.laibao.micro.container.index;
+
+import com.laibao.micro.container.utils.StringInterner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.laibao.micro.container.constants.CommonConstants.PREFIX_ADAPTIVE_CLASS;
+import static com.laibao.micro.container.constants.CommonConstants.PREFIX_WRAPPER_CLASS;
+
+/**
+ * 扩展点配置文件的解析器：整个文件读进线程复用的缓冲区，一遍扫描，按下标切分行、扩展名、实现类和属性。
+ * <p/>
+ * 和逐行调用{@link DescriptorEntry#parse(String, String)}的结果相同，区别是：
+ * <ul>
+ * <li>空行和注释行不创建字符串，配置行只为原始行、扩展名、实现类名和属性串各创建一个字符串；</li>
+ * <li>扩展名和实现类名经过{@link StringInterner}，多个ClassLoader、多次重新加载之间只保留一份；</li>
+ * <li>不用正则表达式，逐个字符校验扩展名（Adaptive类除外），名字无效的配置行解析时即失败；</li>
+ * <li>出错信息中有出错的行号和列号（从1开始）。</li>
+ * </ul>
+ * 纯ASCII的配置文件直接把字节拷贝到字符缓冲区，其他按UTF-8解码。
+ *
+ * @since 1.0
+ */
+public final class DescriptorParser {
+
+    // 超过这个大小的缓冲区用完后不保留
+    private static final int MAX_POOLED_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+            return new Buffers();
+        }
+    };
+
+    private DescriptorParser() {
+    }
+
+    /**
+     * 读出并解析整个配置文件，不关闭输入流。
+     *
+     * @param in       配置文件，UTF-8编码
+     * @param source   配置文件的位置，用于出错信息
+     * @param failures 格式不对的配置行到出错原因的映射，相同的行只记录一次
+     * @return 解析出的配置项，按配置中的顺序
+     */
+    public static List<DescriptorEntry> parse(InputStream in, String source, Map<String, Throwable> failures) throws IOException {
+        Buffers buffers = BUFFERS.get();
+        byte[] bytes = buffers.bytes;
+        int length = 0;
+        int n;
+        while ((n = in.read(bytes, length, bytes.length - length)) > 0) {
+            length += n;
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+        }
+        char[] chars = buffers.chars(length);
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b < 0) {
+                ascii = false;
+                break;
+            }
+            chars[i] = (char) b;
+        }
+        if (!ascii) {
+            String text = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            length = text.length();
+            chars = buffers.chars(length);
+            text.getChars(0, length, chars, 0);
+        }
+        buffers.release(bytes);
+        return parse(chars, length, source, failures);
+    }
+
+    /**
+     * 解析整个配置文件。
+     *
+     * @see #parse(InputStream, String, Map)
+     */
+    public static List<DescriptorEntry> parse(String text, String source, Map<String, Throwable> failures) {
+        Buffers buffers = BUFFERS.get();
+        int length = text.length();
+        char[] chars = buffers.chars(length);
+        text.getChars(0, length, chars, 0);
+        return parse(chars, length, source, failures);
+    }
+
+    /**
+     * 解析配置文件的一行，出错信息中只有列号。
+     *
+     * @see DescriptorEntry#parse(String, String)
+     */
+    static DescriptorEntry parseLine(String line, String source) {
+        int length = line.length();
+        char[] chars = BUFFERS.get().chars(length);
+        line.getChars(0, length, chars, 0);
+        int comment = indexOf(chars, '#', 0, length);
+        return parseLine(chars, 0, comment >= 0 ? comment : length, length, line, 0, source);
+    }
+
+    /**
+     * 切分逗号分隔的扩展名，如<code>"a, b,c"</code>；有无效的扩展名时返回<code>null</code>。
+     * 和配置文件中一样，末尾多余的逗号和空白忽略。
+     */
+    public static String[] splitNames(String names) {
+        int length = names.length();
+        List<String> list = new ArrayList<>(1);
+        int p = 0;
+        while (true) {
+            int start = p;
+            while (p < length && isNameChar(names.charAt(p))) {
+                p++;
+            }
+            if (p == start) {
+                return list.isEmpty() || !isTrailing(names, p, length) ? null : list.toArray(new String[list.size()]);
+            }
+            list.add(start == 0 && p == length ? names : names.substring(start, p));
+            p = skipSeparator(names, p, length);
+            if (p < 0) {
+                return null;
+            }
+            if (p == length) {
+                return list.toArray(new String[list.size()]);
+            }
+        }
+    }
+
+    /**
+     * 是否是有效的扩展名：非空，只有字母、数字和下划线。
+     */
+    public static boolean isValidName(String name) {
+        if (name == null || name.length() == 0) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!isNameChar(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<DescriptorEntry> parse(char[] chars, int length, String source, Map<String, Throwable> failures) {
+        List<DescriptorEntry> entries = new ArrayList<>();
+        int lineNumber = 0;
+        int start = 0;
+        while (start < length) {
+            lineNumber++;
+            int end = start;
+            int comment = -1;
+            while (end < length) {
+                char c = chars[end];
+                if (c == '\n' || c == '\r') {
+                    break;
+                }
+                if (c == '#' && comment < 0) {
+                    comment = end;
+                }
+                end++;
+            }
+            try {
+                DescriptorEntry entry = parseLine(chars, start, comment >= 0 ? comment : end, end, null, lineNumber, source);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            } catch (IllegalStateException e) {
+                failures.put(new String(chars, start, end - start), e);
+            }
+            start = end + 1;
+            if (end < length && chars[end] == '\r' && start < length && chars[start] == '\n') {
+                start++;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @param from       行首
+     * @param contentEnd 注释开始的位置，没有注释时等于lineEnd
+     * @param lineEnd    行尾，不包括换行符
+     * @param line       原始行，为<code>null</code>时从缓冲区创建
+     * @param lineNumber 行号，为0时出错信息中没有行号
+     */
+    private static DescriptorEntry parseLine(char[] chars, int from, int contentEnd, int lineEnd,
+                                             String line, int lineNumber, String source) {
+        int s = from;
+        int e = contentEnd;
+        while (s < e && chars[s] <= ' ') {
+            s++;
+        }
+        while (e > s && chars[e - 1] <= ' ') {
+            e--;
+        }
+        if (s == e) {
+            return null;
+        }
+
+        int eq = indexOf(chars, '=', s, e);
+        if (eq <= s) {
+            // 没有配置文件中没有扩展点名，从实现类的Extension注解上读取。
+            throw new IllegalStateException("missing extension name, config value: " +
+                    new String(chars, s, e - s) + position(lineNumber, (eq < 0 ? s : eq) - from));
+        }
+        int nameEnd = trimEnd(chars, s, eq);
+
+        int bodyStart = eq + 1;
+        int bodyEnd = e;
+        String attribute = null;
+        int paren = indexOf(chars, '(', bodyStart, e);
+        if (paren >= 0) {
+            if (chars[e - 1] != ')') {
+                throw new IllegalStateException("missing ')' of extension attribute!" + position(lineNumber, e - from));
+            }
+            bodyEnd = paren;
+            attribute = new String(chars, paren + 1, e - 1 - (paren + 1));
+        }
+        while (bodyStart < bodyEnd && chars[bodyStart] <= ' ') {
+            bodyStart++;
+        }
+        bodyEnd = trimEnd(chars, bodyStart, bodyEnd);
+
+        if (!startsWith(chars, s, nameEnd, PREFIX_ADAPTIVE_CLASS)) {
+            int p = startsWith(chars, s, nameEnd, PREFIX_WRAPPER_CLASS) ? s + PREFIX_WRAPPER_CLASS.length() : s;
+            checkNames(chars, p, nameEnd, from, lineNumber);
+        }
+
+        String name = StringInterner.intern(chars, s, nameEnd);
+        String className = StringInterner.intern(chars, bodyStart, bodyEnd);
+        if (line == null) {
+            line = new String(chars, from, lineEnd - from);
+        }
+        return new DescriptorEntry(name, className, attribute, line, source);
+    }
+
+    /**
+     * 校验逗号分隔的扩展名，和<code>"\\s*,+\\s*"</code>切分后逐个匹配<code>[a-zA-Z0-9_]+</code>的结果相同，
+     * 只是只有逗号、没有名字时失败。
+     */
+    private static void checkNames(char[] chars, int p, int end, int from, int lineNumber) {
+        int first = p;
+        while (true) {
+            int start = p;
+            while (p < end && isNameChar(chars[p])) {
+                p++;
+            }
+            if (p == start && start > first && isTrailing(chars, p, end)) {
+                return;
+            }
+            int next = p == start ? -1 : skipSeparator(chars, p, end);
+            if (next < 0) {
+                // 出错的名字到下一个逗号为止
+                int segmentEnd = indexOf(chars, ',', start, end);
+                segmentEnd = trimEnd(chars, start, segmentEnd < 0 ? end : segmentEnd);
+                int column = p == start ? start : p;
+                throw new IllegalStateException("invalid extension name(" + new String(chars, start, segmentEnd - start) +
+                        ")" + position(lineNumber, column - from));
+            }
+            if (next == end) {
+                return;
+            }
+            p = next;
+        }
+    }
+
+    /**
+     * 跳过名字之间的分隔符：空白、至少一个逗号、空白。不是分隔符时返回-1。
+     */
+    private static int skipSeparator(char[] chars, int p, int end) {
+        if (p == end) {
+            return end;
+        }
+        while (p < end && isSpace(chars[p])) {
+            p++;
+        }
+        if (p == end || chars[p] != ',') {
+            return -1;
+        }
+        while (p < end && chars[p] == ',') {
+            p++;
+        }
+        while (p < end && isSpace(chars[p])) {
+            p++;
+        }
+        return p;
+    }
+
+    private static int skipSeparator(String names, int p, int end) {
+        if (p == end) {
+            return end;
+        }
+        while (p < end && isSpace(names.charAt(p))) {
+            p++;
+        }
+        if (p == end || names.charAt(p) != ',') {
+            return -1;
+        }
+        while (p < end && names.charAt(p) == ',') {
+            p++;
+        }
+        while (p < end && isSpace(names.charAt(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    // 末尾只有逗号和空白
+    private static boolean isTrailing(char[] chars, int p, int end) {
+        for (; p < end; p++) {
+            if (chars[p] != ',' && !isSpace(chars[p])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTrailing(String names, int p, int end) {
+        for (; p < end; p++) {
+            if (names.charAt(p) != ',' && !isSpace(names.charAt(p))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    // 正则表达式中的\s
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+
+    private static int indexOf(char[] chars, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int trimEnd(char[] chars, int start, int end) {
+        while (end > start && chars[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean startsWith(char[] chars, int start, int end, String prefix) {
+        int length = prefix.length();
+        if (end - start < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param offset 在行中的下标，从0开始
+     */
+    private static String position(int lineNumber, int offset) {
+        return lineNumber > 0 ? " (line " + lineNumber + ", column " + (offset + 1) + ")"
+                : " (column " + (offset + 1) + ")";
+    }
+
+    /**
+     * 线程复用的读缓冲区和字符缓冲区。
+     */
+    private static final class Buffers {
+
+        byte[] bytes = new byte[1024];
+
+        char[] chars = new char[1024];
+
+        char[] chars(int length) {
+            if (chars.length < length) {
+                char[] c = new char[Math.max(length, chars.length * 2)];
+                if (c.length <= MAX_POOLED_SIZE) {
+                    chars = c;
+                }
+                return c;
+            }
+            return chars;
+        }
+
+        void release(byte[] b) {
+            if (b != bytes && b.length <= MAX_POOLED_SIZE) {
+                bytes = b;
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.laibao.micro.container.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.*;
+
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_CONF_DIRECTORY;
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_INDEX_AUTHORITATIVE_KEY;
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_INDEX_RESOURCE;
+
+/**
+ * 扩展点索引：扩展点接口名到配置项的映射。
+ * <p/>
+ * 索引由编译期的注解处理器根据<code>META-INF/extensions/</code>下的配置文件生成，
+ * 写在<code>META-INF/extensions.idx</code>中。容器启动时一次读出ClassLoader上所有的索引文件，
+ * 索引覆盖的配置文件不再解析。
+ * <p/>
+ * 注解处理器只索引本模块的配置文件，一个索引文件只覆盖和它在同一个Jar包或目录中的配置文件，
+ * 见{@link #covers(String, URL)}。同一个扩展点在其它Jar包中的配置文件（如没有用注解处理器编译的第三方插件）仍要读取，
+ * 为此每个扩展点都要调用一次<code>ClassLoader.getResources</code>；读取索引时设置了
+ * <code>-Dmicro.container.index.authoritative=true</code>时，索引中有的扩展点不再查找，见{@link #isAuthoritative(String)}。
+ * <p/>
+ * 二进制格式：
+ * <pre>
+ * int magic, short version, int typeCount,
+ *   { UTF typeName, int entryCount,
+ *     { UTF name, UTF className, boolean hasAttribute, [UTF attribute], UTF line } }
+ * </pre>
+ *
+ * @since 1.0
+ */
+public final class ExtensionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExtensionIndex.class);
+
+    private static final int MAGIC = 0x4D434958; // "MCIX"
+
+    private static final short VERSION = 1;
+
+    public static final ExtensionIndex EMPTY = new ExtensionIndex(Collections.<String, List<DescriptorEntry>>emptyMap());
+
+    // WeakHashMap<ClassLoader, ExtensionIndex>，索引中只有字符串，不会钉住ClassLoader
+    private static final Map<ClassLoader, ExtensionIndex> INDEXES =
+            Collections.synchronizedMap(new WeakHashMap<ClassLoader, ExtensionIndex>());
+
+    // Map<type-name, entries>
+    private final Map<String, List<DescriptorEntry>> type2Entries;
+
+    // Map<type-name, 索引覆盖的配置文件位置>，从ClassLoader读出的索引才有
+    private final Map<String, Set<String>> type2Descriptors;
+
+    // 读取索引时的设置，每个ClassLoader读取索引时决定一次
+    private final boolean authoritative;
+
+    public ExtensionIndex(Map<String, List<DescriptorEntry>> type2Entries) {
+        this(type2Entries, Collections.<String, Set<String>>emptyMap(), false);
+    }
+
+    private ExtensionIndex(Map<String, List<DescriptorEntry>> type2Entries, Map<String, Set<String>> type2Descriptors,
+                           boolean authoritative) {
+        Map<String, List<DescriptorEntry>> map = new LinkedHashMap<>();
+        for (Map.Entry<String, List<DescriptorEntry>> entry : type2Entries.entrySet()) {
+            map.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        }
+        this.type2Entries = Collections.unmodifiableMap(map);
+        this.type2Descriptors = type2Descriptors;
+        this.authoritative = authoritative;
+    }
+
+    /**
+     * 返回ClassLoader上所有索引文件合并后的索引，每个ClassLoader只读一次。
+     *
+     * @param classLoader 为<code>null</code>时使用System ClassLoader
+     */
+    public static ExtensionIndex getIndex(ClassLoader classLoader) {
+        ExtensionIndex index = INDEXES.get(classLoader);
+        if (index == null) {
+            index = load(classLoader);
+            INDEXES.put(classLoader, index);
+        }
+        return index;
+    }
+
+    /**
+     * 丢弃ClassLoader上缓存的索引，下次{@link #getIndex(ClassLoader)}时重新读取。
+     */
+    public static void evict(ClassLoader classLoader) {
+        INDEXES.remove(classLoader);
+    }
+
+    private static ExtensionIndex load(ClassLoader classLoader) {
+        Map<String, List<DescriptorEntry>> merged = new LinkedHashMap<>();
+        Map<String, Set<String>> descriptors = new HashMap<>();
+        try {
+            Enumeration<URL> urls = classLoader != null ? classLoader.getResources(EXTENSION_INDEX_RESOURCE)
+                    : ClassLoader.getSystemResources(EXTENSION_INDEX_RESOURCE);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                String location = url.toExternalForm();
+                if (!location.endsWith(EXTENSION_INDEX_RESOURCE)) {
+                    continue;
+                }
+                // 索引文件所在的Jar包或目录
+                String root = location.substring(0, location.length() - EXTENSION_INDEX_RESOURCE.length());
+                try (InputStream in = url.openStream()) {
+                    ExtensionIndex index = read(in, location);
+                    for (Map.Entry<String, List<DescriptorEntry>> entry : index.type2Entries.entrySet()) {
+                        List<DescriptorEntry> entries = merged.get(entry.getKey());
+                        if (entries == null) {
+                            entries = new ArrayList<>();
+                            merged.put(entry.getKey(), entries);
+                        }
+                        entries.addAll(entry.getValue());
+                        Set<String> covered = descriptors.get(entry.getKey());
+                        if (covered == null) {
+                            covered = new HashSet<>();
+                            descriptors.put(entry.getKey(), covered);
+                        }
+                        covered.add(root + EXTENSION_CONF_DIRECTORY + entry.getKey());
+                    }
+                } catch (Throwable t) {
+                    logger.error("Exception when load extension index " + url, t);
+                }
+            }
+        } catch (Throwable t) {
+            logger.error("Exception when load extension index " + EXTENSION_INDEX_RESOURCE, t);
+        }
+        return merged.isEmpty() ? EMPTY
+                : new ExtensionIndex(merged, descriptors, Boolean.getBoolean(EXTENSION_INDEX_AUTHORITATIVE_KEY));
+    }
+
+    /**
+     * 返回扩展点的配置项，索引中没有这个扩展点时返回<code>null</code>。
+     */
+    public List<DescriptorEntry> getEntries(String typeName) {
+        return type2Entries.get(typeName);
+    }
+
+    /**
+     * 配置文件是否已经包含在索引中：和索引文件在同一个Jar包或目录中，且索引中有这个扩展点。
+     *
+     * @param typeName   扩展点接口名
+     * @param descriptor 配置文件<code>META-INF/extensions/&lt;扩展点接口名&gt;</code>的位置
+     */
+    public boolean covers(String typeName, URL descriptor) {
+        Set<String> covered = type2Descriptors.get(typeName);
+        return covered != null && covered.contains(descriptor.toExternalForm());
+    }
+
+    /**
+     * 索引中的配置项是否就是扩展点的全部配置项，不需要再查找配置文件：
+     * 读取索引时设置了<code>-Dmicro.container.index.authoritative=true</code>，且索引中有这个扩展点。
+     */
+    public boolean isAuthoritative(String typeName) {
+        return authoritative && type2Entries.containsKey(typeName);
+    }
+
+    public Set<String> getTypeNames() {
+        return type2Entries.keySet();
+    }
+
+    public boolean isEmpty() {
+        return type2Entries.isEmpty();
+    }
+
+    public static ExtensionIndex read(InputStream in, String source) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(in));
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not an extension index: " + source);
+        }
+        short version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported extension index version " + version + ": " + source);
+        }
+        int typeCount = input.readInt();
+        Map<String, List<DescriptorEntry>> type2Entries = new LinkedHashMap<>();
+        for (int i = 0; i < typeCount; i++) {
+            String typeName = input.readUTF();
+            int entryCount = input.readInt();
+            String entrySource = source + "!" + typeName;
+            List<DescriptorEntry> entries = new ArrayList<>(entryCount);
+            for (int j = 0; j < entryCount; j++) {
+                String name = input.readUTF();
+                String className = input.readUTF();
+                String attribute = input.readBoolean() ? input.readUTF() : null;
+                String line = input.readUTF();
+                entries.add(new DescriptorEntry(name, className, attribute, line, entrySource));
+            }
+            type2Entries.put(typeName, entries);
+        }
+        return new ExtensionIndex(type2Entries);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeInt(type2Entries.size());
+        for (Map.Entry<String, List<DescriptorEntry>> entry : type2Entries.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeInt(entry.getValue().size());
+            for (DescriptorEntry e : entry.getValue()) {
+                output.writeUTF(e.getName());
+                output.writeUTF(e.getClassName());
+                output.writeBoolean(e.getAttribute() != null);
+                if (e.getAttribute() != null) {
+                    output.writeUTF(e.getAttribute());
+                }
+                output.writeUTF(e.getLine());
+            }
+        }
+        output.flush();
+    }
+}
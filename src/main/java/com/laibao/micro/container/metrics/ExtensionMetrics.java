@@ -0,0 +1,36 @@
+package com.laibao.micro.container.metrics;
+
+import com.laibao.micro.container.annotation.SPI;
+
+/**
+ * 容器的指标扩展点。
+ * <p/>
+ * 通过<code>-Dmicro.container.metrics=simple,jfr</code>启用一个或多个实现，没有配置时不记录任何指标。
+ * 实现会在加载、创建扩展的线程上同步调用，要线程安全，并且足够快。
+ * 发出JFR事件的<code>jfr</code>在<code>micro-container-jfr</code>模块中。
+ *
+ * @see SimpleExtensionMetrics
+ * @since 1.0
+ */
+@SPI
+public interface ExtensionMetrics {
+
+    /**
+     * 记录一次操作。
+     *
+     * @param metric 指标类型
+     * @param type   扩展点接口
+     * @param name   扩展名或Wrapper名，{@link MetricType#LOAD}时为<code>null</code>
+     * @param nanos  耗时，计数类指标为<code>0</code>
+     */
+    void record(MetricType metric, Class<?> type, String name, long nanos);
+
+    /**
+     * 记录一次失败：配置行加载失败，或是创建扩展失败。
+     *
+     * @param type  扩展点接口
+     * @param name  扩展名；配置行加载失败时是配置行
+     * @param cause 失败原因
+     */
+    void recordFailure(Class<?> type, String name, Throwable cause);
+}
@@ -0,0 +1,55 @@
+package com.laibao.micro.container.metrics;
+
+/**
+ * 容器记录的指标类型。
+ *
+ * @see ExtensionMetrics
+ * @since 1.0
+ */
+public enum MetricType {
+
+    /**
+     * 加载扩展点的配置和实现类，扩展名为<code>null</code>。
+     */
+    LOAD,
+
+    /**
+     * 创建扩展实例，不含注入。
+     */
+    INSTANTIATION,
+
+    /**
+     * 向扩展实例注入依赖的扩展点。
+     */
+    INJECTION,
+
+    /**
+     * 创建并注入一层Wrapper，扩展名是Wrapper名。
+     */
+    WRAPPER,
+
+    /**
+     * 实例缓存命中，没有耗时。
+     */
+    CACHE_HIT,
+
+    /**
+     * 实例缓存未命中，没有耗时。
+     */
+    CACHE_MISS,
+
+    /**
+     * 从{@link com.laibao.micro.container.annotation.Scope#POOLED}扩展的池中借到实例，没有耗时。
+     */
+    POOL_HIT,
+
+    /**
+     * 池中没有空闲实例，新建一个，没有耗时。
+     */
+    POOL_MISS,
+
+    /**
+     * 缓存的实例超出<code>cache.size</code>或<code>cache.weight</code>被淘汰，没有耗时。
+     */
+    EVICTION
+}
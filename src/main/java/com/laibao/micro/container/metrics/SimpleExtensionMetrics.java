@@ -0,0 +1,118 @@
+package com.laibao.micro.container.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存中的指标实现，按扩展点、扩展名和{@link MetricType}分别计数并记录延迟直方图。
+ * <p/>
+ * 扩展名为<code>simple</code>，通过{@link com.laibao.micro.container.ExtensionLoader}获取同一个单例查询指标：
+ * <pre>
+ * SimpleExtensionMetrics metrics = (SimpleExtensionMetrics) ExtensionLoader
+ *         .getExtensionLoader(ExtensionMetrics.class).getExtension("simple");
+ * </pre>
+ *
+ * @since 1.0
+ */
+public class SimpleExtensionMetrics implements ExtensionMetrics {
+
+    private static final String NO_NAME = "";
+
+    // Map<type-name, Map<ext-name, Map<metric, histogram>>>
+    private final ConcurrentMap<String, ConcurrentMap<String, Map<MetricType, LatencyHistogram>>> histograms = new ConcurrentHashMap<>();
+
+    // Map<type-name, Map<ext-name, failures>>
+    private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> failures = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(MetricType metric, Class<?> type, String name, long nanos) {
+        getHistograms(type.getName(), name).get(metric).record(nanos);
+    }
+
+    @Override
+    public void recordFailure(Class<?> type, String name, Throwable cause) {
+        // reset()可能和记录并发，用computeIfAbsent的返回值，不再get一次
+        ConcurrentMap<String, LongAdder> name2Failures = failures.get(type.getName());
+        if (name2Failures == null) {
+            name2Failures = failures.computeIfAbsent(type.getName(), k -> new ConcurrentHashMap<String, LongAdder>());
+        }
+        String key = name == null ? NO_NAME : name;
+        LongAdder counter = name2Failures.get(key);
+        if (counter == null) {
+            counter = name2Failures.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * 返回扩展点上某个扩展的直方图。
+     *
+     * @param name 扩展名，{@link MetricType#LOAD}用<code>null</code>
+     */
+    public LatencyHistogram getHistogram(Class<?> type, String name, MetricType metric) {
+        return getHistograms(type.getName(), name).get(metric);
+    }
+
+    /**
+     * 返回扩展点上每个扩展的失败次数，配置行加载失败时Key是配置行。
+     */
+    public Map<String, Long> getFailures(Class<?> type) {
+        ConcurrentMap<String, LongAdder> name2Failures = failures.get(type.getName());
+        if (name2Failures == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> ret = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : name2Failures.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().sum());
+        }
+        return ret;
+    }
+
+    /**
+     * 清空所有指标。
+     */
+    public void reset() {
+        histograms.clear();
+        failures.clear();
+    }
+
+    private Map<MetricType, LatencyHistogram> getHistograms(String typeName, String name) {
+        ConcurrentMap<String, Map<MetricType, LatencyHistogram>> name2Histograms = histograms.get(typeName);
+        if (name2Histograms == null) {
+            name2Histograms = histograms.computeIfAbsent(typeName, k -> new ConcurrentHashMap<String, Map<MetricType, LatencyHistogram>>());
+        }
+        String key = name == null ? NO_NAME : name;
+        Map<MetricType, LatencyHistogram> metric2Histogram = name2Histograms.get(key);
+        if (metric2Histogram == null) {
+            metric2Histogram = name2Histograms.computeIfAbsent(key, k -> {
+                Map<MetricType, LatencyHistogram> map = new EnumMap<>(MetricType.class);
+                for (MetricType metric : MetricType.values()) {
+                    map.put(metric, new LatencyHistogram());
+                }
+                return Collections.unmodifiableMap(map);
+            });
+        }
+        return metric2Histogram;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (Map.Entry<String, ConcurrentMap<String, Map<MetricType, LatencyHistogram>>> type : histograms.entrySet()) {
+            for (Map.Entry<String, Map<MetricType, LatencyHistogram>> name : type.getValue().entrySet()) {
+                for (Map.Entry<MetricType, LatencyHistogram> metric : name.getValue().entrySet()) {
+                    if (metric.getValue().getCount() > 0) {
+                        buf.append(type.getKey()).append('[').append(name.getKey()).append("] ")
+                                .append(metric.getKey()).append(": ").append(metric.getValue()).append('\n');
+                    }
+                }
+            }
+        }
+        return buf.toString();
+    }
+}
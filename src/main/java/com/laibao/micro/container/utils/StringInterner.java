@@ -0,0 +1,74 @@
+package com.laibao.micro.container.utils;
+
+/**
+ * 从字符缓冲区或字符串的一段直接得到{@link String#intern()}后的字符串。
+ * <p/>
+ * 每个线程有一个按哈希直接映射的缓存，最近intern过的字符串命中时不创建子串、也不查JVM的字符串表。
+ * 解析配置时扩展名、实现类名、属性名和属性值大量重复（重新加载、多个ClassLoader、多个扩展共用属性），
+ * 缓存冲突时只是退回到{@link String#intern()}。
+ *
+ * @since 1.0
+ */
+public final class StringInterner {
+
+    // 2的幂
+    private static final int SIZE = 1024;
+
+    private static final ThreadLocal<String[]> CACHE = new ThreadLocal<String[]>() {
+        @Override
+        protected String[] initialValue() {
+            return new String[SIZE];
+        }
+    };
+
+    private StringInterner() {
+    }
+
+    /**
+     * 返回<code>new String(chars, start, end - start).intern()</code>。
+     */
+    public static String intern(char[] chars, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + chars[i];
+        }
+        String[] cache = CACHE.get();
+        int slot = slot(h);
+        String s = cache[slot];
+        if (s != null && s.length() == end - start) {
+            int i = start;
+            while (i < end && s.charAt(i - start) == chars[i]) {
+                i++;
+            }
+            if (i == end) {
+                return s;
+            }
+        }
+        s = new String(chars, start, end - start).intern();
+        cache[slot] = s;
+        return s;
+    }
+
+    /**
+     * 返回<code>text.substring(start, end).intern()</code>。
+     */
+    public static String intern(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        String[] cache = CACHE.get();
+        int slot = slot(h);
+        String s = cache[slot];
+        if (s != null && s.length() == end - start && text.regionMatches(start, s, 0, end - start)) {
+            return s;
+        }
+        s = text.substring(start, end).intern();
+        cache[slot] = s;
+        return s;
+    }
+
+    private static int slot(int h) {
+        return (h ^ (h >>> 16)) & (SIZE - 1);
+    }
+}
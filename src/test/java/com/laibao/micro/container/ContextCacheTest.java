@@ -0,0 +1,116 @@
+package com.laibao.micro.container;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 有界的{@link ContextCache}淘汰后在锁外关闭实例。
+ */
+public class ContextCacheTest {
+
+    @Test
+    public void testEvictedClosedOutsideLock() throws InterruptedException {
+        ContextCache<Object> cache = new ContextCache<>(Object.class, "test", EvictionPolicyTest.spec("cache.size=2"));
+        List<Resource> resources = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            resources.add(create(cache, "k" + i, new Resource(cache, 1)));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            Resource resource = resources.get(i);
+            assertEquals("resource " + i, i < 3 ? 1 : 0, resource.closed);
+            if (i < 3) {
+                assertFalse("cache locked when closing resource " + i, resource.cacheLocked);
+                assertFalse("slot locked when closing resource " + i, resource.slotLocked);
+                assertNull(cache.get("k" + i));
+            } else {
+                assertSame(resource, cache.get("k" + i).get());
+            }
+        }
+    }
+
+    @Test
+    public void testWeightedEvictedOnCreate() throws InterruptedException {
+        ContextCache<Object> cache = new ContextCache<>(Object.class, "test", EvictionPolicyTest.spec("cache.weight=5"));
+        Resource first = create(cache, "k1", new Resource(cache, 3));
+        Resource second = create(cache, "k2", new Resource(cache, 3));
+
+        // 实例创建好后才知道权重，超出上限时淘汰之前的实例
+        assertEquals(1, first.closed);
+        assertFalse(first.cacheLocked);
+        assertEquals(0, second.closed);
+        assertSame(second, cache.get("k2").get());
+    }
+
+    @Test
+    public void testRemoveIfClosesOnlyWhenAsked() throws InterruptedException {
+        ContextCache<Object> cache = new ContextCache<>(Object.class, "test", EvictionPolicyTest.spec("cache.size=10"));
+        Resource kept = create(cache, "k1", new Resource(cache, 1));
+        Resource closed = create(cache, "k2", new Resource(cache, 1));
+
+        cache.removeIf(key -> key.equals("k1"), false);
+        cache.removeIf(key -> key.equals("k2"), true);
+
+        assertEquals(0, kept.closed);
+        assertEquals(1, closed.closed);
+        assertNull(cache.get("k1"));
+        assertNull(cache.get("k2"));
+    }
+
+    private static Resource create(ContextCache<Object> cache, Object key, Resource resource) {
+        Latch<Object> latch = cache.getOrCreate(key);
+        resource.latch = latch;
+        latch.lock();
+        try {
+            latch.set(resource);
+        } finally {
+            latch.unlock();
+        }
+        cache.created(latch, resource);
+        return resource;
+    }
+
+    /**
+     * 关闭时检查缓存的锁和槽位的锁：另一个线程能否取得缓存的锁，槽位是否还被锁住。
+     */
+    static final class Resource implements AutoCloseable, Weighted {
+
+        private final ContextCache<Object> cache;
+
+        private final long weight;
+
+        Latch<Object> latch;
+
+        int closed;
+
+        boolean cacheLocked;
+
+        boolean slotLocked;
+
+        Resource(ContextCache<Object> cache, long weight) {
+            this.cache = cache;
+            this.weight = weight;
+        }
+
+        @Override
+        public long weight() {
+            return weight;
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            closed++;
+            slotLocked = latch.isLocked();
+            Thread probe = new Thread(() -> cache.removeIf(key -> false, false));
+            probe.setDaemon(true);
+            probe.start();
+            probe.join(TimeUnit.SECONDS.toMillis(5));
+            cacheLocked = probe.isAlive();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.laibao.micro.container;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link EvictionPolicy}的数量、权重上限，受保护和正在创建实例的槽位，以及W-TinyLFU的窗口和准入。
+ */
+public class EvictionPolicyTest {
+
+    @Test
+    public void testSizeBound() {
+        EvictionPolicy<Object> policy = policy("cache.size=3");
+        List<CacheEntry<Object>> entries = new ArrayList<>();
+        List<CacheEntry<Object>> evicted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            CacheEntry<Object> entry = entry(i);
+            entries.add(entry);
+            policy.add(entry);
+            evicted.addAll(policy.evict(entry));
+            assertTrue(live(entries) <= 3);
+        }
+        assertEquals(3, live(entries));
+        // 没有访问过的槽位按加入的顺序淘汰，淘汰时取出实例并清空槽位
+        assertEquals(7, evicted.size());
+        for (int i = 0; i < evicted.size(); i++) {
+            CacheEntry<Object> entry = evicted.get(i);
+            assertSame(entries.get(i), entry);
+            assertEquals(i, entry.evictedValue);
+            assertNull(entry.get());
+            entry.lock();
+            try {
+                assertTrue(entry.isRetired());
+            } finally {
+                entry.unlock();
+            }
+        }
+    }
+
+    @Test
+    public void testRecentlyAccessedSurvives() {
+        EvictionPolicy<Object> policy = policy("cache.size=3");
+        CacheEntry<Object> a = add(policy, "a");
+        CacheEntry<Object> b = add(policy, "b");
+        add(policy, "c");
+        policy.recordAccess(a);
+        CacheEntry<Object> d = entry("d");
+        policy.add(d);
+
+        List<CacheEntry<Object>> evicted = policy.evict(d);
+
+        assertEquals(1, evicted.size());
+        assertSame(b, evicted.get(0));
+        assertNotNull(a.queue);
+    }
+
+    @Test
+    public void testWeightBound() {
+        EvictionPolicy<Object> policy = policy("cache.weight=10");
+        List<CacheEntry<Object>> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            CacheEntry<Object> entry = add(policy, i);
+            entries.add(entry);
+            policy.reweigh(entry, 4);
+            policy.evict(entry);
+            long weight = 0;
+            for (CacheEntry<Object> e : entries) {
+                weight += e.queue != null ? e.weight : 0;
+            }
+            assertTrue("weight " + weight, weight <= 10);
+        }
+        assertEquals(2, live(entries));
+        // 权重调整后重新计算：减轻后可以再放入一个
+        CacheEntry<Object> light = add(policy, "light");
+        policy.reweigh(light, 2);
+        assertTrue(policy.evict(light).isEmpty());
+        assertEquals(3, live(entries) + (light.queue != null ? 1 : 0));
+    }
+
+    @Test
+    public void testProtectedAndLockedNotEvicted() throws InterruptedException {
+        for (String spec : new String[]{"cache.size=2", "cache.size=2,cache.policy=tinylfu"}) {
+            EvictionPolicy<Object> policy = policy(spec);
+            CacheEntry<Object> a = add(policy, "a");
+            CacheEntry<Object> b = add(policy, "b");
+            // b正在另一个线程上创建实例
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread creator = new Thread(() -> {
+                b.lock();
+                try {
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    b.unlock();
+                }
+            });
+            creator.start();
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+            try {
+                CacheEntry<Object> c = entry("c");
+                policy.add(c);
+                List<CacheEntry<Object>> evicted = policy.evict(c);
+                assertEquals(spec, 1, evicted.size());
+                assertSame(spec, a, evicted.get(0));
+
+                // 只剩下正在创建的b和受保护的d，超出上限也不淘汰
+                CacheEntry<Object> d = entry("d");
+                policy.add(d);
+                evicted = policy.evict(d);
+                assertEquals(spec, 1, evicted.size());
+                assertSame(spec, c, evicted.get(0));
+                CacheEntry<Object> e = entry("e");
+                policy.add(e);
+                for (CacheEntry<Object> victim : policy.evict(e)) {
+                    assertNotSame(spec, b, victim);
+                    assertNotSame(spec, e, victim);
+                }
+                assertNotNull(spec, b.queue);
+                assertNotNull(spec, e.queue);
+                assertEquals(spec, "b", b.get());
+            } finally {
+                release.countDown();
+                creator.join();
+            }
+        }
+    }
+
+    @Test
+    public void testWindowPromotion() {
+        EvictionPolicy.TinyLfu<Object> policy = (EvictionPolicy.TinyLfu<Object>) EvictionPolicy.<Object>of(spec("cache.size=100,cache.policy=tinylfu"));
+        // 容量的1%是窗口，没有超出上限时窗口中最老的实例直接进入主区
+        for (int i = 0; i < 50; i++) {
+            CacheEntry<Object> entry = add(policy, i);
+            assertTrue(policy.evict(entry).isEmpty());
+            assertEquals(1, policy.window.size);
+            assertEquals(i, policy.main.size);
+        }
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        int lru = hotSurvivors("cache.size=100");
+        int tinyLfu = hotSurvivors("cache.size=100,cache.policy=tinylfu");
+        // 一次性的Key扫过时，LRU淘汰了所有热点，TinyLFU的准入拒绝了访问频率低的新实例
+        assertEquals(0, lru);
+        assertTrue("hot survivors " + tinyLfu, tinyLfu >= 95);
+    }
+
+    private static int hotSurvivors(String spec) {
+        EvictionPolicy<Object> policy = policy(spec);
+        List<CacheEntry<Object>> hot = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            CacheEntry<Object> entry = miss(policy, "hot" + i);
+            hot.add(entry);
+        }
+        for (int round = 0; round < 8; round++) {
+            for (CacheEntry<Object> entry : hot) {
+                policy.recordAccess(entry);
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            miss(policy, "cold" + i);
+        }
+        return live(hot);
+    }
+
+    private static CacheEntry<Object> miss(EvictionPolicy<Object> policy, Object key) {
+        policy.recordMiss(key.hashCode());
+        CacheEntry<Object> entry = entry(key);
+        policy.add(entry);
+        policy.evict(entry);
+        return entry;
+    }
+
+    private static CacheEntry<Object> add(EvictionPolicy<Object> policy, Object key) {
+        CacheEntry<Object> entry = entry(key);
+        policy.add(entry);
+        return entry;
+    }
+
+    private static int live(List<CacheEntry<Object>> entries) {
+        int live = 0;
+        for (CacheEntry<Object> entry : entries) {
+            if (entry.queue != null) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    private static CacheEntry<Object> entry(Object key) {
+        CacheEntry<Object> entry = new CacheEntry<>(key, null);
+        entry.lock();
+        try {
+            entry.set(key);
+        } finally {
+            entry.unlock();
+        }
+        return entry;
+    }
+
+    static ContextCache.Spec spec(String attribute) {
+        return ContextCache.Spec.of(ExtensionAttributes.parse(attribute), 0);
+    }
+
+    private static EvictionPolicy<Object> policy(String attribute) {
+        return EvictionPolicy.of(spec(attribute));
+    }
+}
@@ -0,0 +1,177 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.annotation.SPI;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_CONF_DIRECTORY;
+import static org.junit.Assert.*;
+
+/**
+ * {@link ExtensionContext}遵守{@link Map}的equals和hashCode约定，可以和内容相同的Map互换作为缓存的Key。
+ */
+public class ExtensionContextTest {
+
+    @Test
+    public void testEqualsHashMap() {
+        for (int size : new int[]{0, 1, 3, 8, 9, 20}) {
+            Map<String, String> map = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put("key" + i, "value" + i);
+            }
+            ExtensionContext context = ExtensionContext.of(map);
+            assertMapEquals(map, context);
+
+            // 多一个、少一个或值不同的属性都不相等
+            Map<String, String> other = new HashMap<>(map);
+            other.put("other", "value");
+            assertMapNotEquals(other, context);
+            if (size > 0) {
+                other = new HashMap<>(map);
+                other.put("key0", "changed");
+                assertMapNotEquals(other, context);
+                other = new HashMap<>(map);
+                other.remove("key" + (size - 1));
+                assertMapNotEquals(other, context);
+            }
+        }
+    }
+
+    @Test
+    public void testInsertionOrder() {
+        Map<String, String> forward = new LinkedHashMap<>();
+        Map<String, String> backward = new LinkedHashMap<>();
+        for (int i = 0; i < 12; i++) {
+            forward.put("key" + i, "value" + i);
+            backward.put("key" + (11 - i), "value" + (11 - i));
+        }
+        ExtensionContext context = ExtensionContext.of(forward);
+        assertEquals(context, ExtensionContext.of(backward));
+        assertEquals(context.hashCode(), ExtensionContext.of(backward).hashCode());
+        assertMapEquals(backward, context);
+
+        ExtensionContext built = ExtensionContext.EMPTY;
+        for (Map.Entry<String, String> entry : backward.entrySet()) {
+            built = built.with(entry.getKey(), entry.getValue());
+        }
+        assertEquals(context, built);
+        assertEquals(context.hashCode(), built.hashCode());
+        assertEquals(ExtensionContext.of("a", "1", "b", "2"), ExtensionContext.of("b", "2", "a", "1"));
+    }
+
+    @Test
+    public void testNullValues() {
+        Map<String, String> map = new HashMap<>();
+        map.put("a", null);
+        map.put("b", "2");
+        ExtensionContext context = ExtensionContext.of(map);
+        assertMapEquals(map, context);
+        assertTrue(context.containsKey("a"));
+        assertNull(context.get("a"));
+
+        // 值为null的属性和没有这个属性不相等
+        Map<String, String> missing = new HashMap<>();
+        missing.put("b", "2");
+        missing.put("c", null);
+        assertMapNotEquals(missing, context);
+        assertNotEquals(ExtensionContext.of(missing), context);
+
+        assertEquals(context, ExtensionContext.of("b", "2").with("a", null));
+        assertNotEquals(context, ExtensionContext.of("b", "2").with("a", ""));
+    }
+
+    @Test
+    public void testWithUnchangedValue() {
+        ExtensionContext context = ExtensionContext.of("a", "1", "b", null);
+        assertSame(context, context.with("a", "1"));
+        assertSame(context, context.with("a", new String("1")));
+        assertSame(context, context.with("b", null));
+
+        ExtensionContext changed = context.with("a", "2");
+        assertNotSame(context, changed);
+        assertEquals("1", context.get("a"));
+        assertEquals("2", changed.get("a"));
+        assertNotEquals(context, changed);
+        assertEquals(context, changed.with("a", "1"));
+        assertEquals(context.hashCode(), changed.with("a", "1").hashCode());
+    }
+
+    @Test
+    public void testOfContextAndEmpty() {
+        ExtensionContext context = ExtensionContext.of("a", "1");
+        assertSame(context, ExtensionContext.of(context));
+        assertSame(ExtensionContext.EMPTY, ExtensionContext.of((Map<String, String>) null));
+        assertSame(ExtensionContext.EMPTY, ExtensionContext.of(new HashMap<String, String>()));
+        assertMapEquals(Collections.<String, String>emptyMap(), ExtensionContext.EMPTY);
+    }
+
+    @Test
+    public void testCacheHitWithEqualMap() throws IOException {
+        Path dir = Files.createTempDirectory("extension-context");
+        Path file = dir.resolve(EXTENSION_CONF_DIRECTORY + Greeter.class.getName());
+        Files.createDirectories(file.getParent());
+        Files.write(file, ("greeter=" + GreeterImpl.class.getName() + "(scope=properties)\n").getBytes(StandardCharsets.UTF_8));
+        URLClassLoader classLoader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader());
+        try {
+            ExtensionLoader<Greeter> loader = ExtensionLoader.getExtensionLoader(Greeter.class, classLoader);
+            Map<String, String> map = new HashMap<>();
+            map.put("tenant", "t1");
+            map.put("region", "r1");
+            Greeter byMap = loader.getExtension("greeter", map);
+
+            Map<String, String> reordered = new LinkedHashMap<>();
+            reordered.put("region", "r1");
+            reordered.put("tenant", "t1");
+            assertSame(byMap, loader.getExtension("greeter", ExtensionContext.of(reordered)));
+            assertSame(byMap, loader.getExtension("greeter", reordered));
+            assertSame(byMap, loader.getExtension("greeter", ExtensionContext.of("tenant", "t1").with("region", "r1")));
+
+            // 上下文先放入缓存，再用内容相同的Map获取
+            ExtensionContext context = ExtensionContext.of("tenant", "t2");
+            Greeter byContext = loader.getExtension("greeter", context);
+            assertNotSame(byMap, byContext);
+            assertSame(byContext, loader.getExtension("greeter", Collections.singletonMap("tenant", "t2")));
+        } finally {
+            ExtensionLoader.dispose(classLoader);
+            classLoader.close();
+            Files.delete(file);
+            Files.delete(file.getParent());
+            Files.delete(file.getParent().getParent());
+            Files.delete(dir);
+        }
+    }
+
+    private static void assertMapEquals(Map<String, String> map, ExtensionContext context) {
+        assertTrue(context.equals(map));
+        assertTrue(map.equals(context));
+        assertEquals(map.hashCode(), context.hashCode());
+        assertEquals(map.entrySet(), context.entrySet());
+        // 作为HashMap的Key时可以互相查到
+        Map<Map<String, String>, String> keys = new HashMap<>();
+        keys.put(map, "map");
+        assertEquals("map", keys.get(context));
+        keys.clear();
+        keys.put(context, "context");
+        assertEquals("context", keys.get(map));
+    }
+
+    private static void assertMapNotEquals(Map<String, String> map, ExtensionContext context) {
+        assertFalse(context.equals(map));
+        assertFalse(map.equals(context));
+        assertNotEquals(ExtensionContext.of(map), context);
+    }
+
+    @SPI
+    public interface Greeter {
+    }
+
+    public static class GreeterImpl implements Greeter {
+    }
+}
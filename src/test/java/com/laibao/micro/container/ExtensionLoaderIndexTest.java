@@ -0,0 +1,199 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.annotation.SPI;
+import com.laibao.micro.container.index.DescriptorEntry;
+import com.laibao.micro.container.index.ExtensionIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_CONF_DIRECTORY;
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_INDEX_AUTHORITATIVE_KEY;
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_INDEX_RESOURCE;
+import static org.junit.Assert.*;
+
+/**
+ * 索引只覆盖同一个Jar包中的配置文件，没有索引的Jar包中的配置文件仍然读取。
+ */
+public class ExtensionLoaderIndexTest {
+
+    private static final String DESCRIPTOR = EXTENSION_CONF_DIRECTORY + Greeting.class.getName();
+
+    private File dir;
+
+    private URLClassLoader classLoader;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("extension-index").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (classLoader != null) {
+            ExtensionLoader.dispose(classLoader);
+            classLoader.close();
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(dir.toPath());
+    }
+
+    @Test
+    public void testUnindexedJarIsScanned() throws IOException {
+        // 配置文件中的stale不在索引中：索引覆盖的配置文件不再读取
+        File indexed = jar("indexed.jar",
+                "indexed=" + IndexedGreeting.class.getName() + "\nstale=" + StaleGreeting.class.getName() + "\n",
+                index("indexed=" + IndexedGreeting.class.getName(), "indexed", IndexedGreeting.class.getName()));
+        File plugin = jar("plugin.jar", "plugin=" + PluginGreeting.class.getName() + "\n", null);
+        classLoader = new URLClassLoader(new URL[]{indexed.toURI().toURL(), plugin.toURI().toURL()},
+                getClass().getClassLoader());
+
+        ExtensionLoader<Greeting> loader = ExtensionLoader.getExtensionLoader(Greeting.class, classLoader);
+
+        assertEquals(new TreeSet<>(Arrays.asList("indexed", "plugin")), loader.getSupportedExtensions());
+        assertTrue(loader.getExtension("indexed") instanceof IndexedGreeting);
+        assertTrue(loader.getExtension("plugin") instanceof PluginGreeting);
+    }
+
+    @Test
+    public void testIndexedJarWithoutTypeIsScanned() throws IOException {
+        // 索引中没有这个扩展点时，同一个Jar包中的配置文件也要读取
+        File indexed = jar("other.jar", "indexed=" + IndexedGreeting.class.getName() + "\n",
+                index("x=y", "x", "y", "com.example.Other"));
+        classLoader = new URLClassLoader(new URL[]{indexed.toURI().toURL()}, getClass().getClassLoader());
+
+        ExtensionLoader<Greeting> loader = ExtensionLoader.getExtensionLoader(Greeting.class, classLoader);
+
+        assertEquals(Collections.singleton("indexed"), loader.getSupportedExtensions());
+    }
+
+    @Test
+    public void testAuthoritativeIndexSkipsLookup() throws IOException {
+        File indexed = jar("indexed.jar", "indexed=" + IndexedGreeting.class.getName() + "\n",
+                index("indexed=" + IndexedGreeting.class.getName(), "indexed", IndexedGreeting.class.getName()));
+        LookupCountingClassLoader counting = new LookupCountingClassLoader(new URL[]{indexed.toURI().toURL()});
+        classLoader = counting;
+
+        System.setProperty(EXTENSION_INDEX_AUTHORITATIVE_KEY, "true");
+        ExtensionLoader<Greeting> loader;
+        try {
+            loader = ExtensionLoader.getExtensionLoader(Greeting.class, classLoader);
+            assertEquals(Collections.singleton("indexed"), loader.getSupportedExtensions());
+        } finally {
+            System.clearProperty(EXTENSION_INDEX_AUTHORITATIVE_KEY);
+        }
+
+        assertEquals(0, counting.lookups.get());
+        assertTrue(loader.getExtension("indexed") instanceof IndexedGreeting);
+    }
+
+    @Test
+    public void testAuthoritativeIndexStillLooksUpUnindexedTypes() throws IOException {
+        File plugin = jar("plugin.jar", "plugin=" + PluginGreeting.class.getName() + "\n",
+                index("x=y", "x", "y", "com.example.Other"));
+        LookupCountingClassLoader counting = new LookupCountingClassLoader(new URL[]{plugin.toURI().toURL()});
+        classLoader = counting;
+
+        System.setProperty(EXTENSION_INDEX_AUTHORITATIVE_KEY, "true");
+        try {
+            ExtensionLoader<Greeting> loader = ExtensionLoader.getExtensionLoader(Greeting.class, classLoader);
+            assertEquals(Collections.singleton("plugin"), loader.getSupportedExtensions());
+        } finally {
+            System.clearProperty(EXTENSION_INDEX_AUTHORITATIVE_KEY);
+        }
+
+        assertEquals(1, counting.lookups.get());
+    }
+
+    @Test
+    public void testIndexedTypeLookedUpByDefault() throws IOException {
+        File indexed = jar("indexed.jar", "indexed=" + IndexedGreeting.class.getName() + "\n",
+                index("indexed=" + IndexedGreeting.class.getName(), "indexed", IndexedGreeting.class.getName()));
+        LookupCountingClassLoader counting = new LookupCountingClassLoader(new URL[]{indexed.toURI().toURL()});
+        classLoader = counting;
+
+        ExtensionLoader<Greeting> loader = ExtensionLoader.getExtensionLoader(Greeting.class, classLoader);
+
+        assertEquals(Collections.singleton("indexed"), loader.getSupportedExtensions());
+        assertEquals(1, counting.lookups.get());
+    }
+
+    private byte[] index(String line, String name, String className) throws IOException {
+        return index(line, name, className, Greeting.class.getName());
+    }
+
+    private byte[] index(String line, String name, String className, String typeName) throws IOException {
+        Map<String, List<DescriptorEntry>> type2Entries = new LinkedHashMap<>();
+        type2Entries.put(typeName, Collections.singletonList(
+                new DescriptorEntry(name, className, null, line, EXTENSION_CONF_DIRECTORY + typeName)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ExtensionIndex(type2Entries).write(out);
+        return out.toByteArray();
+    }
+
+    private File jar(String name, String descriptor, byte[] index) throws IOException {
+        File file = new File(dir, name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry(DESCRIPTOR));
+            out.write(descriptor.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            if (index != null) {
+                out.putNextEntry(new ZipEntry(EXTENSION_INDEX_RESOURCE));
+                out.write(index);
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 记录查找扩展点配置文件的次数。
+     */
+    static final class LookupCountingClassLoader extends URLClassLoader {
+
+        final AtomicInteger lookups = new AtomicInteger();
+
+        LookupCountingClassLoader(URL[] urls) {
+            super(urls, ExtensionLoaderIndexTest.class.getClassLoader());
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            if (name.startsWith(EXTENSION_CONF_DIRECTORY)) {
+                lookups.incrementAndGet();
+            }
+            return super.getResources(name);
+        }
+    }
+
+    @SPI
+    public interface Greeting {
+    }
+
+    public static class IndexedGreeting implements Greeting {
+    }
+
+    public static class StaleGreeting implements Greeting {
+    }
+
+    public static class PluginGreeting implements Greeting {
+    }
+}
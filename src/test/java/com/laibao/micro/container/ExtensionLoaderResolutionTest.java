@@ -0,0 +1,228 @@
+package com.laibao.micro.container;
+
+import com.laibao.micro.container.annotation.SPI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.laibao.micro.container.constants.CommonConstants.EXTENSION_CONF_DIRECTORY;
+import static org.junit.Assert.*;
+
+/**
+ * 一次解析中的循环依赖检查和依赖共用。
+ */
+public class ExtensionLoaderResolutionTest {
+
+    private Path dir;
+
+    private URLClassLoader classLoader;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("extension-resolution");
+        descriptor(CycleA.class, "a=" + CycleAImpl.class.getName());
+        descriptor(CycleB.class, "b=" + CycleBImpl.class.getName());
+        descriptor(Top.class, "top=" + TopImpl.class.getName() + "(scope=prototype)",
+                "failing=" + FailingTopImpl.class.getName() + "(scope=prototype)");
+        descriptor(Left.class, "left=" + LeftImpl.class.getName() + "(scope=prototype)");
+        descriptor(Right.class, "right=" + RightImpl.class.getName() + "(scope=prototype)");
+        descriptor(Shared.class, "shared=" + SharedImpl.class.getName() + "(scope=prototype)");
+        descriptor(Failing.class, "failing=" + FailingImpl.class.getName());
+        classLoader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader());
+        CycleAImpl.created = 0;
+        SharedImpl.created.clear();
+        FailingImpl.fail = true;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ExtensionLoader.dispose(classLoader);
+        classLoader.close();
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(dir)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(Comparator.reverseOrder());
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testCycleFailsBeforeCreatingInstances() {
+        ExtensionLoader<CycleA> loader = ExtensionLoader.getExtensionLoader(CycleA.class, classLoader);
+        for (int i = 0; i < 2; i++) {
+            try {
+                loader.getExtension("a");
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("Cyclic injection of extensions: "
+                        + CycleA.class.getName() + "(a) -> " + CycleB.class.getName() + "(b) -> "
+                        + CycleA.class.getName() + "(a)"));
+            }
+            assertNull(Resolution.current());
+        }
+        assertEquals(0, CycleAImpl.created);
+    }
+
+    @Test
+    public void testPrototypeDependencySharedInOneResolution() {
+        ExtensionLoader<Top> loader = ExtensionLoader.getExtensionLoader(Top.class, classLoader);
+
+        TopImpl first = (TopImpl) loader.getExtension("top");
+        TopImpl second = (TopImpl) loader.getExtension("top");
+
+        // 同一次解析中注入的同一个依赖只创建一次，不同的解析各自创建
+        assertSame(first.left.shared, first.right.shared);
+        assertSame(second.left.shared, second.right.shared);
+        assertNotSame(first.left.shared, second.left.shared);
+        assertEquals(2, SharedImpl.created.size());
+        assertNull(Resolution.current());
+    }
+
+    @Test
+    public void testNoStaleResolutionAfterFailure() {
+        ExtensionLoader<Top> loader = ExtensionLoader.getExtensionLoader(Top.class, classLoader);
+        try {
+            loader.getExtension("failing");
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Fail to create extension failing"));
+        }
+        assertNull(Resolution.current());
+        int createdBeforeRetry = SharedImpl.created.size();
+
+        FailingImpl.fail = false;
+        FailingTopImpl top = (FailingTopImpl) loader.getExtension("failing");
+
+        // 失败的解析中创建的依赖不会留到下一次解析
+        assertNull(Resolution.current());
+        assertSame(top.left.shared, top.right.shared);
+        assertEquals(createdBeforeRetry + 1, SharedImpl.created.size());
+        assertSame(SharedImpl.created.get(createdBeforeRetry), top.left.shared);
+    }
+
+    private void descriptor(Class<?> type, String... lines) throws IOException {
+        Path file = dir.resolve(EXTENSION_CONF_DIRECTORY + type.getName());
+        Files.createDirectories(file.getParent());
+        Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SPI("a")
+    public interface CycleA {
+    }
+
+    @SPI("b")
+    public interface CycleB {
+    }
+
+    public static class CycleAImpl implements CycleA {
+
+        static int created;
+
+        public CycleAImpl() {
+            created++;
+        }
+
+        public void setCycleB(CycleB b) {
+        }
+    }
+
+    public static class CycleBImpl implements CycleB {
+
+        public void setCycleA(CycleA a) {
+        }
+    }
+
+    @SPI
+    public interface Top {
+    }
+
+    @SPI("left")
+    public interface Left {
+    }
+
+    @SPI("right")
+    public interface Right {
+    }
+
+    @SPI("shared")
+    public interface Shared {
+    }
+
+    @SPI("failing")
+    public interface Failing {
+    }
+
+    public static class TopImpl implements Top {
+
+        LeftImpl left;
+
+        RightImpl right;
+
+        public void setLeft(Left left) {
+            this.left = (LeftImpl) left;
+        }
+
+        public void setRight(Right right) {
+            this.right = (RightImpl) right;
+        }
+    }
+
+    public static class FailingTopImpl extends TopImpl {
+
+        public void setFailing(Failing failing) {
+        }
+    }
+
+    public static class LeftImpl implements Left {
+
+        Shared shared;
+
+        public void setShared(Shared shared) {
+            this.shared = shared;
+        }
+    }
+
+    public static class RightImpl implements Right {
+
+        Shared shared;
+
+        public void setShared(Shared shared) {
+            this.shared = shared;
+        }
+    }
+
+    public static class SharedImpl implements Shared {
+
+        static final List<SharedImpl> created = Collections.synchronizedList(new ArrayList<SharedImpl>());
+
+        public SharedImpl() {
+            created.add(this);
+        }
+    }
+
+    public static class FailingImpl implements Failing {
+
+        static volatile boolean fail;
+
+        public FailingImpl() {
+            if (fail) {
+                throw new IllegalStateException("failing on purpose");
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.laibao.micro.container;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ExtensionSnapshot#getRoots(ClassLoader)}只在能确定ClassLoader全部资源位置时返回位置。
+ */
+public class ExtensionSnapshotTest {
+
+    @Test
+    public void testParentRootsFirst() throws IOException {
+        File parentDir = Files.createTempDirectory("parent").toFile();
+        File childDir = Files.createTempDirectory("child").toFile();
+        File jar = new File(childDir, "plugin.jar");
+        try (URLClassLoader parent = new URLClassLoader(new URL[]{parentDir.toURI().toURL()}, null);
+             URLClassLoader child = new URLClassLoader(new URL[]{childDir.toURI().toURL(), jar.toURI().toURL(),
+                     parentDir.toURI().toURL()}, parent)) {
+            // 和查找资源的顺序一样，父ClassLoader的位置在前，重复的位置只保留第一个
+            assertEquals(Arrays.asList(parentDir, childDir, jar), ExtensionSnapshot.getRoots(child));
+        } finally {
+            Files.delete(childDir.toPath());
+            Files.delete(parentDir.toPath());
+        }
+    }
+
+    @Test
+    public void testSystemClassLoader() {
+        List<File> roots = ExtensionSnapshot.getRoots(ClassLoader.getSystemClassLoader());
+        assertNotNull(roots);
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (path.length() > 0) {
+                assertTrue(path, roots.contains(new File(path).getAbsoluteFile()));
+            }
+        }
+    }
+
+    @Test
+    public void testOverriddenResourceLookup() throws IOException {
+        URL[] urls = {new File(".").toURI().toURL()};
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null) {
+            @Override
+            public URL findResource(String name) {
+                return super.findResource(name);
+            }
+        }) {
+            assertNull(ExtensionSnapshot.getRoots(classLoader));
+        }
+        // 子类的子类重写也不能确定
+        try (URLClassLoader classLoader = new LookupClassLoader(urls) {
+        }) {
+            assertNull(ExtensionSnapshot.getRoots(classLoader));
+        }
+        // 没有重写资源查找方法的子类仍然使用getURLs()
+        try (URLClassLoader classLoader = new URLClassLoader(urls, null) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                return super.findClass(name);
+            }
+        }) {
+            assertEquals(1, ExtensionSnapshot.getRoots(classLoader).size());
+        }
+    }
+
+    @Test
+    public void testRemoteRoot() throws IOException {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{new URL("http://localhost/lib.jar")}, null)) {
+            assertNull(ExtensionSnapshot.getRoots(classLoader));
+        }
+    }
+
+    @Test
+    public void testUnknownClassLoader() {
+        ClassLoader classLoader = new ClassLoader(null) {
+        };
+        assertNull(ExtensionSnapshot.getRoots(classLoader));
+    }
+
+    static class LookupClassLoader extends URLClassLoader {
+
+        LookupClassLoader(URL[] urls) {
+            super(urls, null);
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            return super.getResources(name);
+        }
+    }
+}
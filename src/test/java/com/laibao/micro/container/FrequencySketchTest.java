@@ -0,0 +1,150 @@
+package com.laibao.micro.container;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link FrequencySketch}的计数上限、估计值和减半。
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void testSaturation() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        assertEquals(0, sketch.frequency(42));
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(15, sketch.frequency(42));
+    }
+
+    @Test
+    public void testEstimate() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int key = 0; key < 50; key++) {
+            for (int i = 0; i < key % 8; i++) {
+                sketch.increment(hash(key));
+            }
+        }
+        // Count-Min Sketch只会高估，不会低估；计数器足够时几乎没有冲突
+        int exact = 0;
+        for (int key = 0; key < 50; key++) {
+            int frequency = sketch.frequency(hash(key));
+            assertTrue("key " + key + ": " + frequency, frequency >= key % 8);
+            if (frequency == key % 8) {
+                exact++;
+            }
+        }
+        assertTrue("exact " + exact, exact >= 45);
+    }
+
+    @Test
+    public void testReset() {
+        FrequencySketch sketch = new FrequencySketch(64);
+        int hot = hash(-1);
+        for (int i = 0; i < 15; i++) {
+            sketch.increment(hot);
+        }
+        // 累计计数达到容量的10倍（640）时减半
+        for (int key = 0; key < 640 - 15 - 1; key++) {
+            sketch.increment(hash(key));
+        }
+        assertEquals(15, sketch.frequency(hot));
+        sketch.increment(hash(640));
+        assertEquals(7, sketch.frequency(hot));
+    }
+
+    @Test
+    public void testConcurrentSaturation() throws InterruptedException {
+        // 容量很大，不会减半
+        FrequencySketch sketch = new FrequencySketch(1 << 16);
+        int hot = hash(-1);
+        run(8, thread -> {
+            for (int i = 0; i < 20000; i++) {
+                sketch.increment(hot);
+            }
+        });
+
+        // 计数器到15后不再增加，不会溢出到相邻的计数器
+        assertEquals(15, sketch.frequency(hot));
+        int saturated = 0;
+        AtomicLongArray table = sketch.table;
+        for (int i = 0; i < table.length(); i++) {
+            long word = table.get(i);
+            for (int shift = 0; shift < 64; shift += 4) {
+                long counter = (word >>> shift) & 0xFL;
+                if (counter != 0) {
+                    assertEquals("counter " + (i * 16 + shift / 4), 15, counter);
+                    saturated++;
+                }
+            }
+        }
+        assertTrue("saturated " + saturated, saturated >= 1 && saturated <= 4);
+    }
+
+    @Test
+    public void testConcurrentReset() throws InterruptedException {
+        FrequencySketch sketch = new FrequencySketch(64);
+        int hot = hash(-1);
+        int[] keys = new int[200];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = hash(i);
+        }
+        // 多个线程同时计数，期间多次减半
+        run(8, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < 50000; i++) {
+                sketch.increment(i % 4 == 0 ? hot : keys[random.nextInt(keys.length)]);
+            }
+        });
+
+        // 热点Key的计数没有因为进位或丢失的减半被清零，其它Key的计数也没有被抬到热点之上
+        int frequency = sketch.frequency(hot);
+        assertTrue("hot " + frequency, frequency >= 7);
+        for (int key : keys) {
+            assertTrue(sketch.frequency(key) <= frequency);
+        }
+    }
+
+    private static void run(int threads, ThreadTask task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int n = 0; n < threads; n++) {
+            int thread = n;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(thread);
+                } catch (Throwable t) {
+                    synchronized (failures) {
+                        failures.add(t);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertTrue(failures.toString(), failures.isEmpty());
+    }
+
+    private interface ThreadTask {
+
+        void run(int thread) throws Exception;
+    }
+
+    private static int hash(int key) {
+        return ("key" + key).hashCode();
+    }
+}
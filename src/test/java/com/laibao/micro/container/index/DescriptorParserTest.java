@@ -0,0 +1,194 @@
+package com.laibao.micro.container.index;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link DescriptorParser}和逐行解析的旧实现{@link LegacyDescriptorParser}的结果相同。
+ */
+public class DescriptorParserTest {
+
+    private static final String SOURCE = "test";
+
+    private static final String[] LINES = {
+            "",
+            "   ",
+            "# comment",
+            "  # indented comment",
+            "plain=com.foo.Plain",
+            "  spaced  =  com.foo.Spaced  ",
+            "commented=com.foo.Commented # trailing comment",
+            "a,b, c=com.foo.Multi",
+            "a,b,=com.foo.TrailingComma",
+            "a , b ,, ,=com.foo.TrailingCommas",
+            ",a=com.foo.LeadingComma",
+            ",=com.foo.OnlyComma",
+            "a,,b=com.foo.DoubleComma",
+            "+wrapper=com.foo.Wrapper",
+            "+w1,w2=com.foo.Wrappers",
+            "*adaptive=com.foo.Adaptive",
+            "*=com.foo.AdaptiveWithoutName",
+            "attr=com.foo.Attr(scope=properties,pool.size=4)",
+            "attr2 = com.foo.Attr2 ( activate=a|b , order=1 ) ",
+            "empty=com.foo.Empty()",
+            "unclosed=com.foo.Unclosed(scope=pooled",
+            "hash=com.foo.Hash(x=1)#(",
+            "=com.foo.MissingName",
+            "no.equals.sign",
+            "in-valid=com.foo.Invalid",
+            "a b=com.foo.Space",
+            "中文=com.foo.NonAscii",
+            "desc=com.foo.Desc(label=中文描述)",
+            "\uFEFFbom=com.foo.Bom",
+            "tab\t=\tcom.foo.Tab\t(k=v)",
+            "dup=com.foo.Dup",
+            "dup=com.foo.Dup",
+    };
+
+    @Test
+    public void testLineEndings() throws IOException {
+        String lf = join(LINES, "\n");
+        assertSameAsLegacy(lf);
+        assertSameAsLegacy(join(LINES, "\r\n"));
+        assertSameAsLegacy(join(LINES, "\r"));
+        assertSameAsLegacy(lf + "\n");
+        assertSameAsLegacy(join(LINES, "\r\n") + "\r\n");
+        // 混合的换行符，以及空行
+        assertSameAsLegacy("a=com.foo.A\r\nb=com.foo.B\rc=com.foo.C\n\r\n\n\rd=com.foo.D");
+        assertSameAsLegacy("");
+        assertSameAsLegacy("\n");
+        assertSameAsLegacy("\r\n\r\n");
+    }
+
+    @Test
+    public void testSingleLines() throws IOException {
+        for (String line : LINES) {
+            assertSameAsLegacy(line);
+        }
+    }
+
+    @Test
+    public void testLargeFiles() throws IOException {
+        // 超过初始的1024字节缓冲区，以及超过不再保留的64K缓冲区
+        for (int count : new int[]{100, 5000}) {
+            StringBuilder ascii = new StringBuilder();
+            StringBuilder utf8 = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                String line = LINES[i % LINES.length];
+                ascii.append("ext").append(i).append("=com.foo.Ext").append(i).append("(order=").append(i).append(")\r\n");
+                ascii.append(line.replace('中', 'z').replace('文', 'w').replace("\uFEFF", "")).append('\n');
+                utf8.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+            }
+            assertTrue(ascii.length() > 1024);
+            assertSameAsLegacy(ascii.toString());
+            assertSameAsLegacy(utf8.toString());
+        }
+        // 大文件之后线程复用的缓冲区里不能残留上一个文件的内容
+        assertSameAsLegacy("small=com.foo.Small");
+    }
+
+    @Test
+    public void testFuzz() throws IOException {
+        String alphabet = "ab_9=(),, ,\t#+*.-中";
+        Random random = new Random(20261016L);
+        for (int n = 0; n < 2000; n++) {
+            StringBuilder text = new StringBuilder();
+            int lines = 1 + random.nextInt(8);
+            for (int i = 0; i < lines; i++) {
+                int length = random.nextInt(24);
+                for (int j = 0; j < length; j++) {
+                    text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                text.append(random.nextInt(3) == 0 ? "\r\n" : random.nextBoolean() ? "\n" : "\r");
+            }
+            assertSameAsLegacy(text.toString());
+        }
+    }
+
+    @Test
+    public void testErrorPositions() {
+        String text = "ok=com.foo.Ok\n" +
+                "\n" +
+                "  =com.foo.MissingName\r\n" +
+                "unclosed=com.foo.Unclosed(scope=pooled  \r" +
+                "a,b-c=com.foo.Invalid\n" +
+                "name.only\n" +
+                "a, ,b=com.foo.EmptyName";
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        List<DescriptorEntry> entries = DescriptorParser.parse(text, SOURCE, failures);
+
+        assertEquals(1, entries.size());
+        assertEquals(5, failures.size());
+        assertMessage(failures, "  =com.foo.MissingName", "(line 3, column 3)");
+        assertMessage(failures, "unclosed=com.foo.Unclosed(scope=pooled  ", "missing ')' of extension attribute! (line 4, column 39)");
+        assertMessage(failures, "a,b-c=com.foo.Invalid", "invalid extension name(b-c) (line 5, column 4)");
+        assertMessage(failures, "name.only", "(line 6, column 1)");
+        assertMessage(failures, "a, ,b=com.foo.EmptyName", "(line 7, column 4)");
+    }
+
+    @Test
+    public void testSingleLineErrorPosition() {
+        try {
+            DescriptorEntry.parse("a,b-c=com.foo.Invalid", SOURCE);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("invalid extension name(b-c) (column 4)", e.getMessage());
+        }
+    }
+
+    private static void assertMessage(Map<String, Throwable> failures, String line, String expected) {
+        Throwable failure = failures.get(line);
+        assertNotNull("no failure for line: " + line, failure);
+        assertTrue(failure.getMessage(), failure.getMessage().endsWith(expected));
+    }
+
+    private static void assertSameAsLegacy(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        Map<String, Throwable> expectedFailures = new LinkedHashMap<>();
+        List<DescriptorEntry> expected = LegacyDescriptorParser.parse(new ByteArrayInputStream(bytes), SOURCE, expectedFailures);
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+        List<DescriptorEntry> entries = DescriptorParser.parse(new ByteArrayInputStream(bytes), SOURCE, failures);
+
+        String input = "input: " + text.replace("\r", "\\r").replace("\n", "\\n");
+        assertEquals(input, toStrings(expected), toStrings(entries));
+        assertEquals(input, expectedFailures.keySet(), failures.keySet());
+
+        // 和逐行调用DescriptorEntry#parse的结果也相同
+        if (text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            String single;
+            try {
+                DescriptorEntry entry = DescriptorEntry.parse(text, SOURCE);
+                single = entry == null ? "[]" : toStrings(Collections.singletonList(entry)).toString();
+            } catch (IllegalStateException e) {
+                single = "failed";
+            }
+            assertEquals(input, expectedFailures.isEmpty() ? toStrings(expected).toString() : "failed", single);
+        }
+    }
+
+    private static List<String> toStrings(List<DescriptorEntry> entries) {
+        List<String> list = new ArrayList<>();
+        for (DescriptorEntry entry : entries) {
+            list.add(entry.getName() + "|" + entry.getClassName() + "|" + entry.getAttribute() + "|" +
+                    entry.getLine() + "|" + entry.getSource());
+        }
+        return list;
+    }
+
+    private static String join(String[] lines, String separator) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) {
+                buf.append(separator);
+            }
+            buf.append(lines[i]);
+        }
+        return buf.toString();
+    }
+}